@@ -0,0 +1,114 @@
+package com.santjosepobrero.basededatos.carga;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cliente HTTP compartido por todos los usuarios virtuales de la prueba de carga.
+ * <p>
+ * Cada petición se anota en el histograma de su operación (en microsegundos). Los
+ * {@link Recorder} de HdrHistogram admiten escrituras concurrentes sin bloqueo y permiten
+ * descartar lo medido durante el calentamiento.
+ */
+class ClienteCarga {
+
+    private final String base;
+    private final Duration tiempoMaximo;
+    private final HttpClient cliente;
+    private final ObjectMapper json = new ObjectMapper();
+    private final Map<String, Recorder> latencias = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> errores = new ConcurrentHashMap<>();
+
+    /**
+     * @param base URL base de la aplicación, sin barra final
+     * @param tiempoMaximo Tiempo máximo de cada petición
+     */
+    ClienteCarga(String base, Duration tiempoMaximo) {
+        this.base = base;
+        this.tiempoMaximo = tiempoMaximo;
+        this.cliente = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .connectTimeout(tiempoMaximo)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+    }
+
+    HttpRequest.Builder peticion(String ruta) {
+        return HttpRequest.newBuilder(URI.create(base + ruta)).timeout(tiempoMaximo);
+    }
+
+    /**
+     * Envía una petición GET y anota su latencia en la operación indicada.
+     */
+    HttpResponse<String> get(String operacion, String ruta) throws IOException, InterruptedException {
+        return enviar(operacion, peticion(ruta).GET().build());
+    }
+
+    /**
+     * Envía una petición, anota su latencia y cuenta como error cualquier estado 4xx o 5xx.
+     */
+    HttpResponse<String> enviar(String operacion, HttpRequest peticion) throws IOException, InterruptedException {
+        long inicio = System.nanoTime();
+        HttpResponse<String> respuesta = cliente.send(peticion, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        anotar(operacion, System.nanoTime() - inicio);
+        if (respuesta.statusCode() >= 400) contarError(operacion);
+        return respuesta;
+    }
+
+    /**
+     * Anota una duración medida fuera de {@link #enviar} (por ejemplo, un trabajo SQL completo).
+     */
+    void anotar(String operacion, long nanos) {
+        latencias.computeIfAbsent(operacion, o -> new Recorder(3)).recordValue(Math.max(1, nanos / 1000));
+    }
+
+    void contarError(String operacion) {
+        errores.computeIfAbsent(operacion, o -> new LongAdder()).increment();
+    }
+
+    JsonNode leerJson(HttpResponse<String> respuesta) throws IOException {
+        return json.readTree(respuesta.body());
+    }
+
+    /**
+     * Descarta todo lo medido hasta ahora (fin del calentamiento).
+     */
+    void reiniciar() {
+        latencias.values().forEach(Recorder::reset);
+        errores.values().forEach(LongAdder::reset);
+    }
+
+    /**
+     * @return Histograma de cada operación desde el último reinicio, por nombre
+     */
+    Map<String, Histogram> recogerHistogramas() {
+        Map<String, Histogram> histogramas = new TreeMap<>();
+        latencias.forEach((operacion, grabador) -> histogramas.put(operacion, grabador.getIntervalHistogram()));
+        return histogramas;
+    }
+
+    /**
+     * @return Errores de cada operación desde el último reinicio, por nombre
+     */
+    Map<String, Long> recogerErrores() {
+        Map<String, Long> total = new TreeMap<>();
+        errores.forEach((operacion, contador) -> total.put(operacion, contador.sum()));
+        return total;
+    }
+}
@@ -0,0 +1,123 @@
+package com.santjosepobrero.basededatos.carga;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.net.URLEncoder;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.random.RandomGenerator;
+
+/**
+ * Lo que hace un usuario virtual en cada iteración. El peso de cada escenario en la
+ * mezcla se configura con {@code carga.mezcla} (por ejemplo "tabla=50,paginacion=25,...").
+ */
+enum Escenario {
+
+    /** Primera página de una tabla en /tabla/{nombre}. */
+    TABLA("tabla") {
+        @Override
+        void ejecutar(ClienteCarga cliente, PruebaCarga.Configuracion configuracion, RandomGenerator aleatorio)
+                throws Exception {
+            List<String> tablas = configuracion.tablas();
+            cliente.get("tabla", "/tabla/" + tablas.get(aleatorio.nextInt(tablas.size())));
+        }
+    },
+
+    /**
+     * Paginación profunda: abre /tabla/rental y sigue el cursor de la página siguiente
+     * por /api/tabla tantas veces como {@code carga.profundidad}.
+     */
+    PAGINACION("paginacion") {
+        @Override
+        void ejecutar(ClienteCarga cliente, PruebaCarga.Configuracion configuracion, RandomGenerator aleatorio)
+                throws Exception {
+            cliente.get("tabla", "/tabla/rental");
+            String cursor = null;
+            for (int i = 0; i < configuracion.profundidad(); i++) {
+                String ruta = "/api/tabla/rental?tamanio=20"
+                        + (cursor != null ? "&cursor=" + URLEncoder.encode(cursor, StandardCharsets.UTF_8) : "");
+                HttpResponse<String> respuesta = cliente.get("paginacion", ruta);
+                if (respuesta.statusCode() != 200) return;
+                JsonNode cuerpo = cliente.leerJson(respuesta);
+                if (!cuerpo.path("haySiguiente").asBoolean()) return;
+                cursor = cuerpo.path("cursorSiguiente").asText(null);
+                if (cursor == null) return;
+            }
+        }
+    },
+
+    /** Página del dashboard y la petición de datos que hace dashboard.js. */
+    DASHBOARD("dashboard") {
+        @Override
+        void ejecutar(ClienteCarga cliente, PruebaCarga.Configuracion configuracion, RandomGenerator aleatorio)
+                throws Exception {
+            cliente.get("dashboard", "/dashboard");
+            cliente.get("api_dashboard", "/api/dashboard");
+        }
+    },
+
+    /**
+     * Sube un script SQL a /ejecutar-sql y espera a que el trabajo termine. Se anotan
+     * la subida ("sql_subida") y el tiempo total hasta terminar ("sql_trabajo").
+     */
+    SQL("sql") {
+        @Override
+        void ejecutar(ClienteCarga cliente, PruebaCarga.Configuracion configuracion, RandomGenerator aleatorio)
+                throws Exception {
+            String frontera = UUID.randomUUID().toString();
+            String cuerpo = "--" + frontera + "\r\n"
+                    + "Content-Disposition: form-data; name=\"archivo\"; filename=\"carga.sql\"\r\n"
+                    + "Content-Type: application/sql\r\n\r\n"
+                    + configuracion.script() + "\r\n"
+                    + "--" + frontera + "--\r\n";
+            long inicio = System.nanoTime();
+            HttpResponse<String> respuesta = cliente.enviar("sql_subida", cliente.peticion("/ejecutar-sql")
+                    .header("Content-Type", "multipart/form-data; boundary=" + frontera)
+                    .POST(HttpRequest.BodyPublishers.ofString(cuerpo, StandardCharsets.UTF_8))
+                    .build());
+            Optional<String> destino = respuesta.headers().firstValue("Location");
+            if (respuesta.statusCode() != 302 || destino.isEmpty() || !destino.get().contains("/trabajos/")) {
+                cliente.contarError("sql_trabajo");
+                return;
+            }
+
+            String id = destino.get().substring(destino.get().lastIndexOf('/') + 1);
+            while (true) {
+                Thread.sleep(50);
+                HttpResponse<String> estado = cliente.get("sql_estado", "/trabajos/" + id + "/estado");
+                if (estado.statusCode() != 200) {
+                    cliente.contarError("sql_trabajo");
+                    return;
+                }
+                String valor = cliente.leerJson(estado).path("estado").asText();
+                if (valor.equals("EN_COLA") || valor.equals("EJECUTANDO")) continue;
+                cliente.anotar("sql_trabajo", System.nanoTime() - inicio);
+                if (!valor.equals("COMPLETADO")) cliente.contarError("sql_trabajo");
+                return;
+            }
+        }
+    };
+
+    private final String nombre;
+
+    Escenario(String nombre) {
+        this.nombre = nombre;
+    }
+
+    String getNombre() {
+        return nombre;
+    }
+
+    abstract void ejecutar(ClienteCarga cliente, PruebaCarga.Configuracion configuracion, RandomGenerator aleatorio)
+            throws Exception;
+
+    static Escenario desde(String nombre) {
+        for (Escenario escenario : values())
+            if (escenario.nombre.equalsIgnoreCase(nombre.trim())) return escenario;
+        throw new IllegalArgumentException("Escenario desconocido en carga.mezcla: " + nombre);
+    }
+}
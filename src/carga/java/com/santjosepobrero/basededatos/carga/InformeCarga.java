@@ -0,0 +1,139 @@
+package com.santjosepobrero.basededatos.carga;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Informe de una prueba de carga: configuración, y por cada operación número de peticiones,
+ * errores, rendimiento (peticiones por segundo) y latencias en milisegundos
+ * (p50, p90, p99, p99.9, máximo y media) sacadas de HdrHistogram.
+ * <p>
+ * El JSON tiene siempre la misma forma para poder compararlo entre ejecuciones, con
+ * {@link #compararCon} o con cualquier herramienta externa.
+ */
+class InformeCarga {
+
+    private final Map<String, Object> contenido = new LinkedHashMap<>();
+    private final Map<String, Map<String, Object>> operaciones = new LinkedHashMap<>();
+
+    InformeCarga(String objetivo, PruebaCarga.Configuracion configuracion, String tamanioPool, Duration medido,
+                 Map<String, Histogram> histogramas, Map<String, Long> errores) {
+        double segundos = medido.toNanos() / 1e9;
+        Map<String, Object> mezcla = new LinkedHashMap<>();
+        configuracion.mezcla().forEach((escenario, peso) -> mezcla.put(escenario.getNombre(), peso));
+
+        contenido.put("fecha", Instant.now().toString());
+        contenido.put("objetivo", objetivo);
+        contenido.put("usuarios", configuracion.usuarios());
+        contenido.put("duracionSegundos", redondear(segundos));
+        contenido.put("calentamientoSegundos", configuracion.calentamiento().toSeconds());
+        contenido.put("pausaMs", configuracion.pausa().toMillis());
+        contenido.put("mezcla", mezcla);
+        contenido.put("tamanioPool", tamanioPool);
+
+        long peticiones = 0;
+        long fallidas = 0;
+        for (Map.Entry<String, Histogram> entrada : histogramas.entrySet()) {
+            Histogram histograma = entrada.getValue();
+            long errorOperacion = errores.getOrDefault(entrada.getKey(), 0L);
+            Map<String, Object> latencia = new LinkedHashMap<>();
+            latencia.put("p50", milisegundos(histograma.getValueAtPercentile(50)));
+            latencia.put("p90", milisegundos(histograma.getValueAtPercentile(90)));
+            latencia.put("p99", milisegundos(histograma.getValueAtPercentile(99)));
+            latencia.put("p999", milisegundos(histograma.getValueAtPercentile(99.9)));
+            latencia.put("max", milisegundos(histograma.getMaxValue()));
+            latencia.put("media", redondear(histograma.getMean() / 1000));
+
+            Map<String, Object> operacion = new LinkedHashMap<>();
+            operacion.put("peticiones", histograma.getTotalCount());
+            operacion.put("errores", errorOperacion);
+            operacion.put("rendimiento", redondear(histograma.getTotalCount() / segundos));
+            operacion.put("latenciaMs", latencia);
+            operaciones.put(entrada.getKey(), operacion);
+            peticiones += histograma.getTotalCount();
+            fallidas += errorOperacion;
+        }
+        // Errores de operaciones que no llegaron a medir ninguna petición (p. ej. excepciones de conexión)
+        for (Map.Entry<String, Long> entrada : errores.entrySet()) {
+            if (histogramas.containsKey(entrada.getKey()) || entrada.getValue() == 0) continue;
+            operaciones.put(entrada.getKey(), Map.of("peticiones", 0, "errores", entrada.getValue()));
+            fallidas += entrada.getValue();
+        }
+
+        Map<String, Object> total = new LinkedHashMap<>();
+        total.put("peticiones", peticiones);
+        total.put("errores", fallidas);
+        total.put("rendimiento", redondear(peticiones / segundos));
+        contenido.put("total", total);
+        contenido.put("operaciones", operaciones);
+    }
+
+    void escribir(Path archivo) throws IOException {
+        if (archivo.getParent() != null) Files.createDirectories(archivo.getParent());
+        new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(archivo.toFile(), contenido);
+        System.out.println("Informe escrito en " + archivo.toAbsolutePath());
+    }
+
+    void imprimir(PrintStream salida) {
+        salida.printf("%-14s %10s %8s %10s %9s %9s %9s %9s%n",
+                "operacion", "peticiones", "errores", "pet/s", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        operaciones.forEach((nombre, operacion) -> {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> latencia = (Map<String, Object>) operacion.getOrDefault("latenciaMs", Map.of());
+            salida.printf("%-14s %10s %8s %10s %9s %9s %9s %9s%n", nombre, operacion.get("peticiones"),
+                    operacion.get("errores"), operacion.getOrDefault("rendimiento", "-"),
+                    latencia.getOrDefault("p50", "-"), latencia.getOrDefault("p99", "-"),
+                    latencia.getOrDefault("p999", "-"), latencia.getOrDefault("max", "-"));
+        });
+        salida.println("total: " + contenido.get("total"));
+    }
+
+    /**
+     * Imprime, por operación, el p99 y el rendimiento de otro informe junto a los de este
+     * y la diferencia en porcentaje.
+     *
+     * @param anterior Informe JSON de otra ejecución
+     * @param salida Donde se imprime la comparación
+     * @throws IOException si no se puede leer el informe anterior
+     */
+    void compararCon(Path anterior, PrintStream salida) throws IOException {
+        JsonNode base = new ObjectMapper().readTree(anterior.toFile()).path("operaciones");
+        salida.println("Comparación con " + anterior + ":");
+        salida.printf("%-14s %12s %12s %8s %12s %12s %8s%n",
+                "operacion", "p99 antes", "p99 ahora", "%", "pet/s antes", "pet/s ahora", "%");
+        operaciones.forEach((nombre, operacion) -> {
+            JsonNode previa = base.path(nombre);
+            if (previa.isMissingNode() || !operacion.containsKey("latenciaMs")) return;
+            @SuppressWarnings("unchecked")
+            double p99 = ((Number) ((Map<String, Object>) operacion.get("latenciaMs")).get("p99")).doubleValue();
+            double rendimiento = ((Number) operacion.get("rendimiento")).doubleValue();
+            double p99Antes = previa.path("latenciaMs").path("p99").asDouble();
+            double rendimientoAntes = previa.path("rendimiento").asDouble();
+            salida.printf("%-14s %12.2f %12.2f %8s %12.2f %12.2f %8s%n", nombre, p99Antes, p99,
+                    diferencia(p99Antes, p99), rendimientoAntes, rendimiento, diferencia(rendimientoAntes, rendimiento));
+        });
+    }
+
+    private static String diferencia(double antes, double ahora) {
+        if (antes == 0) return "-";
+        return String.format("%+.1f", (ahora - antes) * 100 / antes);
+    }
+
+    private static double milisegundos(long microsegundos) {
+        return redondear(microsegundos / 1000.0);
+    }
+
+    private static double redondear(double valor) {
+        return Math.round(valor * 100) / 100.0;
+    }
+}
@@ -0,0 +1,202 @@
+package com.santjosepobrero.basededatos.carga;
+
+import ch.vorburger.mariadb4j.DB;
+import ch.vorburger.mariadb4j.DBConfigurationBuilder;
+import com.santjosepobrero.basededatos.ProyectoBdSakuraApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
+
+/**
+ * Prueba de carga de extremo a extremo de /tabla, /dashboard y /ejecutar-sql.
+ * <p>
+ * Arranca la aplicación (en un puerto libre) contra un MariaDB embebido con
+ * {@link SakilaSintetica}, o contra la base de datos de {@code carga.bd-url}; si se indica
+ * {@code carga.objetivo}, no arranca nada y ataca esa URL. Después lanza {@code carga.usuarios}
+ * usuarios virtuales (hilos virtuales, modelo cerrado: cada uno espera su respuesta y
+ * {@code carga.pausa} antes de la siguiente iteración) que eligen escenario según
+ * {@code carga.mezcla}.
+ * <p>
+ * Lo medido durante {@code carga.calentamiento} se descarta. Al final se escribe un informe
+ * JSON con p50/p99/p999 y rendimiento por operación ({@link InformeCarga}) y, si se indica
+ * {@code carga.comparar}, se compara con el informe de otra ejecución.
+ * <p>
+ * Se lanza con {@code ./gradlew pruebaCarga -Pcarga.usuarios=200 -Pcarga.duracion=PT2M ...}.
+ */
+public class PruebaCarga {
+
+    /**
+     * Parámetros de la prueba.
+     *
+     * @param usuarios      Usuarios virtuales simultáneos
+     * @param duracion      Duración de la medición, sin el calentamiento
+     * @param calentamiento Tiempo inicial que no se mide
+     * @param pausa         Espera de cada usuario entre iteraciones
+     * @param mezcla        Peso de cada escenario
+     * @param tablas        Tablas que se abren en el escenario "tabla"
+     * @param profundidad   Páginas que se recorren en el escenario "paginacion"
+     * @param script        Script que se sube en el escenario "sql"
+     * @param informe       Archivo donde se escribe el informe
+     * @param comparar      Informe de otra ejecución con el que comparar, o null
+     */
+    record Configuracion(int usuarios, Duration duracion, Duration calentamiento, Duration pausa,
+                         Map<Escenario, Integer> mezcla, List<String> tablas, int profundidad, String script,
+                         Path informe, Path comparar) {
+
+        static Configuracion desdePropiedades() {
+            Map<Escenario, Integer> mezcla = new LinkedHashMap<>();
+            for (String parte : propiedad("carga.mezcla", "tabla=50,paginacion=25,dashboard=20,sql=5").split(",")) {
+                String[] claveValor = parte.split("=");
+                int peso = Integer.parseInt(claveValor[1].trim());
+                if (peso > 0) mezcla.put(Escenario.desde(claveValor[0]), peso);
+            }
+            if (mezcla.isEmpty()) throw new IllegalArgumentException("carga.mezcla no tiene ningún escenario con peso");
+            String comparar = System.getProperty("carga.comparar");
+            return new Configuracion(
+                    Integer.parseInt(propiedad("carga.usuarios", "200")),
+                    Duration.parse(propiedad("carga.duracion", "PT60S")),
+                    Duration.parse(propiedad("carga.calentamiento", "PT15S")),
+                    Duration.parse(propiedad("carga.pausa", "PT0.1S")),
+                    mezcla,
+                    Arrays.stream(propiedad("carga.tablas", "film,actor,customer,rental").split(","))
+                            .map(String::trim).toList(),
+                    Integer.parseInt(propiedad("carga.profundidad", "20")),
+                    propiedad("carga.script", "SELECT COUNT(*) AS total FROM rental;\n"
+                            + "SELECT film_id, title, rating FROM film WHERE film_id <= 50;\n"),
+                    Path.of(propiedad("carga.informe", "build/carga/informe.json")),
+                    comparar == null || comparar.isBlank() ? null : Path.of(comparar));
+        }
+
+        /** Elige un escenario al azar según los pesos de la mezcla. */
+        Escenario elegir(RandomGenerator aleatorio) {
+            int total = mezcla.values().stream().mapToInt(Integer::intValue).sum();
+            int valor = aleatorio.nextInt(total);
+            for (Map.Entry<Escenario, Integer> entrada : mezcla.entrySet()) {
+                valor -= entrada.getValue();
+                if (valor < 0) return entrada.getKey();
+            }
+            throw new IllegalStateException();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Configuracion configuracion = Configuracion.desdePropiedades();
+        DB baseEmbebida = null;
+        ConfigurableApplicationContext aplicacion = null;
+        try {
+            String objetivo = System.getProperty("carga.objetivo");
+            String tamanioPool = null;
+            if (objetivo == null || objetivo.isBlank()) {
+                String url = System.getProperty("carga.bd-url");
+                String usuario = propiedad("carga.bd-usuario", "root");
+                String contrasena = propiedad("carga.bd-contrasena", "");
+                if (url == null || url.isBlank()) {
+                    DBConfigurationBuilder configuracionBd = DBConfigurationBuilder.newBuilder();
+                    configuracionBd.setPort(0);
+                    baseEmbebida = DB.newEmbeddedDB(configuracionBd.build());
+                    baseEmbebida.start();
+                    baseEmbebida.createDB("sakila");
+                    url = configuracionBd.getURL("sakila");
+                    try (Connection conexion = DriverManager.getConnection(url, usuario, contrasena)) {
+                        SakilaSintetica.crear(conexion);
+                    }
+                }
+                aplicacion = new SpringApplicationBuilder(ProyectoBdSakuraApplication.class)
+                        .properties("server.port=0",
+                                "spring.datasource.url=" + url,
+                                "spring.datasource.username=" + usuario,
+                                "spring.datasource.password=" + contrasena,
+                                "logging.level.root=WARN")
+                        .run();
+                objetivo = "http://localhost:" + aplicacion.getEnvironment().getProperty("local.server.port");
+                tamanioPool = aplicacion.getEnvironment().getProperty("spring.datasource.hikari.maximum-pool-size");
+            }
+            ejecutar(configuracion, objetivo.replaceAll("/+$", ""), tamanioPool);
+        } finally {
+            if (aplicacion != null) aplicacion.close();
+            if (baseEmbebida != null) baseEmbebida.stop();
+        }
+    }
+
+    private static void ejecutar(Configuracion configuracion, String objetivo, String tamanioPool) throws Exception {
+        ClienteCarga cliente = new ClienteCarga(objetivo, Duration.ofMinutes(2));
+        long finCalentamiento = System.nanoTime() + configuracion.calentamiento().toNanos();
+        long fin = finCalentamiento + configuracion.duracion().toNanos();
+
+        System.out.printf("Prueba de carga contra %s: %d usuarios, %s de calentamiento y %s de medición%n",
+                objetivo, configuracion.usuarios(), configuracion.calentamiento(), configuracion.duracion());
+        List<Throwable> fallos = new ArrayList<>();
+        try (ExecutorService usuarios = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < configuracion.usuarios(); i++) {
+                usuarios.execute(() -> usuarioVirtual(cliente, configuracion, fin, fallos));
+            }
+            esperarHasta(finCalentamiento);
+            cliente.reiniciar();
+            long inicioMedicion = System.nanoTime();
+            esperarHasta(fin);
+            Duration medido = Duration.ofNanos(System.nanoTime() - inicioMedicion);
+
+            InformeCarga informe = new InformeCarga(objetivo, configuracion, tamanioPool, medido,
+                    cliente.recogerHistogramas(), cliente.recogerErrores());
+            informe.escribir(configuracion.informe());
+            informe.imprimir(System.out);
+            if (configuracion.comparar() != null) informe.compararCon(configuracion.comparar(), System.out);
+        }
+        synchronized (fallos) {
+            if (!fallos.isEmpty()) {
+                System.out.println("Primeras excepciones de los usuarios virtuales:");
+                fallos.stream().limit(5).forEach(fallo -> System.out.println("  " + fallo));
+            }
+        }
+    }
+
+    private static void usuarioVirtual(ClienteCarga cliente, Configuracion configuracion, long fin,
+                                       List<Throwable> fallos) {
+        RandomGenerator aleatorio = ThreadLocalRandom.current();
+        while (System.nanoTime() < fin) {
+            Escenario escenario = configuracion.elegir(aleatorio);
+            try {
+                escenario.ejecutar(cliente, configuracion, aleatorio);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception ex) {
+                cliente.contarError(escenario.getNombre());
+                synchronized (fallos) {
+                    if (fallos.size() < 100) fallos.add(ex);
+                }
+            }
+            try {
+                if (!configuracion.pausa().isZero()) Thread.sleep(configuracion.pausa());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private static void esperarHasta(long instanteNanos) throws InterruptedException {
+        long restante;
+        while ((restante = instanteNanos - System.nanoTime()) > 0) {
+            Thread.sleep(Duration.ofNanos(Math.min(restante, 1_000_000_000L)));
+        }
+    }
+
+    private static String propiedad(String nombre, String porDefecto) {
+        String valor = System.getProperty(nombre);
+        return valor == null || valor.isBlank() ? porDefecto : valor;
+    }
+}
@@ -0,0 +1,215 @@
+package com.santjosepobrero.basededatos.carga;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+/**
+ * Crea en una base de datos vacía las tablas de Sakila que usan /tabla y el dashboard,
+ * con la misma estructura e índices y el mismo número de filas que la Sakila original
+ * (datos sintéticos). Así la prueba de carga no necesita una Sakila importada.
+ */
+final class SakilaSintetica {
+
+    static final int ACTORES = 200;
+    static final int CATEGORIAS = 16;
+    static final int PELICULAS = 1000;
+    static final int PAISES = 109;
+    static final int CIUDADES = 600;
+    static final int DIRECCIONES = 603;
+    static final int CLIENTES = 599;
+    static final int ALQUILERES = 16044;
+
+    private static final String[] CLASIFICACIONES = {"G", "PG", "PG-13", "R", "NC-17"};
+    private static final String[] NOMBRES = {"PENELOPE", "NICK", "ED", "JENNIFER", "JOHNNY", "BETTE", "GRACE",
+            "MATTHEW", "JOE", "CHRISTIAN", "ZERO", "KARL", "UMA", "VIVIEN", "CUBA", "FRED", "HELEN", "DAN", "BOB",
+            "LUCILLE", "KIRSTEN", "ELVIS", "SANDRA", "CAMERON", "KEVIN", "RIP", "JULIA", "WOODY", "ALEC", "SISSY"};
+    private static final String[] APELLIDOS = {"GUINESS", "WAHLBERG", "CHASE", "DAVIS", "LOLLOBRIGIDA", "NICHOLSON",
+            "MOSTEL", "JOHANSSON", "SWANK", "GABLE", "CAGE", "BERRY", "WOOD", "BERGEN", "OLIVIER", "COSTNER",
+            "VOIGHT", "TORN", "FAWCETT", "TRACY", "PALTROW", "MARX", "KILMER", "STREEP", "BLOOM", "CRAWFORD"};
+
+    /** Rellena los parámetros de la fila {@code i} (empezando en 1). */
+    @FunctionalInterface
+    private interface Fila {
+        void rellenar(PreparedStatement ps, int i) throws SQLException;
+    }
+
+    private SakilaSintetica() {
+    }
+
+    /**
+     * Crea las tablas y sus filas.
+     *
+     * @param conexion Conexión a un esquema vacío
+     * @throws SQLException si falla la creación o la carga
+     */
+    static void crear(Connection conexion) throws SQLException {
+        try (Statement sentencia = conexion.createStatement()) {
+            sentencia.execute("""
+                    CREATE TABLE actor (
+                      actor_id SMALLINT UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
+                      first_name VARCHAR(45) NOT NULL,
+                      last_name VARCHAR(45) NOT NULL,
+                      last_update TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                      KEY idx_actor_last_name (last_name))""");
+            sentencia.execute("""
+                    CREATE TABLE category (
+                      category_id TINYINT UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
+                      name VARCHAR(25) NOT NULL,
+                      last_update TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP)""");
+            sentencia.execute("""
+                    CREATE TABLE film (
+                      film_id SMALLINT UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
+                      title VARCHAR(128) NOT NULL,
+                      description TEXT,
+                      release_year YEAR,
+                      language_id TINYINT UNSIGNED NOT NULL,
+                      rental_duration TINYINT UNSIGNED NOT NULL DEFAULT 3,
+                      rental_rate DECIMAL(4,2) NOT NULL DEFAULT 4.99,
+                      length SMALLINT UNSIGNED,
+                      replacement_cost DECIMAL(5,2) NOT NULL DEFAULT 19.99,
+                      rating ENUM('G','PG','PG-13','R','NC-17') DEFAULT 'G',
+                      last_update TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                      KEY idx_title (title))""");
+            sentencia.execute("""
+                    CREATE TABLE film_category (
+                      film_id SMALLINT UNSIGNED NOT NULL,
+                      category_id TINYINT UNSIGNED NOT NULL,
+                      last_update TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                      PRIMARY KEY (film_id, category_id),
+                      KEY fk_film_category_category (category_id))""");
+            sentencia.execute("""
+                    CREATE TABLE country (
+                      country_id SMALLINT UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
+                      country VARCHAR(50) NOT NULL,
+                      last_update TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP)""");
+            sentencia.execute("""
+                    CREATE TABLE city (
+                      city_id SMALLINT UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
+                      city VARCHAR(50) NOT NULL,
+                      country_id SMALLINT UNSIGNED NOT NULL,
+                      last_update TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                      KEY idx_fk_country_id (country_id))""");
+            sentencia.execute("""
+                    CREATE TABLE address (
+                      address_id SMALLINT UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
+                      address VARCHAR(50) NOT NULL,
+                      district VARCHAR(20) NOT NULL,
+                      city_id SMALLINT UNSIGNED NOT NULL,
+                      postal_code VARCHAR(10),
+                      phone VARCHAR(20) NOT NULL,
+                      last_update TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                      KEY idx_fk_city_id (city_id))""");
+            sentencia.execute("""
+                    CREATE TABLE customer (
+                      customer_id SMALLINT UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
+                      store_id TINYINT UNSIGNED NOT NULL,
+                      first_name VARCHAR(45) NOT NULL,
+                      last_name VARCHAR(45) NOT NULL,
+                      email VARCHAR(50),
+                      address_id SMALLINT UNSIGNED NOT NULL,
+                      active BOOLEAN NOT NULL DEFAULT TRUE,
+                      create_date DATETIME NOT NULL,
+                      last_update TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                      KEY idx_fk_address_id (address_id),
+                      KEY idx_last_name (last_name))""");
+            sentencia.execute("""
+                    CREATE TABLE rental (
+                      rental_id INT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+                      rental_date DATETIME NOT NULL,
+                      inventory_id MEDIUMINT UNSIGNED NOT NULL,
+                      customer_id SMALLINT UNSIGNED NOT NULL,
+                      return_date DATETIME,
+                      staff_id TINYINT UNSIGNED NOT NULL,
+                      last_update TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                      KEY idx_fk_customer_id (customer_id))""");
+        }
+
+        boolean autoCommitPrevio = conexion.getAutoCommit();
+        conexion.setAutoCommit(false);
+        try {
+            insertar(conexion, "INSERT INTO actor (first_name, last_name) VALUES (?, ?)", ACTORES, (ps, i) -> {
+                ps.setString(1, NOMBRES[i % NOMBRES.length]);
+                ps.setString(2, APELLIDOS[(i * 7) % APELLIDOS.length]);
+            });
+            insertar(conexion, "INSERT INTO category (name) VALUES (?)", CATEGORIAS,
+                    (ps, i) -> ps.setString(1, "Categoria " + i));
+            insertar(conexion, "INSERT INTO film (title, description, release_year, language_id, rental_duration,"
+                    + " rental_rate, length, replacement_cost, rating) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)", PELICULAS,
+                    (ps, i) -> {
+                        ps.setString(1, "PELICULA " + i);
+                        ps.setString(2, "Una historia sintética número " + i + " sobre un actor y un dentista en Canadá");
+                        ps.setInt(3, 2006);
+                        ps.setInt(4, 1);
+                        ps.setInt(5, 3 + i % 5);
+                        ps.setBigDecimal(6, new BigDecimal(i % 3 == 0 ? "0.99" : "4.99"));
+                        ps.setInt(7, 46 + i % 140);
+                        ps.setBigDecimal(8, new BigDecimal("19.99"));
+                        ps.setString(9, CLASIFICACIONES[i % CLASIFICACIONES.length]);
+                    });
+            insertar(conexion, "INSERT INTO film_category (film_id, category_id) VALUES (?, ?)", PELICULAS,
+                    (ps, i) -> {
+                        ps.setInt(1, i);
+                        ps.setInt(2, 1 + i % CATEGORIAS);
+                    });
+            insertar(conexion, "INSERT INTO country (country) VALUES (?)", PAISES,
+                    (ps, i) -> ps.setString(1, "Pais " + i));
+            insertar(conexion, "INSERT INTO city (city, country_id) VALUES (?, ?)", CIUDADES, (ps, i) -> {
+                ps.setString(1, "Ciudad " + i);
+                ps.setInt(2, 1 + i % PAISES);
+            });
+            insertar(conexion, "INSERT INTO address (address, district, city_id, postal_code, phone)"
+                    + " VALUES (?, ?, ?, ?, ?)", DIRECCIONES, (ps, i) -> {
+                ps.setString(1, i + " Calle Mayor");
+                ps.setString(2, "Distrito " + i % 50);
+                ps.setInt(3, 1 + i % CIUDADES);
+                ps.setString(4, String.format("%05d", i * 13 % 100000));
+                ps.setString(5, "600" + String.format("%06d", i));
+            });
+            insertar(conexion, "INSERT INTO customer (store_id, first_name, last_name, email, address_id, create_date)"
+                    + " VALUES (?, ?, ?, ?, ?, ?)", CLIENTES, (ps, i) -> {
+                ps.setInt(1, 1 + i % 2);
+                ps.setString(2, NOMBRES[(i * 3) % NOMBRES.length]);
+                ps.setString(3, APELLIDOS[i % APELLIDOS.length]);
+                ps.setString(4, "cliente" + i + "@sakilacustomer.org");
+                ps.setInt(5, 1 + i % DIRECCIONES);
+                ps.setTimestamp(6, Timestamp.valueOf(LocalDateTime.of(2006, 2, 14, 22, 4, 36)));
+            });
+            LocalDateTime inicio = LocalDateTime.of(2005, 5, 24, 22, 53);
+            insertar(conexion, "INSERT INTO rental (rental_date, inventory_id, customer_id, return_date, staff_id)"
+                    + " VALUES (?, ?, ?, ?, ?)", ALQUILERES, (ps, i) -> {
+                LocalDateTime fecha = inicio.plusMinutes(i * 23L);
+                ps.setTimestamp(1, Timestamp.valueOf(fecha));
+                ps.setInt(2, 1 + i % 4581);
+                ps.setInt(3, 1 + i % CLIENTES);
+                ps.setTimestamp(4, i % 100 == 0 ? null : Timestamp.valueOf(fecha.plusDays(1 + i % 9)));
+                ps.setInt(5, 1 + i % 2);
+            });
+            conexion.commit();
+        } catch (SQLException | RuntimeException ex) {
+            conexion.rollback();
+            throw ex;
+        } finally {
+            conexion.setAutoCommit(autoCommitPrevio);
+        }
+
+        try (Statement sentencia = conexion.createStatement()) {
+            sentencia.execute("ANALYZE TABLE actor, category, film, film_category, country, city, address, customer, rental");
+        }
+    }
+
+    private static void insertar(Connection conexion, String sql, int filas, Fila fila) throws SQLException {
+        try (PreparedStatement ps = conexion.prepareStatement(sql)) {
+            for (int i = 1; i <= filas; i++) {
+                fila.rellenar(ps, i);
+                ps.addBatch();
+                if (i % 1000 == 0) ps.executeBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+}
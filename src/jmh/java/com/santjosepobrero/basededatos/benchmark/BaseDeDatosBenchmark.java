@@ -0,0 +1,176 @@
+package com.santjosepobrero.basededatos.benchmark;
+
+import ch.vorburger.mariadb4j.DB;
+import ch.vorburger.mariadb4j.DBConfigurationBuilder;
+import com.santjosepobrero.basededatos.service.CacheResultadosSQL;
+import com.santjosepobrero.basededatos.service.CatalogoEsquema;
+import com.santjosepobrero.basededatos.service.MetricasConsultas;
+import com.santjosepobrero.basededatos.service.RegistroConsultasSQL;
+import com.santjosepobrero.basededatos.service.ServicioBaseDeDatos;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.util.unit.DataSize;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Base de datos para los benchmarks que leen filas.
+ * <p>
+ * Por defecto arranca un MariaDB embebido (MariaDB4j) y crea las tablas {@code film} y
+ * {@code rental} con la misma estructura y el mismo número de filas que en Sakila
+ * (1000 y 16044). Con {@code -Pbenchmark.url=jdbc:mariadb://...} (y opcionalmente
+ * {@code benchmark.usuario} / {@code benchmark.contrasena}) se usa en su lugar una base de
+ * datos Sakila ya existente, sin modificarla.
+ * <p>
+ * El {@link ServicioBaseDeDatos} se monta a mano, sin contexto de Spring, con un pool de
+ * Hikari configurado como el de la aplicación.
+ */
+@State(Scope.Benchmark)
+public class BaseDeDatosBenchmark {
+
+    static final int PELICULAS = 1000;
+    static final int ALQUILERES = 16044;
+
+    private static final String[] CLASIFICACIONES = {"G", "PG", "PG-13", "R", "NC-17"};
+
+    private DB baseEmbebida;
+    private HikariDataSource origenDeDatos;
+    private ServicioBaseDeDatos servicio;
+
+    @Setup
+    public void arrancar() throws Exception {
+        String url = System.getProperty("benchmark.url");
+        if (url == null || url.isBlank()) {
+            DBConfigurationBuilder configuracion = DBConfigurationBuilder.newBuilder();
+            configuracion.setPort(0);
+            baseEmbebida = DB.newEmbeddedDB(configuracion.build());
+            baseEmbebida.start();
+            baseEmbebida.createDB("sakila");
+            url = configuracion.getURL("sakila");
+            origenDeDatos = crearPool(url, "root", "");
+            crearDatos();
+        } else {
+            origenDeDatos = crearPool(url, System.getProperty("benchmark.usuario", "root"),
+                    System.getProperty("benchmark.contrasena", ""));
+        }
+
+        SimpleMeterRegistry registro = new SimpleMeterRegistry();
+        MetricasConsultas metricas = new MetricasConsultas(registro, Duration.ZERO, 0);
+        CatalogoEsquema catalogo = new CatalogoEsquema(origenDeDatos, metricas);
+        catalogo.refrescar();
+        // Sin caché de resultados, para medir siempre la lectura desde la base de datos
+        CacheResultadosSQL cache = new CacheResultadosSQL(catalogo, registro, false, DataSize.ofMegabytes(64),
+                Duration.ofMinutes(10));
+        servicio = new ServicioBaseDeDatos(origenDeDatos, new RegistroConsultasSQL(new DefaultResourceLoader()),
+                catalogo, metricas, cache);
+    }
+
+    @TearDown
+    public void parar() throws Exception {
+        if (origenDeDatos != null) origenDeDatos.close();
+        if (baseEmbebida != null) baseEmbebida.stop();
+    }
+
+    ServicioBaseDeDatos getServicio() {
+        return servicio;
+    }
+
+    Connection obtenerConexion() throws SQLException {
+        return origenDeDatos.getConnection();
+    }
+
+    private static HikariDataSource crearPool(String url, String usuario, String contrasena) {
+        HikariConfig configuracion = new HikariConfig();
+        configuracion.setJdbcUrl(url);
+        configuracion.setUsername(usuario);
+        configuracion.setPassword(contrasena);
+        configuracion.setMaximumPoolSize(4);
+        configuracion.addDataSourceProperty("useServerPrepStmts", "true");
+        configuracion.addDataSourceProperty("cachePrepStmts", "true");
+        configuracion.addDataSourceProperty("prepStmtCacheSize", "250");
+        return new HikariDataSource(configuracion);
+    }
+
+    /**
+     * Crea film y rental con las columnas de Sakila y datos sintéticos del mismo tamaño.
+     */
+    private void crearDatos() throws SQLException {
+        try (Connection conexion = origenDeDatos.getConnection();
+             Statement sentencia = conexion.createStatement()) {
+            sentencia.execute("""
+                    CREATE TABLE film (
+                      film_id SMALLINT UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
+                      title VARCHAR(128) NOT NULL,
+                      description TEXT,
+                      release_year YEAR,
+                      language_id TINYINT UNSIGNED NOT NULL,
+                      rental_duration TINYINT UNSIGNED NOT NULL DEFAULT 3,
+                      rental_rate DECIMAL(4,2) NOT NULL DEFAULT 4.99,
+                      length SMALLINT UNSIGNED,
+                      replacement_cost DECIMAL(5,2) NOT NULL DEFAULT 19.99,
+                      rating ENUM('G','PG','PG-13','R','NC-17') DEFAULT 'G',
+                      last_update TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                      KEY idx_title (title))""");
+            sentencia.execute("""
+                    CREATE TABLE rental (
+                      rental_id INT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+                      rental_date DATETIME NOT NULL,
+                      inventory_id MEDIUMINT UNSIGNED NOT NULL,
+                      customer_id SMALLINT UNSIGNED NOT NULL,
+                      return_date DATETIME,
+                      staff_id TINYINT UNSIGNED NOT NULL,
+                      last_update TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                      KEY idx_fk_customer_id (customer_id))""");
+
+            conexion.setAutoCommit(false);
+            try (PreparedStatement ps = conexion.prepareStatement(
+                    "INSERT INTO film (title, description, release_year, language_id, rental_duration, rental_rate,"
+                    + " length, replacement_cost, rating) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+                for (int i = 1; i <= PELICULAS; i++) {
+                    ps.setString(1, "PELICULA " + i);
+                    ps.setString(2, "Una historia sintética número " + i + " sobre un actor y un dentista en Canadá");
+                    ps.setInt(3, 2006);
+                    ps.setInt(4, 1);
+                    ps.setInt(5, 3 + i % 5);
+                    ps.setBigDecimal(6, new BigDecimal(i % 3 == 0 ? "0.99" : "4.99"));
+                    ps.setInt(7, 46 + i % 140);
+                    ps.setBigDecimal(8, new BigDecimal("19.99"));
+                    ps.setString(9, CLASIFICACIONES[i % CLASIFICACIONES.length]);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            try (PreparedStatement ps = conexion.prepareStatement(
+                    "INSERT INTO rental (rental_date, inventory_id, customer_id, return_date, staff_id)"
+                    + " VALUES (?, ?, ?, ?, ?)")) {
+                LocalDateTime inicio = LocalDateTime.of(2005, 5, 24, 22, 53);
+                for (int i = 1; i <= ALQUILERES; i++) {
+                    LocalDateTime fecha = inicio.plusMinutes(i * 23L);
+                    ps.setTimestamp(1, Timestamp.valueOf(fecha));
+                    ps.setInt(2, 1 + i % 4581);
+                    ps.setInt(3, 1 + i % 599);
+                    ps.setTimestamp(4, i % 100 == 0 ? null : Timestamp.valueOf(fecha.plusDays(1 + i % 9)));
+                    ps.setInt(5, 1 + i % 2);
+                    ps.addBatch();
+                    if (i % 1000 == 0) ps.executeBatch();
+                }
+                ps.executeBatch();
+            }
+            conexion.commit();
+            sentencia.execute("ANALYZE TABLE film, rental");
+        }
+    }
+}
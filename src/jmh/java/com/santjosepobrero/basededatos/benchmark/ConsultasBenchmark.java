@@ -0,0 +1,97 @@
+package com.santjosepobrero.basededatos.benchmark;
+
+import com.santjosepobrero.basededatos.service.ResultadoColumnar;
+import com.santjosepobrero.basededatos.service.ServicioBaseDeDatos;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lectura de filas con {@link ServicioBaseDeDatos} sobre la base de datos de {@link BaseDeDatosBenchmark}.
+ * <p>
+ * {@link #filasComoMapas} lee las mismas filas que {@link #ejecutarSQLDirecta} a una
+ * {@code List<Map>} por fila, como se hacía antes de {@link ResultadoColumnar}, para comparar
+ * los bytes asignados por operación (gc.alloc.rate.norm).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ConsultasBenchmark {
+
+    /** Tabla ancha con texto (film) y tabla estrecha con muchas filas (rental). */
+    @Param({"film", "rental"})
+    public String tabla;
+
+    /** Tamaño de página de la vista /tabla y tamaño máximo de la API. */
+    @Param({"20", "1000"})
+    public int tamanio;
+
+    private ServicioBaseDeDatos servicio;
+    private String consultaDirecta;
+    private ResultadoColumnar totales;
+    private int paginaMedia;
+
+    @Setup
+    public void preparar(BaseDeDatosBenchmark baseDeDatos) throws SQLException {
+        servicio = baseDeDatos.getServicio();
+        consultaDirecta = "SELECT * FROM " + tabla + " LIMIT " + tamanio;
+        totales = servicio.ejecutarSQLDirecta("SELECT COUNT(*) AS total FROM " + tabla);
+        // Según el tamaño de la tabla: una página fija se sale de film (1000 filas) con 1000 por página
+        paginaMedia = ServicioBaseDeDatos.obtenerTotalGenerico(totales) / tamanio / 2;
+    }
+
+    @Benchmark
+    public ResultadoColumnar obtenerPrimeraPagina() throws SQLException {
+        return servicio.obtenerDatosTabla(tabla, 0, tamanio);
+    }
+
+    @Benchmark
+    public ResultadoColumnar obtenerDatosTabla() throws SQLException {
+        // Página del medio: con OFFSET el servidor recorre las filas anteriores
+        return servicio.obtenerDatosTabla(tabla, paginaMedia, tamanio);
+    }
+
+    @Benchmark
+    public ResultadoColumnar ejecutarSQLDirecta() throws SQLException {
+        return servicio.ejecutarSQLDirecta(consultaDirecta);
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> filasComoMapas(BaseDeDatosBenchmark baseDeDatos) throws SQLException {
+        try (Connection conexion = baseDeDatos.obtenerConexion();
+             Statement sentencia = conexion.createStatement();
+             ResultSet rs = sentencia.executeQuery(consultaDirecta)) {
+            ResultSetMetaData meta = rs.getMetaData();
+            int columnas = meta.getColumnCount();
+            List<Map<String, Object>> filas = new ArrayList<>();
+            while (rs.next()) {
+                Map<String, Object> fila = new LinkedHashMap<>();
+                for (int i = 1; i <= columnas; i++)
+                    fila.put(meta.getColumnName(i), rs.getObject(i));
+                filas.add(fila);
+            }
+            return filas;
+        }
+    }
+
+    @Benchmark
+    public int obtenerTotalGenerico() {
+        return ServicioBaseDeDatos.obtenerTotalGenerico(totales);
+    }
+}
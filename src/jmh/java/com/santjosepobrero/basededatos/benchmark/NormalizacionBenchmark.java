@@ -0,0 +1,50 @@
+package com.santjosepobrero.basededatos.benchmark;
+
+import com.santjosepobrero.basededatos.service.ServicioBaseDeDatos;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Normalización de nombres de tabla y de archivo, que se hace en cada petición a /tabla
+ * y en cada consulta del dashboard. No necesita base de datos.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class NormalizacionBenchmark {
+
+    /** Nombre ya válido, con mayúsculas y espacios, y con caracteres que hay que sustituir. */
+    @Param({"film_actor", " Film_Actor ", "film actor;--"})
+    public String nombre;
+
+    private ServicioBaseDeDatos servicio;
+
+    @Setup
+    public void preparar() {
+        // La normalización no usa la fuente de datos ni el catálogo
+        servicio = new ServicioBaseDeDatos(null, null, null, null, null);
+    }
+
+    @Benchmark
+    public String normalizarNombre() {
+        return servicio.normalizarNombre(nombre);
+    }
+
+    @Benchmark
+    public String normalizarNombreTabla() {
+        return servicio.normalizarNombreTabla(nombre);
+    }
+
+    @Benchmark
+    public String normalizarNombreArchivoSQL() {
+        return servicio.normalizarNombreArchivoSQL(nombre);
+    }
+}
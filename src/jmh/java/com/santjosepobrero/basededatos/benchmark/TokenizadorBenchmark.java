@@ -0,0 +1,84 @@
+package com.santjosepobrero.basededatos.benchmark;
+
+import com.santjosepobrero.basededatos.service.TokenizadorSQL;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * División de un script SQL subido en sentencias.
+ * <p>
+ * {@link #tokenizador} es lo que hace ahora {@code EjecutorScriptSQL}. {@link #expresionRegularYSplit}
+ * reproduce la forma anterior de {@code ejecutarSQLdeArchivo} (quitar comentarios con
+ * {@code replaceAll} y hacer {@code split(";")} sobre el texto entero) como referencia.
+ * El script no lleva ';' dentro de literales para que ambas den las mismas sentencias.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TokenizadorBenchmark {
+
+    @Param({"100", "10000"})
+    public int sentencias;
+
+    private String script;
+
+    @Setup
+    public void preparar() throws IOException {
+        StringBuilder texto = new StringBuilder("-- Volcado de prueba\n/* Datos de actores\n   generados */\n");
+        for (int i = 0; i < sentencias; i++) {
+            if (i % 50 == 0) texto.append("-- Bloque ").append(i / 50).append('\n');
+            texto.append("INSERT INTO actor (actor_id, first_name, last_name, last_update) VALUES (")
+                    .append(i).append(", 'NOMBRE ").append(i).append("', 'O''BRIEN', '2006-02-15 04:34:33');\n");
+        }
+        script = texto.toString();
+
+        int divididas = contar(dividirConExpresionRegular());
+        int tokenizadas = 0;
+        TokenizadorSQL tokenizador = new TokenizadorSQL(new StringReader(script), Integer.MAX_VALUE);
+        while (tokenizador.siguiente() != null) tokenizadas++;
+        if (divididas != sentencias || tokenizadas != sentencias) {
+            throw new IllegalStateException("Sentencias esperadas " + sentencias + ", split " + divididas
+                    + ", tokenizador " + tokenizadas);
+        }
+    }
+
+    @Benchmark
+    public void tokenizador(Blackhole agujero) throws IOException {
+        TokenizadorSQL tokenizador = new TokenizadorSQL(new StringReader(script), Integer.MAX_VALUE);
+        String sql;
+        while ((sql = tokenizador.siguiente()) != null)
+            agujero.consume(sql);
+    }
+
+    @Benchmark
+    public void expresionRegularYSplit(Blackhole agujero) {
+        for (String sentencia : dividirConExpresionRegular()) {
+            String s = sentencia.trim();
+            if (!s.isEmpty()) agujero.consume(s);
+        }
+    }
+
+    private String[] dividirConExpresionRegular() {
+        String contenidoSQL = script.replaceAll("(?m)^\\s*--.*$", "");
+        contenidoSQL = contenidoSQL.replaceAll("/\\*.*?\\*/", "");
+        return contenidoSQL.trim().split(";");
+    }
+
+    private static int contar(String[] sentencias) {
+        int total = 0;
+        for (String sentencia : sentencias)
+            if (!sentencia.trim().isEmpty()) total++;
+        return total;
+    }
+}
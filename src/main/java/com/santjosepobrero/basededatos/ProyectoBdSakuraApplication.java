@@ -2,13 +2,16 @@ package com.santjosepobrero.basededatos;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * Clase principal de la aplicación.
  * Aquí es donde arranca todo el proyecto de Spring Boot.
  * Básicamente, es el punto de entrada de nuestra app.
+ * También activa las tareas programadas (refresco del catálogo del esquema, etc.).
  */
 @SpringBootApplication
+@EnableScheduling
 public class ProyectoBdSakuraApplication {
 
     /**
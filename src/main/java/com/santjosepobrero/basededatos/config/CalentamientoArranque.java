@@ -0,0 +1,243 @@
+package com.santjosepobrero.basededatos.config;
+
+import com.santjosepobrero.basededatos.service.DatosDashboard;
+import com.santjosepobrero.basededatos.service.ServicioDashboard;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Calienta la aplicación al arrancar, antes de que readiness pase a UP.
+ * <p>
+ * Spring publica {@code ReadinessState.ACCEPTING_TRAFFIC} justo después de los escuchadores
+ * de {@link ApplicationReadyEvent}, así que mientras este se ejecuta el servidor ya escucha
+ * pero /actuator/health/readiness sigue fuera de servicio y el balanceador no envía tráfico.
+ * Se ejecuta el último, después de cargar el catálogo y preparar los resumenes del dashboard:
+ * <ol>
+ *     <li>Abre a la vez tantas conexiones como el mínimo de inactivas del pool principal (y otras
+ *     tantas de solo lectura, que van a las réplicas si las hay), para que las primeras
+ *     peticiones no esperen a que Hikari las abra.</li>
+ *     <li>Ejecuta una vez las consultas stat_*.sql del dashboard, que quedan en su caché.</li>
+ *     <li>Pide varias veces las rutas de {@code arranque.calentamiento.rutas} al propio servidor,
+ *     para que se carguen las clases, se compilen las plantillas y el JIT empiece a trabajar.</li>
+ * </ol>
+ * Mide el tiempo desde que arrancó la JVM hasta la primera ronda en la que todas las rutas
+ * responden por debajo de {@code arranque.calentamiento.respuesta-rapida}, lo escribe en el log
+ * y lo publica como métrica ({@code arranque.primera.respuesta.rapida}). Si algo falla se
+ * registra y la aplicación arranca igualmente, solo que en frío.
+ */
+@Component
+public class CalentamientoArranque {
+
+    private static final Logger logger = Logger.getLogger(CalentamientoArranque.class.getName());
+
+    private final DataSource origenDeDatos;
+    private final ServicioDashboard servicioDashboard;
+    private final MeterRegistry registro;
+    private final boolean habilitado;
+    private final List<String> rutas;
+    private final int repeticiones;
+    private final Duration respuestaRapida;
+    private final Duration tiempoMaximoPeticion;
+    private final String rutaBase;
+
+    /**
+     * @param origenDeDatos Fuente de datos JDBC, cuyo pool se llena
+     * @param servicioDashboard Servicio del dashboard, para ejecutar las consultas stat_*.sql
+     * @param registro Registro de métricas, donde se publican los tiempos de arranque
+     * @param habilitado false para arrancar sin calentar
+     * @param rutas Rutas que se piden al propio servidor, separadas por comas
+     * @param repeticiones Rondas máximas de peticiones a las rutas
+     * @param respuestaRapida Duración por debajo de la cual una respuesta se considera rápida
+     * @param tiempoMaximoPeticion Espera máxima de cada petición
+     * @param rutaBase Ruta de contexto de la aplicación
+     */
+    public CalentamientoArranque(DataSource origenDeDatos, ServicioDashboard servicioDashboard, MeterRegistry registro,
+                                 @Value("${arranque.calentamiento.habilitado:true}") boolean habilitado,
+                                 @Value("${arranque.calentamiento.rutas:/tablas,/tabla/film,/dashboard,/api/dashboard}")
+                                 String rutas,
+                                 @Value("${arranque.calentamiento.repeticiones:20}") int repeticiones,
+                                 @Value("${arranque.calentamiento.respuesta-rapida:PT0.2S}") Duration respuestaRapida,
+                                 @Value("${arranque.calentamiento.tiempo-maximo-peticion:PT30S}")
+                                 Duration tiempoMaximoPeticion,
+                                 @Value("${server.servlet.context-path:}") String rutaBase) {
+        this.origenDeDatos = origenDeDatos;
+        this.servicioDashboard = servicioDashboard;
+        this.registro = registro;
+        this.habilitado = habilitado;
+        this.rutas = Arrays.stream(rutas.split(",")).map(String::trim).filter(ruta -> !ruta.isEmpty()).toList();
+        this.repeticiones = Math.max(repeticiones, 1);
+        this.respuestaRapida = respuestaRapida;
+        this.tiempoMaximoPeticion = tiempoMaximoPeticion;
+        this.rutaBase = rutaBase;
+    }
+
+    /**
+     * Calienta la aplicación y escribe en el log cuánto ha tardado cada fase.
+     *
+     * @param evento Evento de aplicación lista, del que se saca el puerto del servidor
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void calentar(ApplicationReadyEvent evento) {
+        long arranqueMs = ManagementFactory.getRuntimeMXBean().getUptime();
+        if (!habilitado) return;
+
+        long inicio = System.nanoTime();
+        long poolMs = medirFase("llenar el pool de conexiones", this::llenarPool);
+        long estadisticasMs = medirFase("ejecutar las consultas del dashboard", this::ejecutarEstadisticas);
+        long rutasMs = 0;
+        Long primeraRapidaMs = null;
+        Map<String, long[]> latencias = new LinkedHashMap<>();
+        if (evento.getApplicationContext() instanceof WebServerApplicationContext contextoWeb) {
+            long inicioRutas = System.nanoTime();
+            try {
+                primeraRapidaMs = pedirRutas(contextoWeb.getWebServer().getPort(), latencias);
+            } catch (Exception ex) {
+                logger.log(Level.WARNING, "Calentamiento: no se pudieron pedir las rutas", ex);
+            }
+            rutasMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicioRutas);
+        }
+        long calentamientoMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+
+        TimeGauge.builder("arranque.calentamiento", () -> calentamientoMs, TimeUnit.MILLISECONDS)
+                .description("Duración del calentamiento previo a readiness").register(registro);
+        if (primeraRapidaMs != null) {
+            long primera = primeraRapidaMs;
+            TimeGauge.builder("arranque.primera.respuesta.rapida", () -> primera, TimeUnit.MILLISECONDS)
+                    .description("Tiempo desde el arranque de la JVM hasta que todas las rutas responden rápido")
+                    .register(registro);
+        }
+
+        StringBuilder informe = new StringBuilder("Arranque: aplicación lista a los ").append(arranqueMs)
+                .append(" ms de arrancar la JVM; calentamiento de ").append(calentamientoMs).append(" ms (pool ")
+                .append(poolMs).append(" ms, consultas del dashboard ").append(estadisticasMs).append(" ms, rutas ")
+                .append(rutasMs).append(" ms). ");
+        informe.append(primeraRapidaMs != null
+                ? "Primera respuesta rápida (< " + respuestaRapida.toMillis() + " ms en todas las rutas) a los "
+                  + primeraRapidaMs + " ms de arrancar la JVM."
+                : "Las rutas no han llegado a responder en menos de " + respuestaRapida.toMillis() + " ms.");
+        latencias.forEach((ruta, medidas) -> informe.append("\n  ").append(ruta).append(": primera petición ")
+                .append(medidas[0]).append(" ms, última ").append(medidas[1]).append(" ms"));
+        logger.info(informe.toString());
+    }
+
+    /**
+     * Abre las conexiones del pool a la vez (una petición en serie reutilizaría siempre la misma)
+     * y las devuelve cuando están todas abiertas. Primero las de la principal y después las de
+     * solo lectura, para no pedir nunca más de las que caben en el pool.
+     */
+    private void llenarPool() throws Exception {
+        int conexiones = origenDeDatos.isWrapperFor(HikariDataSource.class)
+                ? origenDeDatos.unwrap(HikariDataSource.class).getMinimumIdle() : 1;
+        for (boolean soloLectura : new boolean[]{false, true}) {
+            CountDownLatch abiertas = new CountDownLatch(conexiones);
+            CountDownLatch devolver = new CountDownLatch(1);
+            try (ExecutorService hilos = Executors.newVirtualThreadPerTaskExecutor()) {
+                List<Future<?>> tareas = new ArrayList<>();
+                for (int i = 0; i < conexiones; i++) {
+                    tareas.add(hilos.submit(() -> {
+                        try (Connection conexion = origenDeDatos.getConnection()) {
+                            conexion.setReadOnly(soloLectura);
+                            // Con réplicas la conexión es perezosa: isValid obliga a pedir la real
+                            conexion.isValid((int) tiempoMaximoPeticion.toSeconds());
+                            abiertas.countDown();
+                            devolver.await();
+                        }
+                        return null;
+                    }));
+                }
+                abiertas.await(tiempoMaximoPeticion.toMillis(), TimeUnit.MILLISECONDS);
+                devolver.countDown();
+                for (Future<?> tarea : tareas) tarea.get();
+            }
+        }
+    }
+
+    private void ejecutarEstadisticas() throws SQLException {
+        DatosDashboard datos = servicioDashboard.cargarEstadisticas();
+        if (!datos.getErrores().isEmpty()) {
+            throw new SQLException("fallaron las series " + datos.getErrores().keySet());
+        }
+    }
+
+    /**
+     * Pide todas las rutas en rondas hasta que en una todas responden rápido.
+     *
+     * @param latencias Se rellena con la latencia de la primera y la última petición de cada ruta
+     * @return Milisegundos desde el arranque de la JVM hasta esa ronda, o null si no se ha llegado
+     */
+    private Long pedirRutas(int puerto, Map<String, long[]> latencias) throws Exception {
+        if (rutas.isEmpty()) return null;
+        try (HttpClient cliente = HttpClient.newBuilder().connectTimeout(tiempoMaximoPeticion).build()) {
+            for (int ronda = 0; ronda < repeticiones; ronda++) {
+                boolean todasRapidas = true;
+                for (String ruta : rutas) {
+                    HttpRequest peticion = HttpRequest.newBuilder(URI.create("http://localhost:" + puerto + rutaBase + ruta))
+                            .timeout(tiempoMaximoPeticion).GET().build();
+                    long inicio = System.nanoTime();
+                    HttpResponse<Void> respuesta = cliente.send(peticion, HttpResponse.BodyHandlers.discarding());
+                    long ms = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+                    if (respuesta.statusCode() >= 400) {
+                        logger.warning("Calentamiento: " + ruta + " respondió " + respuesta.statusCode());
+                    }
+                    latencias.computeIfAbsent(ruta, clave -> new long[]{ms, ms})[1] = ms;
+                    if (ms >= respuestaRapida.toMillis()) todasRapidas = false;
+                }
+                if (todasRapidas) return ManagementFactory.getRuntimeMXBean().getUptime();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Ejecuta una fase del calentamiento; si falla lo registra y sigue con la siguiente.
+     *
+     * @return Duración de la fase en milisegundos
+     */
+    private long medirFase(String descripcion, Fase fase) {
+        long inicio = System.nanoTime();
+        try {
+            fase.ejecutar();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (Exception ex) {
+            logger.log(Level.WARNING, "Calentamiento: no se pudo " + descripcion, ex);
+        }
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+    }
+
+    @FunctionalInterface
+    private interface Fase {
+        void ejecutar() throws Exception;
+    }
+}
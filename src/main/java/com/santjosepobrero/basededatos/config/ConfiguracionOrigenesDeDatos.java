@@ -0,0 +1,116 @@
+package com.santjosepobrero.basededatos.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Orígenes de datos de la aplicación: la base de datos principal y, opcionalmente, réplicas
+ * de lectura ({@code replicas.urls}).
+ * <p>
+ * Sin réplicas, el único origen de datos es el pool de {@code spring.datasource}, como antes.
+ * Con réplicas, el origen de datos que se inyecta es un {@link LazyConnectionDataSourceProxy}:
+ * no pide la conexión real hasta la primera sentencia, y si antes se ha llamado a
+ * {@code setReadOnly(true)} la pide a {@link OrigenReplicas}. Así los servicios marcan sus
+ * lecturas sin saber cuántas bases de datos hay, y todo lo demás (scripts subidos, sentencias
+ * que modifican) va a la principal.
+ */
+@Configuration
+public class ConfiguracionOrigenesDeDatos {
+
+    private HikariDataSource principal;
+    private OrigenReplicas origenReplicas;
+
+    /**
+     * Crea el pool principal y, si hay réplicas configuradas, un pool por réplica.
+     *
+     * @param propiedades Propiedades {@code spring.datasource} de la base de datos principal
+     * @param entorno Entorno, para aplicar {@code spring.datasource.hikari.*} al pool principal
+     * @param registro Registro de métricas, para las métricas de los pools de las réplicas
+     * @param urlsReplicas URLs JDBC de las réplicas separadas por comas (vacío = sin réplicas)
+     * @param usuarioReplicas Usuario de las réplicas (vacío = el de la principal)
+     * @param contrasenaReplicas Contraseña de las réplicas (vacío = la de la principal)
+     * @param tamanioPoolReplicas Conexiones máximas del pool de cada réplica
+     * @param tiempoMaximoConexion Espera máxima por una conexión de una réplica antes de probar otra
+     * @param retrasoMaximo Retraso de replicación máximo admitido (0 = no se comprueba)
+     * @return Origen de datos de la aplicación
+     */
+    @Bean
+    public DataSource origenDeDatos(DataSourceProperties propiedades, Environment entorno, MeterRegistry registro,
+                                    @Value("${replicas.urls:}") String urlsReplicas,
+                                    @Value("${replicas.usuario:}") String usuarioReplicas,
+                                    @Value("${replicas.contrasena:}") String contrasenaReplicas,
+                                    @Value("${replicas.tamanio-pool:10}") int tamanioPoolReplicas,
+                                    @Value("${replicas.tiempo-maximo-conexion:PT2S}") Duration tiempoMaximoConexion,
+                                    @Value("${replicas.retraso-maximo:PT0S}") Duration retrasoMaximo) {
+        principal = propiedades.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        Binder.get(entorno).bind("spring.datasource.hikari", Bindable.ofInstance(principal));
+        if (principal.getPoolName() == null) principal.setPoolName("principal");
+
+        List<String> urls = Arrays.stream(urlsReplicas.split(",")).map(String::trim).filter(url -> !url.isEmpty())
+                .toList();
+        // Sin réplicas Spring cierra el pool principal al parar, como cualquier HikariDataSource
+        if (urls.isEmpty()) return principal;
+
+        List<HikariDataSource> pools = new ArrayList<>();
+        for (int i = 0; i < urls.size(); i++) {
+            HikariConfig configuracion = new HikariConfig();
+            principal.copyStateTo(configuracion);
+            configuracion.setPoolName("replica-" + (i + 1));
+            configuracion.setJdbcUrl(urls.get(i));
+            if (!usuarioReplicas.isBlank()) configuracion.setUsername(usuarioReplicas);
+            if (!contrasenaReplicas.isBlank()) configuracion.setPassword(contrasenaReplicas);
+            configuracion.setMaximumPoolSize(tamanioPoolReplicas);
+            configuracion.setReadOnly(true);
+            configuracion.setConnectionTimeout(tiempoMaximoConexion.toMillis());
+            // La aplicación arranca aunque una réplica no responda; se usa la principal mientras tanto
+            configuracion.setInitializationFailTimeout(-1);
+            configuracion.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registro));
+            pools.add(new HikariDataSource(configuracion));
+        }
+        origenReplicas = new OrigenReplicas(pools, principal, retrasoMaximo);
+        origenReplicas.comprobar();
+
+        LazyConnectionDataSourceProxy origen = new LazyConnectionDataSourceProxy(principal);
+        origen.setReadOnlyDataSource(origenReplicas);
+        // Con los valores por defecto fijados no se pide una conexión al arrancar para averiguarlos
+        origen.setDefaultAutoCommit(true);
+        origen.setDefaultTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+        return origen;
+    }
+
+    /**
+     * Vuelve a comprobar si cada réplica responde y está al día.
+     */
+    @Scheduled(fixedDelayString = "${replicas.intervalo-comprobacion:PT10S}",
+            initialDelayString = "${replicas.intervalo-comprobacion:PT10S}")
+    public void comprobarReplicas() {
+        if (origenReplicas != null) origenReplicas.comprobar();
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        if (origenReplicas != null) {
+            origenReplicas.close();
+            principal.close();
+        }
+    }
+}
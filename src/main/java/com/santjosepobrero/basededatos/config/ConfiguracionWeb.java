@@ -0,0 +1,47 @@
+package com.santjosepobrero.basededatos.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.web.filter.ShallowEtagHeaderFilter;
+
+/**
+ * Configuración web de la aplicación.
+ */
+@Configuration
+public class ConfiguracionWeb {
+
+    /**
+     * Añade un ETag calculado sobre el cuerpo a las respuestas que no tienen una versión
+     * barata de calcular (datos de tablas y estadísticas, y la página del dashboard).
+     * Si el cliente ya tiene ese contenido se responde 304 sin cuerpo.
+     *
+     * @return Registro del filtro limitado a esas rutas
+     */
+    @Bean
+    public FilterRegistrationBean<ShallowEtagHeaderFilter> filtroEtag() {
+        FilterRegistrationBean<ShallowEtagHeaderFilter> registro =
+                new FilterRegistrationBean<>(new ShallowEtagHeaderFilter());
+        registro.addUrlPatterns("/api/tabla/*", "/api/dashboard", "/dashboard");
+        registro.setName("filtroEtag");
+        return registro;
+    }
+
+    /**
+     * Cuenta los bytes generados por cada respuesta. Va por fuera del filtro de ETag para
+     * contar lo que realmente se envía (nada en un 304).
+     *
+     * @param registro Registro de métricas de Micrometer
+     * @return Registro del filtro para todas las rutas
+     */
+    @Bean
+    public FilterRegistrationBean<FiltroBytesRespuesta> filtroBytesRespuesta(MeterRegistry registro) {
+        FilterRegistrationBean<FiltroBytesRespuesta> filtro =
+                new FilterRegistrationBean<>(new FiltroBytesRespuesta(registro));
+        filtro.setName("filtroBytesRespuesta");
+        filtro.setOrder(Ordered.LOWEST_PRECEDENCE - 10);
+        return filtro;
+    }
+}
@@ -0,0 +1,165 @@
+package com.santjosepobrero.basededatos.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
+/**
+ * Cuenta los bytes que escribe cada respuesta antes de comprimirla y los registra en
+ * {@code basededatos.respuesta.bytes}, etiquetados por el patrón de la ruta (/tabla/{nombre},
+ * /api/dashboard...). Así se ve cuánto HTML o JSON genera cada vista, además de su latencia
+ * ({@code http.server.requests}).
+ * <p>
+ * Las descargas asíncronas (exportaciones) se registran al terminar el streaming.
+ */
+public class FiltroBytesRespuesta extends OncePerRequestFilter {
+
+    private final MeterRegistry registro;
+
+    /**
+     * @param registro Registro de métricas de Micrometer
+     */
+    public FiltroBytesRespuesta(MeterRegistry registro) {
+        this.registro = registro;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest peticion, HttpServletResponse respuesta, FilterChain cadena)
+            throws ServletException, IOException {
+        RespuestaContada contada = new RespuestaContada(respuesta);
+        try {
+            cadena.doFilter(peticion, contada);
+            contada.vaciarEscritor();
+        } finally {
+            if (peticion.isAsyncStarted()) {
+                peticion.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent evento) {
+                        registrar(peticion, contada);
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent evento) {
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent evento) {
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent evento) {
+                    }
+                });
+            } else {
+                registrar(peticion, contada);
+            }
+        }
+    }
+
+    private void registrar(HttpServletRequest peticion, RespuestaContada contada) {
+        Object patron = peticion.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        DistributionSummary.builder("basededatos.respuesta.bytes")
+                .description("Bytes generados por cada respuesta, antes de comprimir")
+                .baseUnit("bytes")
+                .tag("uri", patron != null ? patron.toString() : "desconocida")
+                .register(registro)
+                .record(contada.bytes);
+    }
+
+    /**
+     * Respuesta que cuenta los bytes escritos, tanto por el flujo de salida como por el escritor.
+     */
+    private static class RespuestaContada extends HttpServletResponseWrapper {
+
+        private volatile long bytes;
+        private ServletOutputStream salida;
+        private PrintWriter escritor;
+
+        RespuestaContada(HttpServletResponse respuesta) {
+            super(respuesta);
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (escritor != null) throw new IllegalStateException("Ya se ha llamado a getWriter()");
+            if (salida == null) salida = new SalidaContada(super.getOutputStream());
+            return salida;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (escritor == null) {
+                if (salida != null) throw new IllegalStateException("Ya se ha llamado a getOutputStream()");
+                escritor = new PrintWriter(new OutputStreamWriter(new SalidaContada(super.getOutputStream()),
+                        getCharacterEncoding()));
+            }
+            return escritor;
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            vaciarEscritor();
+            super.flushBuffer();
+        }
+
+        void vaciarEscritor() {
+            if (escritor != null) escritor.flush();
+        }
+
+        /** Flujo de salida que suma a la respuesta los bytes que pasan por él. */
+        private class SalidaContada extends ServletOutputStream {
+
+            private final ServletOutputStream destino;
+
+            SalidaContada(ServletOutputStream destino) {
+                this.destino = destino;
+            }
+
+            @Override
+            public void write(int b) throws IOException {
+                destino.write(b);
+                bytes++;
+            }
+
+            @Override
+            public void write(byte[] datos, int desde, int longitud) throws IOException {
+                destino.write(datos, desde, longitud);
+                bytes += longitud;
+            }
+
+            @Override
+            public void flush() throws IOException {
+                destino.flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                destino.close();
+            }
+
+            @Override
+            public boolean isReady() {
+                return destino.isReady();
+            }
+
+            @Override
+            public void setWriteListener(WriteListener escucha) {
+                destino.setWriteListener(escucha);
+            }
+        }
+    }
+}
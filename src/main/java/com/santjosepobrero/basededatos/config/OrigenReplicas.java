@@ -0,0 +1,145 @@
+package com.santjosepobrero.basededatos.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Origen de datos de solo lectura que reparte las conexiones entre las réplicas por turnos.
+ * <p>
+ * Cada réplica tiene su propio pool. Se saltan las réplicas marcadas como no disponibles, ya
+ * sea porque no se pudo obtener una conexión o porque en la última comprobación su retraso de
+ * replicación superaba el máximo. Si no queda ninguna disponible, las lecturas van a la
+ * base de datos principal. Que el pool de una réplica esté ocupado y no entregue una conexión
+ * a tiempo no la marca como caída: se prueba la siguiente.
+ */
+public class OrigenReplicas extends AbstractDataSource implements AutoCloseable {
+
+    private static final Logger logger = Logger.getLogger(OrigenReplicas.class.getName());
+
+    /** Código de MariaDB para "Access denied; you need the ... privilege(s)". */
+    private static final int ERROR_SIN_PRIVILEGIO = 1227;
+
+    private final List<Replica> replicas;
+    private final DataSource principal;
+    private final Duration retrasoMaximo;
+    private final AtomicInteger siguiente = new AtomicInteger();
+
+    /**
+     * @param pools Pool de cada réplica
+     * @param principal Origen de datos al que se recurre si no hay ninguna réplica disponible
+     * @param retrasoMaximo Retraso de replicación máximo admitido (0 = no se comprueba)
+     */
+    public OrigenReplicas(List<HikariDataSource> pools, DataSource principal, Duration retrasoMaximo) {
+        this.replicas = pools.stream().map(Replica::new).toList();
+        this.principal = principal;
+        this.retrasoMaximo = retrasoMaximo;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        int total = replicas.size();
+        int inicio = Math.floorMod(siguiente.getAndIncrement(), total);
+        for (int i = 0; i < total; i++) {
+            Replica replica = replicas.get((inicio + i) % total);
+            if (!replica.disponible) continue;
+            try {
+                return replica.pool.getConnection();
+            } catch (SQLException ex) {
+                if (!poolOcupado(ex)) replica.marcar(false, ex.getMessage());
+            }
+        }
+        return principal.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String usuario, String contrasena) throws SQLException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    /**
+     * Comprueba cada réplica: que responde y, si hay retraso máximo, que su
+     * {@code Seconds_Behind_Master} no lo supera. Una réplica sin replicación configurada
+     * (SHOW SLAVE STATUS vacío) se considera al día; una con la replicación parada, no.
+     * Si el usuario no tiene el privilegio REPLICATION CLIENT (o SLAVE MONITOR) para consultar
+     * el retraso, se avisa una vez y solo se comprueba que responde.
+     */
+    public void comprobar() {
+        for (Replica replica : replicas) {
+            try (Connection conexion = replica.pool.getConnection()) {
+                if (retrasoMaximo.isZero() || replica.sinPrivilegioRetraso) {
+                    replica.marcar(true, null);
+                    continue;
+                }
+                try (Statement sentencia = conexion.createStatement();
+                     ResultSet rs = sentencia.executeQuery("SHOW SLAVE STATUS")) {
+                    if (!rs.next()) {
+                        replica.marcar(true, null);
+                        continue;
+                    }
+                    long retraso = rs.getLong("Seconds_Behind_Master");
+                    if (rs.wasNull()) {
+                        replica.marcar(false, "la replicación está parada");
+                    } else if (retraso > retrasoMaximo.toSeconds()) {
+                        replica.marcar(false, "retraso de replicación de " + retraso + " s");
+                    } else {
+                        replica.marcar(true, null);
+                    }
+                } catch (SQLException ex) {
+                    if (ex.getErrorCode() != ERROR_SIN_PRIVILEGIO) throw ex;
+                    replica.sinPrivilegioRetraso = true;
+                    logger.warning("No se comprobará el retraso de la réplica " + replica.pool.getPoolName()
+                            + ": falta el privilegio para SHOW SLAVE STATUS (" + ex.getMessage() + ")");
+                    replica.marcar(true, null);
+                }
+            } catch (SQLException ex) {
+                if (!poolOcupado(ex)) replica.marcar(false, ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Hikari lanza {@link SQLTransientConnectionException} sin causa cuando se agota el tiempo de
+     * espera porque todas las conexiones están en uso; si no pudo conectar, lleva la causa.
+     */
+    private static boolean poolOcupado(SQLException ex) {
+        return ex instanceof SQLTransientConnectionException && ex.getCause() == null;
+    }
+
+    @Override
+    public void close() {
+        replicas.forEach(replica -> replica.pool.close());
+    }
+
+    private static final class Replica {
+
+        private final HikariDataSource pool;
+        private volatile boolean disponible = true;
+        private volatile boolean sinPrivilegioRetraso;
+
+        private Replica(HikariDataSource pool) {
+            this.pool = pool;
+        }
+
+        private void marcar(boolean disponible, String motivo) {
+            if (this.disponible == disponible) return;
+            this.disponible = disponible;
+            if (disponible) {
+                logger.info("La réplica " + pool.getPoolName() + " vuelve a recibir lecturas.");
+            } else {
+                logger.warning("La réplica " + pool.getPoolName() + " deja de recibir lecturas: " + motivo);
+            }
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.santjosepobrero.basededatos.controller;
+
+import com.santjosepobrero.basededatos.service.CatalogoEsquema;
+import com.santjosepobrero.basededatos.service.ConsultaTabla;
+import com.santjosepobrero.basededatos.service.ConteoFilas;
+import com.santjosepobrero.basededatos.service.DatosDashboard;
+import com.santjosepobrero.basededatos.service.InfoColumna;
+import com.santjosepobrero.basededatos.service.InfoTabla;
+import com.santjosepobrero.basededatos.service.PaginaTabla;
+import com.santjosepobrero.basededatos.service.ProveedorConteoFilas;
+import com.santjosepobrero.basededatos.service.ServicioBaseDeDatos;
+import com.santjosepobrero.basededatos.service.ServicioDashboard;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * API JSON de solo lectura sobre las tablas y el dashboard.
+ * <p>
+ * Los resultados se envían por columnas (ver {@link SerializadorResultadoColumnar}).
+ * /api/tablas lleva ETag y Last-Modified del {@link CatalogoEsquema} y responde 304 sin
+ * tocar la base de datos; /api/tabla y /api/dashboard reciben el ETag del filtro
+ * configurado en {@code ConfiguracionWeb}, calculado sobre el cuerpo. La compresión
+ * gzip la hace el servidor ({@code server.compression}).
+ */
+@RestController
+@RequestMapping("/api")
+public class ControladorApi {
+
+    /** Tamaño de página máximo que se sirve por la API. */
+    private static final int TAMANIO_MAXIMO = 1000;
+
+    private final ServicioBaseDeDatos servicioBaseDeDatos;
+    private final ProveedorConteoFilas proveedorConteoFilas;
+    private final CatalogoEsquema catalogoEsquema;
+    private final ServicioDashboard servicioDashboard;
+
+    /**
+     * Constructor que permite la inyección de dependencias por Spring.
+     *
+     * @param servicioBaseDeDatos Servicio que gestiona operaciones con la base de datos
+     * @param proveedorConteoFilas Proveedor del número de filas de las tablas
+     * @param catalogoEsquema Catálogo en memoria de tablas y columnas
+     * @param servicioDashboard Servicio que carga las estadísticas del dashboard
+     */
+    public ControladorApi(ServicioBaseDeDatos servicioBaseDeDatos, ProveedorConteoFilas proveedorConteoFilas,
+                          CatalogoEsquema catalogoEsquema, ServicioDashboard servicioDashboard) {
+        this.servicioBaseDeDatos = servicioBaseDeDatos;
+        this.proveedorConteoFilas = proveedorConteoFilas;
+        this.catalogoEsquema = catalogoEsquema;
+        this.servicioDashboard = servicioDashboard;
+    }
+
+    /**
+     * Lista las tablas con sus columnas, clave primaria y tamaño aproximado.
+     *
+     * @param peticion Petición web, para comprobar ETag y If-Modified-Since
+     * @return Tablas del esquema, o 304 si el cliente ya tiene la versión actual
+     */
+    @GetMapping("/tablas")
+    public ResponseEntity<?> listarTablas(WebRequest peticion) {
+        try {
+            String etag = "\"" + catalogoEsquema.obtenerVersion() + "\"";
+            long ultimaCarga = catalogoEsquema.obtenerUltimaCarga().toEpochMilli();
+            if (peticion.checkNotModified(etag, ultimaCarga)) {
+                return null;
+            }
+
+            List<Map<String, Object>> tablas = new ArrayList<>();
+            for (InfoTabla info : catalogoEsquema.obtenerTablas()) {
+                List<Map<String, Object>> columnas = new ArrayList<>();
+                for (InfoColumna columna : info.getColumnas()) {
+                    Map<String, Object> datosColumna = new LinkedHashMap<>();
+                    datosColumna.put("nombre", columna.getNombre());
+                    datosColumna.put("tipo", columna.getNombreTipo());
+                    datosColumna.put("anulable", columna.isAnulable());
+                    datosColumna.put("indexada", columna.isIndexada());
+                    columnas.add(datosColumna);
+                }
+                Map<String, Object> tabla = new LinkedHashMap<>();
+                tabla.put("nombre", info.getNombre());
+                tabla.put("filasAproximadas", info.getFilasAproximadas());
+                tabla.put("clavePrimaria", info.getClavePrimaria());
+                tabla.put("columnas", columnas);
+                tablas.add(tabla);
+            }
+            return ResponseEntity.ok()
+                    .eTag(etag)
+                    .lastModified(ultimaCarga)
+                    .cacheControl(CacheControl.noCache())
+                    .body(tablas);
+        } catch (SQLException ex) {
+            return error(HttpStatus.SERVICE_UNAVAILABLE, ex.getMessage());
+        }
+    }
+
+    /**
+     * Devuelve una página de una tabla, con los mismos parámetros de paginación,
+     * orden y filtros que la vista /tabla/{nombre}.
+     *
+     * @param nombre Nombre de la tabla
+     * @param pagina Número de página (solo con paginación OFFSET)
+     * @param tamanio Tamaño de página, como mucho {@value #TAMANIO_MAXIMO}
+     * @param cursor Cursor de la página anterior o siguiente (opcional)
+     * @param orden Columna por la que ordenar (opcional)
+     * @param dir Dirección del orden: "asc" o "desc" (opcional)
+     * @param filtros Filtros con formato columna:operador:valor (opcional)
+     * @param forzar true para permitir columnas sin índice
+     * @return Página de datos por columnas y datos de navegación
+     */
+    @GetMapping("/tabla/{nombre}")
+    public ResponseEntity<?> obtenerTabla(@PathVariable String nombre,
+                                          @RequestParam(defaultValue = "0") int pagina,
+                                          @RequestParam(defaultValue = "20") int tamanio,
+                                          @RequestParam(required = false) String cursor,
+                                          @RequestParam(required = false) String orden,
+                                          @RequestParam(required = false) String dir,
+                                          @RequestParam(name = "filtro", required = false) List<String> filtros,
+                                          @RequestParam(defaultValue = "false") boolean forzar) {
+        try {
+            String nombreNormalizado = servicioBaseDeDatos.normalizarNombreTabla(nombre);
+            if (catalogoEsquema.buscarTabla(nombreNormalizado) == null) {
+                return error(HttpStatus.NOT_FOUND, "La tabla '" + nombreNormalizado + "' no existe.");
+            }
+            if (tamanio < 1 || tamanio > TAMANIO_MAXIMO) {
+                return error(HttpStatus.BAD_REQUEST, "El tamaño de página debe estar entre 1 y " + TAMANIO_MAXIMO + ".");
+            }
+            ConsultaTabla consulta = ConsultaTabla.desdeParametros(orden, dir, filtros, forzar);
+            PaginaTabla paginaTabla = servicioBaseDeDatos.obtenerPaginaTabla(nombreNormalizado, pagina, tamanio,
+                    cursor, consulta);
+
+            Map<String, Object> cuerpo = new LinkedHashMap<>();
+            cuerpo.put("tabla", nombreNormalizado);
+            cuerpo.put("pagina", pagina);
+            cuerpo.put("tamanio", tamanio);
+            cuerpo.put("paginacionPorClave", paginaTabla.isPaginacionPorClave());
+            cuerpo.put("hayAnterior", paginaTabla.isHayAnterior());
+            cuerpo.put("haySiguiente", paginaTabla.isHaySiguiente());
+            cuerpo.put("cursorAnterior", paginaTabla.getCursorAnterior());
+            cuerpo.put("cursorSiguiente", paginaTabla.getCursorSiguiente());
+            if (!consulta.isFiltrada()) {
+                ConteoFilas conteo = proveedorConteoFilas.contar(nombreNormalizado);
+                cuerpo.put("total", conteo.getTotal());
+                cuerpo.put("totalAproximado", conteo.isAproximado());
+            }
+            cuerpo.put("datos", paginaTabla.getFilas());
+            return ResponseEntity.ok().cacheControl(CacheControl.noCache()).body(cuerpo);
+        } catch (IllegalArgumentException ex) {
+            return error(HttpStatus.BAD_REQUEST, ex.getMessage());
+        } catch (SQLException ex) {
+            return error(HttpStatus.SERVICE_UNAVAILABLE, ex.getMessage());
+        }
+    }
+
+    /**
+     * Devuelve todas las series del dashboard y los errores de las que no se pudieron cargar.
+     *
+     * @return Series por nombre, en formato por columnas, y errores por serie
+     */
+    @GetMapping("/dashboard")
+    public ResponseEntity<DatosDashboard> obtenerDashboard() {
+        return ResponseEntity.ok().cacheControl(CacheControl.noCache()).body(servicioDashboard.cargarEstadisticas());
+    }
+
+    private static ResponseEntity<Map<String, String>> error(HttpStatus estado, String mensaje) {
+        return ResponseEntity.status(estado).body(Map.of("error", mensaje != null ? mensaje : estado.getReasonPhrase()));
+    }
+}
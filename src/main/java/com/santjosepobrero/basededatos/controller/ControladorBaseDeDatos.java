@@ -1,5 +1,14 @@
 package com.santjosepobrero.basededatos.controller;
 
+import com.santjosepobrero.basededatos.service.CatalogoEsquema;
+import com.santjosepobrero.basededatos.service.ConsultaTabla;
+import com.santjosepobrero.basededatos.service.ConteoFilas;
+import com.santjosepobrero.basededatos.service.EstrategiaConteo;
+import com.santjosepobrero.basededatos.service.FiltroColumna;
+import com.santjosepobrero.basededatos.service.InfoTabla;
+import com.santjosepobrero.basededatos.service.OperadorFiltro;
+import com.santjosepobrero.basededatos.service.PaginaTabla;
+import com.santjosepobrero.basededatos.service.ProveedorConteoFilas;
 import com.santjosepobrero.basededatos.service.ServicioBaseDeDatos;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -7,18 +16,19 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
-import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
-import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Pattern;
 
 /**
  * Controlador Spring MVC para manejar operaciones de base de datos a través de la interfaz web.
- * Permite listar tablas, ver contenido de tablas y ejecutar archivos SQL de manera segura.
+ * Permite listar tablas y ver su contenido. Los archivos SQL subidos se ejecutan
+ * en segundo plano con {@link ControladorTrabajosSQL}.
  */
 @Controller
 public class ControladorBaseDeDatos {
@@ -26,26 +36,48 @@ public class ControladorBaseDeDatos {
     /** Servicio que maneja la lógica de acceso a la base de datos. */
     private final ServicioBaseDeDatos servicioBaseDeDatos;
 
+    /** Proveedor del número de filas de cada tabla según su estrategia de conteo. */
+    private final ProveedorConteoFilas proveedorConteoFilas;
+
+    /** Catálogo en memoria de tablas y columnas. */
+    private final CatalogoEsquema catalogoEsquema;
+
     /**
-     * Constructor que permite la inyección del servicio de base de datos por Spring.
+     * Constructor que permite la inyección de dependencias por Spring.
      *
      * @param servicioBaseDeDatos Servicio que gestiona operaciones con la base de datos
+     * @param proveedorConteoFilas Proveedor del número de filas de las tablas
+     * @param catalogoEsquema Catálogo en memoria de tablas y columnas
      */
-    public ControladorBaseDeDatos(ServicioBaseDeDatos servicioBaseDeDatos) {
+    public ControladorBaseDeDatos(ServicioBaseDeDatos servicioBaseDeDatos, ProveedorConteoFilas proveedorConteoFilas,
+                                  CatalogoEsquema catalogoEsquema) {
         this.servicioBaseDeDatos = servicioBaseDeDatos;
+        this.proveedorConteoFilas = proveedorConteoFilas;
+        this.catalogoEsquema = catalogoEsquema;
     }
 
     /**
      * Muestra la lista de todas las tablas de la base de datos.
      * La información se pasa a la vista 'tablas.html' usando el modelo.
+     * Si el navegador ya tiene la versión actual del catálogo (ETag), se responde 304 sin renderizar,
+     * salvo que haya un mensaje o un error de la redirección anterior, que hay que mostrar.
      *
+     * @param peticion Petición web, para comprobar el ETag
      * @param modelo Modelo de datos para la vista
-     * @return Nombre de la plantilla Thymeleaf a renderizar
+     * @return Nombre de la plantilla Thymeleaf a renderizar, o null si la respuesta es 304
      */
     @GetMapping("/tablas")
-    public String mostrarTablas(Model modelo) {
+    public String mostrarTablas(WebRequest peticion, Model modelo) {
         try {
-            modelo.addAttribute("tablas", servicioBaseDeDatos.listarTablas());
+            boolean atributosFlash = modelo.containsAttribute("mensaje") || modelo.containsAttribute("error");
+            if (!atributosFlash && peticion.checkNotModified("\"" + catalogoEsquema.obtenerVersion() + "\"")) {
+                return null;
+            }
+            Map<String, Long> filasAproximadas = new LinkedHashMap<>();
+            for (InfoTabla info : catalogoEsquema.obtenerTablas())
+                filasAproximadas.put(info.getNombre(), info.getFilasAproximadas());
+            modelo.addAttribute("tablas", new ArrayList<>(filasAproximadas.keySet()));
+            modelo.addAttribute("filasAproximadas", filasAproximadas);
         } catch (SQLException ex) {
             modelo.addAttribute("error", "Error de la base de datos: " + ex.getMessage());
         } catch (Exception ex) {
@@ -54,13 +86,44 @@ public class ControladorBaseDeDatos {
         return "tablas";
     }
 
+    /**
+     * Vuelve a leer el esquema de la base de datos y redirige al listado de tablas.
+     *
+     * @param atributos Atributos flash para mostrar el resultado tras la redirección
+     * @return Redirección a /tablas
+     */
+    @PostMapping("/tablas/refrescar")
+    public String refrescarTablas(RedirectAttributes atributos) {
+        try {
+            catalogoEsquema.refrescar();
+            atributos.addFlashAttribute("mensaje", "Catálogo de tablas actualizado.");
+        } catch (SQLException ex) {
+            atributos.addFlashAttribute("error", "Error de la base de datos: " + ex.getMessage());
+        }
+        return "redirect:/tablas";
+    }
+
     /**
      * Muestra los datos de una tabla específica.
      * Permite paginación usando los parámetros 'pagina' y 'tamanio'.
+     * Si la tabla tiene clave primaria, la navegación usa el parámetro 'cursor'
+     * (paginación por clave) y 'pagina' solo se usa para mostrar el número de página.
+     * <p>
+     * El orden ('orden', 'dir') y los filtros ('filtro' con formato columna:operador:valor)
+     * se aplican en la base de datos. Solo se admiten columnas con índice salvo que se marque 'forzar'.
+     * El formulario de la vista añade un filtro nuevo con 'filtroColumna', 'filtroOperador' y 'filtroValor'.
      *
      * @param nombre Nombre de la tabla a mostrar
      * @param pagina Número de página para paginación (por defecto 0)
      * @param tamanio Tamaño de página para paginación (por defecto 20)
+     * @param cursor Cursor opaco de la página anterior o siguiente (opcional)
+     * @param orden Columna por la que ordenar (opcional)
+     * @param dir Dirección del orden: "asc" o "desc" (opcional)
+     * @param filtros Filtros ya aplicados (opcional)
+     * @param filtroColumna Columna de un filtro nuevo (opcional)
+     * @param filtroOperador Operador de un filtro nuevo (opcional)
+     * @param filtroValor Valor de un filtro nuevo (opcional)
+     * @param forzar true para permitir ordenar o filtrar por columnas sin índice
      * @param modelo Modelo de datos para la vista
      * @return Nombre de la plantilla Thymeleaf a renderizar
      */
@@ -68,90 +131,50 @@ public class ControladorBaseDeDatos {
     public String mostrarTabla(@PathVariable String nombre,
                                @RequestParam(defaultValue = "0") int pagina,
                                @RequestParam(defaultValue = "20") int tamanio,
+                               @RequestParam(required = false) String cursor,
+                               @RequestParam(required = false) String orden,
+                               @RequestParam(required = false) String dir,
+                               @RequestParam(name = "filtro", required = false) List<String> filtros,
+                               @RequestParam(required = false) String filtroColumna,
+                               @RequestParam(required = false) String filtroOperador,
+                               @RequestParam(required = false) String filtroValor,
+                               @RequestParam(defaultValue = "false") boolean forzar,
                                Model modelo) {
         try {
             String nombreNormalizado = servicioBaseDeDatos.normalizarNombreTabla(nombre);
-            modelo.addAttribute("datos", servicioBaseDeDatos.obtenerDatosTabla(nombre, pagina, tamanio));
             modelo.addAttribute("nombreTabla", nombreNormalizado);
             modelo.addAttribute("pagina", pagina);
             modelo.addAttribute("tamanio", tamanio);
-            modelo.addAttribute("total", servicioBaseDeDatos.contarFilasTabla(nombre));
+            modelo.addAttribute("operadoresFiltro", OperadorFiltro.values());
+            InfoTabla infoTabla = catalogoEsquema.buscarTabla(nombreNormalizado);
+            if (infoTabla != null) {
+                modelo.addAttribute("infoTabla", infoTabla);
+                modelo.addAttribute("columnas", infoTabla.getNombresColumnas());
+            }
+
+            List<String> todosLosFiltros = new ArrayList<>(filtros != null ? filtros : List.of());
+            if (filtroColumna != null && !filtroColumna.isBlank() && filtroOperador != null) {
+                todosLosFiltros.add(new FiltroColumna(filtroColumna, OperadorFiltro.desde(filtroOperador), filtroValor)
+                        .comoParametro());
+            }
+            ConsultaTabla consulta = ConsultaTabla.desdeParametros(orden, dir, todosLosFiltros, forzar);
+            modelo.addAttribute("consulta", consulta);
+
+            PaginaTabla paginaTabla = servicioBaseDeDatos.obtenerPaginaTabla(nombre, pagina, tamanio, cursor, consulta);
+            modelo.addAttribute("datos", paginaTabla.getFilas());
+            modelo.addAttribute("paginaTabla", paginaTabla);
+            // Con filtros el total de la tabla no sirve y contar las filas filtradas costaría otra consulta
+            ConteoFilas conteo = consulta.isFiltrada()
+                    ? new ConteoFilas(null, EstrategiaConteo.PEREZOSO) : proveedorConteoFilas.contar(nombre);
+            modelo.addAttribute("conteo", conteo);
+            modelo.addAttribute("total", conteo.getTotal());
         } catch (SQLException ex) {
             modelo.addAttribute("error", "No se pudo conectar a la base de datos o la tabla no existe: " + ex.getMessage());
+        } catch (IllegalArgumentException ex) {
+            modelo.addAttribute("error", ex.getMessage());
         } catch (Exception ex) {
             modelo.addAttribute("error", "Error inesperado al mostrar la tabla: " + ex.getMessage());
         }
         return "tabla";
     }
-
-    /**
-     * Permite subir un archivo SQL y ejecutarlo de manera segura.
-     * Se filtran instrucciones peligrosas como DROP, DELETE o ALTER.
-     * Los resultados de sentencias SELECT se muestran en la vista.
-     *
-     * @param archivo Archivo SQL subido por el usuario
-     * @param modelo Modelo de datos para la vista
-     * @return Nombre de la plantilla Thymeleaf a renderizar
-     */
-    @PostMapping("/ejecutar-sql")
-    public String ejecutarSQLdeArchivo(@RequestParam("archivo") MultipartFile archivo, Model modelo) {
-        List<Map<String, Object>> resultadosSelect = new ArrayList<>();
-
-        if (archivo.isEmpty()) {
-            modelo.addAttribute("error", "Selecciona un archivo SQL válido para subir.");
-            return "tablas";
-        }
-
-        try {
-            String nombreNormalizado = servicioBaseDeDatos.normalizarNombreArchivoSQL(archivo.getOriginalFilename());
-            String contenidoSQL = new String(archivo.getBytes(), StandardCharsets.UTF_8);
-
-            // Eliminación de comentarios SQL
-            contenidoSQL = contenidoSQL.replaceAll("(?m)^\\s*--.*$", "");
-            contenidoSQL = contenidoSQL.replaceAll("/\\*.*?\\*/", "");
-            contenidoSQL = contenidoSQL.trim();
-
-            // Instrucciones SQL prohibidas
-            Pattern instruccionesProhibidas = Pattern.compile("\\b(DROP|ALTER|DELETE|UPDATE|TRUNCATE|RENAME|MODIFY\\s+COLUMN)\\b",
-                    Pattern.CASE_INSENSITIVE);
-
-            String[] sentencias = contenidoSQL.split(";");
-            int contador = 0;
-
-            for (String sentencia : sentencias) {
-                String s = sentencia.trim();
-                if (s.isEmpty()) continue;
-                contador++;
-
-                if (instruccionesProhibidas.matcher(s).find()) {
-                    modelo.addAttribute("error", "El archivo contiene una instrucción prohibida: " + s);
-                    return "tablas";
-                }
-
-                try {
-                    Map<String, Object> resultado = servicioBaseDeDatos.ejecutarSQLDirecta(s);
-                    if (resultado.containsKey("columnas") && resultado.containsKey("filas")) {
-                        resultado.put("indice", contador);
-                        resultado.put("sql", s);
-                        resultadosSelect.add(resultado);
-                    }
-                } catch (SQLException ex) {
-                    modelo.addAttribute("error", "Error en sentencia #" + contador + ": " + ex.getMessage());
-                    return "tablas";
-                } catch (Exception ex) {
-                    modelo.addAttribute("error", "Error inesperado en sentencia #" + contador + ": " + ex.getMessage());
-                    return "tablas";
-                }
-            }
-
-            modelo.addAttribute("mensaje", "Archivo SQL ejecutado correctamente.");
-            if (!resultadosSelect.isEmpty()) {
-                modelo.addAttribute("resultadosSelect", resultadosSelect);
-            }
-            return "tabla";
-        } catch (Exception ex) {
-            modelo.addAttribute("error", "Error inesperado al procesar el archivo SQL: " + ex.getMessage());
-        }
-        return "tablas";
-    }
 }
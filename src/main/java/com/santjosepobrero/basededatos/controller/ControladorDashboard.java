@@ -1,40 +1,58 @@
 package com.santjosepobrero.basededatos.controller;
 
-import com.santjosepobrero.basededatos.service.ServicioBaseDeDatos;
+import com.santjosepobrero.basededatos.service.CacheEstadisticas;
+import com.santjosepobrero.basededatos.service.ServicioEventosDashboard;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Controller;
-import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.sql.SQLException;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.time.Duration;
+import java.util.Map;
 
 /**
  * Controlador Spring MVC para manejar la vista del Dashboard de la aplicación.
- * Carga estadísticas y datos resumidos de la base de datos para mostrarlos en la interfaz web.
+ * La página es una plantilla sin datos: los gráficos y totales los carga dashboard.js
+ * desde /api/dashboard, así el HTML es igual para todos y se puede cachear. Después
+ * recibe las series que cambian por /dashboard/eventos.
  */
 @Controller
 public class ControladorDashboard {
 
-    /** Servicio que maneja la lógica de acceso a la base de datos. */
-    private final ServicioBaseDeDatos servicioBaseDeDatos;
+    /** Caché de las consultas estadísticas. */
+    private final CacheEstadisticas cacheEstadisticas;
 
-    /** Logger para registrar errores y eventos importantes. */
-    private static final Logger logger = Logger.getLogger(ControladorDashboard.class.getName());
+    /** Difusión de las series cambiadas a los dashboards abiertos. */
+    private final ServicioEventosDashboard servicioEventosDashboard;
+
+    /** Tiempo que el navegador o el proxy pueden reutilizar el HTML del dashboard. */
+    private final Duration duracionCacheHtml;
 
     /**
-     * Constructor que permite la inyección del servicio de base de datos por Spring.
+     * Constructor que permite la inyección de dependencias por Spring.
      *
-     * @param servicioBaseDeDatos Servicio que gestiona operaciones con la base de datos
+     * @param cacheEstadisticas Caché de las consultas estadísticas
+     * @param servicioEventosDashboard Difusión de las series cambiadas por Server-Sent Events
+     * @param duracionCacheHtml Tiempo que se puede cachear el HTML del dashboard
      */
-    public ControladorDashboard(ServicioBaseDeDatos servicioBaseDeDatos) {
-        this.servicioBaseDeDatos = servicioBaseDeDatos;
+    public ControladorDashboard(CacheEstadisticas cacheEstadisticas, ServicioEventosDashboard servicioEventosDashboard,
+                                @Value("${dashboard.html.max-age:PT5M}") Duration duracionCacheHtml) {
+        this.cacheEstadisticas = cacheEstadisticas;
+        this.servicioEventosDashboard = servicioEventosDashboard;
+        this.duracionCacheHtml = duracionCacheHtml;
     }
 
     /**
-     * Maneja la ruta "/dashboard" y prepara los datos estadísticos para la vista.
+     * Maneja la ruta "/dashboard".
      * <p>
-     * Carga información como:
+     * Muestra, con datos pedidos a /api/dashboard:
      * <ul>
      *     <li>Películas por rating</li>
      *     <li>Actores por inicial</li>
@@ -44,29 +62,52 @@ public class ControladorDashboard {
      *     <li>Total de clientes, países y películas</li>
      * </ul>
      *
-     * @param modelo Modelo de datos para pasar información a la vista Thymeleaf
+     * @param respuesta Respuesta HTTP, para indicar cuánto se puede cachear
      * @return Nombre de la plantilla Thymeleaf a renderizar ("dashboard")
      */
     @GetMapping("/dashboard")
-    public String mostrarDashboard(Model modelo) {
-        try {
-            modelo.addAttribute("filmsPorRating", servicioBaseDeDatos.ejecutarSQLDesdeArchivo("stat_peliculas_por_rating.sql"));
-            modelo.addAttribute("actoresInicial", servicioBaseDeDatos.ejecutarSQLDesdeArchivo("stat_actores_por_letra.sql"));
-            modelo.addAttribute("filmsPorCategoria", servicioBaseDeDatos.ejecutarSQLDesdeArchivo("stat_peliculas_por_categoria.sql"));
-            modelo.addAttribute("alquileresMes", servicioBaseDeDatos.ejecutarSQLDesdeArchivo("stat_alquileres_por_mes.sql"));
-            modelo.addAttribute("clientesPais", servicioBaseDeDatos.ejecutarSQLDesdeArchivo("stat_clientes_por_pais.sql"));
+    public String mostrarDashboard(HttpServletResponse respuesta) {
+        respuesta.setHeader(HttpHeaders.CACHE_CONTROL,
+                CacheControl.maxAge(duracionCacheHtml).cachePublic().getHeaderValue());
+        return "dashboard";
+    }
+
+    /**
+     * Abre un flujo de Server-Sent Events con las series del dashboard que cambian.
+     *
+     * @return Emisor de eventos "series", con el mismo formato que /api/dashboard
+     */
+    @GetMapping(value = "/dashboard/eventos", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ResponseBody
+    public SseEmitter suscribirEventos() {
+        return servicioEventosDashboard.suscribir();
+    }
 
-            modelo.addAttribute("numClientes", ServicioBaseDeDatos.obtenerTotalGenerico(servicioBaseDeDatos.ejecutarSQLDesdeArchivo("stat_clientes.sql")));
-            modelo.addAttribute("numPaises", ServicioBaseDeDatos.obtenerTotalGenerico(servicioBaseDeDatos.ejecutarSQLDesdeArchivo("stat_paises.sql")));
-            modelo.addAttribute("numPeliculas", ServicioBaseDeDatos.obtenerTotalGenerico(servicioBaseDeDatos.ejecutarSQLDesdeArchivo("stat_peliculas.sql")));
+    /**
+     * Devuelve los contadores de la caché de estadísticas (aciertos, fallos, refrescos...).
+     *
+     * @return Mapa con los contadores, serializado como JSON
+     */
+    @GetMapping("/dashboard/cache")
+    @ResponseBody
+    public Map<String, Object> mostrarEstadisticasCache() {
+        return cacheEstadisticas.obtenerEstadisticas();
+    }
 
-        } catch (SQLException ex) {
-            modelo.addAttribute("error", "Error de base de datos: " + ex.getMessage());
-            logger.log(Level.SEVERE, "Error de SQL", ex);
-        } catch (Exception ex) {
-            modelo.addAttribute("error", "Error inesperado al cargar el dashboard: " + ex.getMessage());
-            logger.log(Level.SEVERE, "Error General", ex);
+    /**
+     * Invalida la caché de estadísticas, entera o solo la de un archivo SQL,
+     * y vuelve al dashboard para que se recarguen los datos.
+     *
+     * @param archivo Nombre del archivo SQL a invalidar (opcional; si falta se invalida todo)
+     * @return Redirección al dashboard
+     */
+    @PostMapping("/dashboard/cache/invalidar")
+    public String invalidarCache(@RequestParam(required = false) String archivo) {
+        if (archivo == null || archivo.isBlank()) {
+            cacheEstadisticas.invalidarTodo();
+        } else {
+            cacheEstadisticas.invalidar(archivo);
         }
-        return "dashboard";
+        return "redirect:/dashboard";
     }
 }
@@ -0,0 +1,121 @@
+package com.santjosepobrero.basededatos.controller;
+
+import com.santjosepobrero.basededatos.service.ServicioExportacion;
+import com.santjosepobrero.basededatos.service.ServicioExportacion.FormatoExportacion;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.SQLException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Controlador Spring MVC para exportar tablas completas o consultas estadísticas.
+ * Los datos se envían en streaming, en CSV o NDJSON y opcionalmente comprimidos con gzip.
+ */
+@Controller
+public class ControladorExportacion {
+
+    /** Servicio que lee y escribe en streaming los datos exportados. */
+    private final ServicioExportacion servicioExportacion;
+
+    /** Logger para registrar errores y eventos importantes. */
+    private static final Logger logger = Logger.getLogger(ControladorExportacion.class.getName());
+
+    /**
+     * Constructor que permite la inyección del servicio de exportación por Spring.
+     *
+     * @param servicioExportacion Servicio que gestiona las exportaciones
+     */
+    public ControladorExportacion(ServicioExportacion servicioExportacion) {
+        this.servicioExportacion = servicioExportacion;
+    }
+
+    /**
+     * Exporta todas las filas de una tabla.
+     *
+     * @param nombre Nombre de la tabla
+     * @param formato Formato de salida: "csv" (por defecto) o "ndjson"
+     * @param gzip true para comprimir la respuesta con gzip
+     * @return Respuesta que se escribe en streaming
+     */
+    @GetMapping("/exportar/tabla/{nombre}")
+    public ResponseEntity<?> exportarTabla(@PathVariable String nombre,
+                                           @RequestParam(defaultValue = "csv") String formato,
+                                           @RequestParam(defaultValue = "false") boolean gzip) {
+        try {
+            String sql = servicioExportacion.prepararExportacionTabla(nombre);
+            return responder(sql, nombre, FormatoExportacion.desde(formato), gzip);
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().contentType(MediaType.TEXT_PLAIN).body(ex.getMessage());
+        } catch (SQLException ex) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).contentType(MediaType.TEXT_PLAIN).body(ex.getMessage());
+        }
+    }
+
+    /**
+     * Exporta el resultado de una consulta estadística (stat_*.sql).
+     *
+     * @param archivo Nombre del archivo SQL
+     * @param formato Formato de salida: "csv" (por defecto) o "ndjson"
+     * @param gzip true para comprimir la respuesta con gzip
+     * @return Respuesta que se escribe en streaming
+     */
+    @GetMapping("/exportar/estadistica/{archivo}")
+    public ResponseEntity<?> exportarEstadistica(@PathVariable String archivo,
+                                                 @RequestParam(defaultValue = "csv") String formato,
+                                                 @RequestParam(defaultValue = "false") boolean gzip) {
+        try {
+            String sql = servicioExportacion.prepararExportacionEstadistica(archivo);
+            return responder(sql, archivo.replace(".sql", ""), FormatoExportacion.desde(formato), gzip);
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().contentType(MediaType.TEXT_PLAIN).body(ex.getMessage());
+        } catch (SQLException ex) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).contentType(MediaType.TEXT_PLAIN).body(ex.getMessage());
+        }
+    }
+
+    /**
+     * Construye la respuesta en streaming. La consulta se ejecuta cuando Spring empieza
+     * a escribir el cuerpo, fuera del hilo de la petición.
+     * <p>
+     * El gzip solo se cierra si la exportación termina bien: si falla a mitad, la excepción
+     * corta la conexión y el cliente recibe un archivo incompleto que no da por bueno, en vez
+     * de un gzip bien formado con los datos truncados.
+     */
+    private ResponseEntity<StreamingResponseBody> responder(String sql, String nombreBase,
+                                                            FormatoExportacion formato, boolean gzip) {
+        StreamingResponseBody cuerpo = salida -> {
+            OutputStream destino = gzip ? new GZIPOutputStream(salida, 64 * 1024) : salida;
+            try {
+                servicioExportacion.exportar(sql, formato, destino);
+            } catch (SQLException ex) {
+                // La respuesta ya ha empezado: solo se puede cortar y registrar el error
+                logger.log(Level.SEVERE, "Error exportando " + nombreBase, ex);
+                throw new IOException("Error exportando " + nombreBase + ": " + ex.getMessage(), ex);
+            }
+            if (destino instanceof GZIPOutputStream comprimido) comprimido.finish();
+            destino.flush();
+        };
+
+        ResponseEntity.BodyBuilder respuesta = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(formato.getTipoContenido() + ";charset=UTF-8"))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"" + nombreBase + "." + formato.getExtension() + "\"");
+        if (gzip) {
+            // El navegador descomprime al vuelo; el archivo descargado queda sin comprimir
+            respuesta.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return respuesta.body(cuerpo);
+    }
+}
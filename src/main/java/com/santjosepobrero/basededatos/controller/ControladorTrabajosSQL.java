@@ -0,0 +1,203 @@
+package com.santjosepobrero.basededatos.controller;
+
+import com.santjosepobrero.basededatos.service.EstadoTrabajo;
+import com.santjosepobrero.basededatos.service.ResultadoScript;
+import com.santjosepobrero.basededatos.service.ServicioTrabajosSQL;
+import com.santjosepobrero.basededatos.service.TrabajoSQL;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Controlador Spring MVC para ejecutar archivos SQL subidos, o importar archivos CSV, como
+ * trabajos en segundo plano. La subida responde enseguida con una redirección a la página
+ * del trabajo, que muestra su progreso y los resultados de los SELECT terminados.
+ */
+@Controller
+public class ControladorTrabajosSQL {
+
+    /** Servicio que ejecuta los scripts en segundo plano. */
+    private final ServicioTrabajosSQL servicioTrabajosSQL;
+
+    /**
+     * Constructor que permite la inyección de dependencias por Spring.
+     *
+     * @param servicioTrabajosSQL Servicio que ejecuta los scripts en segundo plano
+     */
+    public ControladorTrabajosSQL(ServicioTrabajosSQL servicioTrabajosSQL) {
+        this.servicioTrabajosSQL = servicioTrabajosSQL;
+    }
+
+    /**
+     * Recibe un archivo SQL y lo pone en cola para ejecutarlo de manera segura.
+     * Se filtran instrucciones peligrosas como DROP, DELETE o ALTER, y los SELECT demasiado
+     * caros según su EXPLAIN se limitan o se rechazan.
+     *
+     * @param archivo Archivo SQL subido por el usuario
+     * @param transaccion true para ejecutar todo el archivo en una única transacción
+     * @param modelo Modelo de datos para la vista si hay error
+     * @return Redirección a la página del trabajo, o la vista de tablas con el error
+     */
+    @PostMapping("/ejecutar-sql")
+    public String ejecutarSQLdeArchivo(@RequestParam("archivo") MultipartFile archivo,
+                                       @RequestParam(defaultValue = "false") boolean transaccion,
+                                       Model modelo) {
+        if (archivo.isEmpty()) {
+            modelo.addAttribute("error", "Selecciona un archivo SQL válido para subir.");
+            return "tablas";
+        }
+
+        try (InputStream contenido = archivo.getInputStream()) {
+            TrabajoSQL trabajo = servicioTrabajosSQL.crear(archivo.getOriginalFilename(), contenido, transaccion);
+            return "redirect:/trabajos/" + trabajo.getId();
+        } catch (IOException ex) {
+            modelo.addAttribute("error", "No se pudo leer el archivo SQL: " + ex.getMessage());
+        } catch (Exception ex) {
+            modelo.addAttribute("error", "Error inesperado al procesar el archivo SQL: " + ex.getMessage());
+        }
+        return "tablas";
+    }
+
+    /**
+     * Recibe un archivo CSV o TSV y lo pone en cola para importarlo en una tabla.
+     * La primera fila del archivo debe tener los nombres de las columnas.
+     *
+     * @param archivo Archivo CSV o TSV subido por el usuario
+     * @param tabla Tabla de destino
+     * @param separador Separador de campos: "coma", "punto-y-coma" o "tabulador"; si no se indica,
+     *                  tabulador para los .tsv y coma para el resto
+     * @param modelo Modelo de datos para la vista si hay error
+     * @return Redirección a la página del trabajo, o la vista de tablas con el error
+     */
+    @PostMapping("/importar-csv")
+    public String importarCSV(@RequestParam("archivo") MultipartFile archivo,
+                              @RequestParam String tabla,
+                              @RequestParam(required = false) String separador,
+                              Model modelo) {
+        if (archivo.isEmpty()) {
+            modelo.addAttribute("error", "Selecciona un archivo CSV válido para subir.");
+            return "tablas";
+        }
+        if (tabla.isBlank()) {
+            modelo.addAttribute("error", "Indica la tabla en la que importar el archivo.");
+            return "tablas";
+        }
+
+        String nombre = archivo.getOriginalFilename() != null ? archivo.getOriginalFilename() : "";
+        char caracterSeparador;
+        switch (separador == null || separador.isBlank() ? "" : separador) {
+            case "coma" -> caracterSeparador = ',';
+            case "punto-y-coma" -> caracterSeparador = ';';
+            case "tabulador" -> caracterSeparador = '\t';
+            case "" -> caracterSeparador = nombre.toLowerCase(Locale.ROOT).endsWith(".tsv") ? '\t' : ',';
+            default -> {
+                modelo.addAttribute("error", "Separador no válido: " + separador);
+                return "tablas";
+            }
+        }
+
+        try (InputStream contenido = archivo.getInputStream()) {
+            TrabajoSQL trabajo = servicioTrabajosSQL.crearImportacion(nombre, contenido, tabla.trim(),
+                    caracterSeparador);
+            return "redirect:/trabajos/" + trabajo.getId();
+        } catch (IOException ex) {
+            modelo.addAttribute("error", "No se pudo leer el archivo CSV: " + ex.getMessage());
+        } catch (Exception ex) {
+            modelo.addAttribute("error", "Error inesperado al procesar el archivo CSV: " + ex.getMessage());
+        }
+        return "tablas";
+    }
+
+    /**
+     * Muestra el progreso de un trabajo y los resultados de sus SELECT ya terminados.
+     * Mientras el trabajo está en marcha, la página se recarga sola.
+     *
+     * @param id Identificador del trabajo
+     * @param modelo Modelo de datos para la vista
+     * @return Nombre de la plantilla Thymeleaf a renderizar
+     */
+    @GetMapping("/trabajos/{id}")
+    public String mostrarTrabajo(@PathVariable String id, Model modelo) {
+        TrabajoSQL trabajo = servicioTrabajosSQL.buscar(id);
+        if (trabajo == null) {
+            modelo.addAttribute("error", "El trabajo no existe o ya se ha descartado.");
+            return "trabajo";
+        }
+        ResultadoScript resultado = trabajo.getResultado();
+        modelo.addAttribute("trabajo", trabajo);
+        if (trabajo.getEstado() == EstadoTrabajo.COMPLETADO && trabajo.isImportacion()) {
+            modelo.addAttribute("mensaje", "Archivo importado en " + trabajo.getTablaImportacion() + ": "
+                    + resultado.getFilasImportadas() + " filas (" + resultado.getTotalErroresFila() + " con error).");
+        } else if (trabajo.getEstado() == EstadoTrabajo.COMPLETADO) {
+            modelo.addAttribute("mensaje", "Archivo SQL ejecutado correctamente: " + resultado.getSentenciasEjecutadas()
+                    + " sentencias (" + resultado.getInsercionesEnLote() + " INSERT en lote).");
+        } else if (trabajo.getError() != null) {
+            modelo.addAttribute("error", trabajo.getError());
+        }
+        if (!resultado.getResultadosSelect().isEmpty()) {
+            modelo.addAttribute("resultadosSelect", resultado.getResultadosSelect());
+        }
+        return "trabajo";
+    }
+
+    /**
+     * Devuelve en JSON el estado de un trabajo, para consultarlo periódicamente.
+     *
+     * @param id Identificador del trabajo
+     * @return Estado, progreso y error del trabajo, o 404 si no existe
+     */
+    @GetMapping("/trabajos/{id}/estado")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> estadoTrabajo(@PathVariable String id) {
+        TrabajoSQL trabajo = servicioTrabajosSQL.buscar(id);
+        if (trabajo == null) return ResponseEntity.notFound().build();
+
+        ResultadoScript resultado = trabajo.getResultado();
+        Map<String, Object> estado = new LinkedHashMap<>();
+        estado.put("id", trabajo.getId());
+        estado.put("archivo", trabajo.getNombreArchivo());
+        estado.put("estado", trabajo.getEstado());
+        estado.put("porcentaje", trabajo.getPorcentaje());
+        estado.put("sentenciasEjecutadas", resultado.getSentenciasEjecutadas());
+        estado.put("sentenciaActual", resultado.getIndiceActual());
+        estado.put("resultadosSelect", resultado.getResultadosSelect().size());
+        if (trabajo.isImportacion()) {
+            estado.put("tabla", trabajo.getTablaImportacion());
+            estado.put("filasImportadas", resultado.getFilasImportadas());
+            estado.put("erroresFila", resultado.getTotalErroresFila());
+        }
+        estado.put("duracionMs", trabajo.getDuracion() != null ? trabajo.getDuracion().toMillis() : null);
+        estado.put("error", trabajo.getError());
+        return ResponseEntity.ok(estado);
+    }
+
+    /**
+     * Cancela un trabajo y vuelve a su página.
+     *
+     * @param id Identificador del trabajo
+     * @param atributos Atributos flash para mostrar el resultado tras la redirección
+     * @return Redirección a la página del trabajo
+     */
+    @PostMapping("/trabajos/{id}/cancelar")
+    public String cancelarTrabajo(@PathVariable String id, RedirectAttributes atributos) {
+        if (servicioTrabajosSQL.cancelar(id)) {
+            atributos.addFlashAttribute("mensaje", "Cancelación solicitada.");
+        } else {
+            atributos.addFlashAttribute("error", "El trabajo no existe o ya se ha descartado.");
+        }
+        return "redirect:/trabajos/" + id;
+    }
+}
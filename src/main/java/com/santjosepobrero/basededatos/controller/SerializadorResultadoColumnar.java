@@ -0,0 +1,88 @@
+package com.santjosepobrero.basededatos.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.santjosepobrero.basededatos.service.ResultadoColumnar;
+import org.springframework.boot.jackson.JsonComponent;
+
+import java.io.IOException;
+import java.sql.JDBCType;
+import java.util.List;
+
+/**
+ * Escribe un {@link ResultadoColumnar} en JSON por columnas:
+ * <pre>
+ * {"columnas":["film_id","title"],"tipos":["INTEGER","VARCHAR"],"filas":2,
+ *  "valores":[[1,2],["ACADEMY DINOSAUR","ACE GOLDFINGER"]]}
+ * </pre>
+ * Los nombres de columna aparecen una sola vez y cada columna es un array, en lugar de
+ * repetir las claves en cada fila. Los números se escriben directamente desde los arrays
+ * primitivos. Un resultado que no es consulta se escribe como {@code {"mensaje":"..."}}.
+ */
+@JsonComponent
+public class SerializadorResultadoColumnar extends JsonSerializer<ResultadoColumnar> {
+
+    @Override
+    public void serialize(ResultadoColumnar resultado, JsonGenerator generador, SerializerProvider proveedor)
+            throws IOException {
+        generador.writeStartObject();
+        if (!resultado.isConsulta()) {
+            generador.writeStringField("mensaje", resultado.getMensaje());
+            generador.writeEndObject();
+            return;
+        }
+
+        List<String> columnas = resultado.getColumnas();
+        generador.writeArrayFieldStart("columnas");
+        for (String columna : columnas)
+            generador.writeString(columna);
+        generador.writeEndArray();
+
+        generador.writeArrayFieldStart("tipos");
+        for (int tipo : resultado.getTiposJdbc())
+            generador.writeString(nombreTipo(tipo));
+        generador.writeEndArray();
+
+        generador.writeNumberField("filas", resultado.getNumeroFilas());
+
+        ResultadoColumnar.VisitanteColumna escritor = new ResultadoColumnar.VisitanteColumna() {
+            @Override
+            public void entero(long valor) throws IOException {
+                generador.writeNumber(valor);
+            }
+
+            @Override
+            public void decimal(double valor) throws IOException {
+                generador.writeNumber(valor);
+            }
+
+            @Override
+            public void objeto(Object valor) throws IOException {
+                // Fechas, decimales, binarios...: con la configuración de Jackson de la aplicación
+                proveedor.defaultSerializeValue(valor, generador);
+            }
+
+            @Override
+            public void nulo() throws IOException {
+                generador.writeNull();
+            }
+        };
+        generador.writeArrayFieldStart("valores");
+        for (int i = 0; i < columnas.size(); i++) {
+            generador.writeStartArray();
+            resultado.recorrerColumna(i, escritor);
+            generador.writeEndArray();
+        }
+        generador.writeEndArray();
+        generador.writeEndObject();
+    }
+
+    private static String nombreTipo(int tipoJdbc) {
+        try {
+            return JDBCType.valueOf(tipoJdbc).getName();
+        } catch (IllegalArgumentException ex) {
+            return "OTHER";
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.santjosepobrero.basededatos.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Caché de los resultados de las consultas estadísticas ({@code stat_*.sql}).
+ * <p>
+ * Funciona así:
+ * <ul>
+ *     <li>Cada consulta tiene su TTL ({@code dashboard.cache.ttl.<consulta>}, o el TTL por defecto).</li>
+ *     <li>Pasado el TTL se sigue sirviendo el valor antiguo mientras se refresca en segundo plano.</li>
+ *     <li>Solo hay una carga en curso por consulta: con la caché fría, las peticiones
+ *         simultáneas esperan a la misma consulta en lugar de lanzar una cada una.</li>
+ *     <li>Las entradas se pueden invalidar a mano.</li>
+ * </ul>
+ * Los archivos que no empiezan por {@code stat_} se ejecutan siempre sin caché.
+ * <p>
+ * Solo las cargas que van a la base de datos (no los aciertos) pasan por un semáforo que limita
+ * cuántas se ejecutan a la vez, para no acaparar el pool de conexiones, y cada una tiene un
+ * tiempo máximo en el servidor: si se agota, el driver la cancela y la conexión queda libre.
+ */
+@Service
+public class CacheEstadisticas {
+
+    private static final Logger logger = Logger.getLogger(CacheEstadisticas.class.getName());
+
+    /** Valor guardado junto con el instante en que se cargó. */
+    private record Entrada(ResultadoColumnar valor, long cargadoNanos) {
+    }
+
+    private final ServicioBaseDeDatos servicioBaseDeDatos;
+    private final Environment entorno;
+    private final Duration ttlPorDefecto;
+    private final Duration obsoletoMaximo;
+    private final Semaphore consultasSimultaneas;
+    private final int tiempoMaximoConsultaSegundos;
+
+    private final Map<String, Entrada> entradas = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<ResultadoColumnar>> cargasEnCurso = new ConcurrentHashMap<>();
+    private final Map<String, Duration> ttlPorConsulta = new ConcurrentHashMap<>();
+    private final ExecutorService refrescos = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final AtomicLong aciertos = new AtomicLong();
+    private final AtomicLong aciertosObsoletos = new AtomicLong();
+    private final AtomicLong fallos = new AtomicLong();
+    private final AtomicLong refrescosLanzados = new AtomicLong();
+    private final AtomicLong errores = new AtomicLong();
+
+    /**
+     * Constructor que permite la inyección de dependencias.
+     *
+     * @param servicioBaseDeDatos Servicio que ejecuta los archivos SQL
+     * @param entorno Entorno de Spring, para leer el TTL de cada consulta
+     * @param ttlPorDefecto TTL de las consultas sin TTL propio
+     * @param obsoletoMaximo Tiempo máximo, pasado el TTL, durante el que se sirve el valor antiguo
+     * @param tamanioPool Tamaño máximo del pool de conexiones de Hikari
+     * @param consultasParalelas Consultas simultáneas permitidas (0 = la mitad del pool)
+     * @param tiempoMaximoConsultaMs Tiempo máximo de cada consulta en milisegundos
+     */
+    public CacheEstadisticas(ServicioBaseDeDatos servicioBaseDeDatos, Environment entorno,
+                             @Value("${dashboard.cache.ttl-por-defecto:PT5M}") Duration ttlPorDefecto,
+                             @Value("${dashboard.cache.obsoleto-maximo:PT1H}") Duration obsoletoMaximo,
+                             @Value("${spring.datasource.hikari.maximum-pool-size:10}") int tamanioPool,
+                             @Value("${dashboard.consultas-paralelas:0}") int consultasParalelas,
+                             @Value("${dashboard.tiempo-maximo-consulta-ms:5000}") long tiempoMaximoConsultaMs) {
+        this.servicioBaseDeDatos = servicioBaseDeDatos;
+        this.entorno = entorno;
+        this.ttlPorDefecto = ttlPorDefecto;
+        this.obsoletoMaximo = obsoletoMaximo;
+        // Por defecto se deja la mitad del pool libre para /tabla y las subidas de SQL
+        int permisos = consultasParalelas > 0 ? consultasParalelas : Math.max(1, tamanioPool / 2);
+        this.consultasSimultaneas = new Semaphore(permisos);
+        // setQueryTimeout va en segundos: se redondea hacia arriba para no cortar antes de tiempo
+        this.tiempoMaximoConsultaSegundos = (int) Math.min(Integer.MAX_VALUE,
+                Math.max(1, TimeUnit.MILLISECONDS.toSeconds(tiempoMaximoConsultaMs + 999)));
+    }
+
+    /**
+     * Devuelve el resultado de un archivo SQL estadístico, usando la caché si es posible.
+     *
+     * @param archivoSql Nombre del archivo SQL
+     * @return Resultado de la consulta guardado por columnas
+     * @throws SQLException si la consulta no está en caché y falla al ejecutarse
+     */
+    public ResultadoColumnar obtener(String archivoSql) throws SQLException {
+        if (!archivoSql.startsWith("stat_")) {
+            return ejecutarLimitado(archivoSql);
+        }
+
+        Entrada entrada = entradas.get(archivoSql);
+        if (entrada != null) {
+            long edad = System.nanoTime() - entrada.cargadoNanos();
+            long ttl = obtenerTtl(archivoSql).toNanos();
+            if (edad <= ttl) {
+                aciertos.incrementAndGet();
+                return entrada.valor();
+            }
+            if (edad <= ttl + obsoletoMaximo.toNanos()) {
+                // Se sirve el valor antiguo y se refresca en segundo plano
+                aciertosObsoletos.incrementAndGet();
+                refrescarEnSegundoPlano(archivoSql);
+                return entrada.valor();
+            }
+        }
+
+        fallos.incrementAndGet();
+        CompletableFuture<ResultadoColumnar> nueva = new CompletableFuture<>();
+        CompletableFuture<ResultadoColumnar> enCurso = cargasEnCurso.putIfAbsent(archivoSql, nueva);
+        if (enCurso == null) {
+            // Esta petición es la que carga; las demás esperan a su resultado
+            cargar(archivoSql, nueva);
+            enCurso = nueva;
+        }
+        try {
+            return enCurso.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Se interrumpió la espera de la consulta " + archivoSql, ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof SQLException sqlEx) throw sqlEx;
+            throw new SQLException("No se pudo ejecutar la consulta " + archivoSql, ex.getCause());
+        }
+    }
+
+    /**
+     * Ejecuta la consulta, guarda el resultado y completa la carga en curso.
+     */
+    private void cargar(String archivoSql, CompletableFuture<ResultadoColumnar> carga) {
+        try {
+            ResultadoColumnar valor = ejecutarLimitado(archivoSql);
+            entradas.put(archivoSql, new Entrada(valor, System.nanoTime()));
+            carga.complete(valor);
+        } catch (Exception ex) {
+            errores.incrementAndGet();
+            carga.completeExceptionally(ex);
+        } finally {
+            cargasEnCurso.remove(archivoSql, carga);
+        }
+    }
+
+    /**
+     * Ejecuta el archivo SQL en la base de datos, respetando el límite de consultas simultáneas
+     * y el tiempo máximo por consulta.
+     */
+    private ResultadoColumnar ejecutarLimitado(String archivoSql) throws SQLException {
+        try {
+            consultasSimultaneas.acquire();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Se interrumpió la espera de la consulta " + archivoSql, ex);
+        }
+        try {
+            return servicioBaseDeDatos.ejecutarSQLDesdeArchivo(archivoSql, tiempoMaximoConsultaSegundos);
+        } finally {
+            consultasSimultaneas.release();
+        }
+    }
+
+    /**
+     * Lanza un refresco en segundo plano si no hay ya una carga en curso para la consulta.
+     */
+    private void refrescarEnSegundoPlano(String archivoSql) {
+        CompletableFuture<ResultadoColumnar> nueva = new CompletableFuture<>();
+        if (cargasEnCurso.putIfAbsent(archivoSql, nueva) != null) return;
+
+        refrescosLanzados.incrementAndGet();
+        refrescos.execute(() -> {
+            cargar(archivoSql, nueva);
+            if (nueva.isCompletedExceptionally()) {
+                logger.log(Level.WARNING, "No se pudo refrescar " + archivoSql + "; se mantiene el valor anterior");
+            }
+        });
+    }
+
+    private Duration obtenerTtl(String archivoSql) {
+        return ttlPorConsulta.computeIfAbsent(archivoSql, archivo -> {
+            String clave = "dashboard.cache.ttl." + archivo.replace(".sql", "");
+            return entorno.getProperty(clave, Duration.class, ttlPorDefecto);
+        });
+    }
+
+    /**
+     * Elimina de la caché el resultado de una consulta.
+     *
+     * @param archivoSql Nombre del archivo SQL
+     */
+    public void invalidar(String archivoSql) {
+        entradas.remove(archivoSql);
+    }
+
+    /**
+     * Elimina de la caché todos los resultados.
+     */
+    public void invalidarTodo() {
+        entradas.clear();
+    }
+
+    /**
+     * Devuelve los contadores de uso de la caché.
+     *
+     * @return Mapa con aciertos, aciertos obsoletos, fallos, refrescos, errores y entradas
+     */
+    public Map<String, Object> obtenerEstadisticas() {
+        Map<String, Object> estadisticas = new LinkedHashMap<>();
+        estadisticas.put("aciertos", aciertos.get());
+        estadisticas.put("aciertosObsoletos", aciertosObsoletos.get());
+        estadisticas.put("fallos", fallos.get());
+        estadisticas.put("refrescos", refrescosLanzados.get());
+        estadisticas.put("errores", errores.get());
+        estadisticas.put("entradas", entradas.size());
+        return estadisticas;
+    }
+
+    /**
+     * Cierra el ejecutor de refrescos al parar la aplicación.
+     */
+    @PreDestroy
+    public void cerrar() {
+        refrescos.shutdownNow();
+    }
+}
@@ -0,0 +1,350 @@
+package com.santjosepobrero.basededatos.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Caché opcional ({@code sql.cache.habilitada}) de los resultados de los SELECT escritos por
+ * el usuario: los de los scripts subidos y los de {@link ServicioBaseDeDatos#ejecutarSQLDirecta}.
+ * <p>
+ * Funciona así:
+ * <ul>
+ *     <li>La clave es el texto SQL con los espacios normalizados fuera de los literales.</li>
+ *     <li>El tamaño se limita en bytes ({@code sql.cache.tamanio-maximo}) con la estimación de
+ *         {@link ResultadoColumnar#getBytesEstimados()}; Caffeine decide qué descartar (W-TinyLFU).</li>
+ *     <li>Cada entrada se etiqueta con las tablas del catálogo que aparecen en la consulta. Una
+ *         sentencia que no es SELECT invalida las entradas de las tablas que nombra, o todas si
+ *         no nombra ninguna conocida (CALL, SET...).</li>
+ *     <li>Los scripts dejan de usar la caché en cuanto ejecutan una sentencia que puede cambiar
+ *         lo que ve su conexión (USE, SET, tablas temporales...), ver {@link EjecutorScriptSQL}.</li>
+ *     <li>No se guardan consultas sin tablas conocidas (information_schema...), las que nombran
+ *         una vista (sus tablas no aparecen en el texto, así que no se sabría cuándo invalidarlas)
+ *         ni las que dependen del momento o de la sesión (NOW(), RAND(), variables, FOR UPDATE...).
+ *         Por lo mismo, una escritura a través de una vista vacía toda la caché.</li>
+ * </ul>
+ * Los cambios hechos fuera de la aplicación solo se recogen al caducar la entrada ({@code sql.cache.ttl}).
+ */
+@Service
+public class CacheResultadosSQL {
+
+    /** Funciones y cláusulas cuyo resultado cambia entre ejecuciones aunque no cambien las tablas. */
+    private static final Pattern NO_DETERMINISTA = Pattern.compile(
+            "\\b(NOW|SYSDATE|CURDATE|CURTIME|UTC_DATE|UTC_TIME|UTC_TIMESTAMP|UNIX_TIMESTAMP|RAND|UUID|UUID_SHORT"
+            + "|SLEEP|BENCHMARK|LAST_INSERT_ID|FOUND_ROWS|ROW_COUNT|CONNECTION_ID|USER|SESSION_USER|SYSTEM_USER"
+            + "|DATABASE|NEXTVAL|LASTVAL|GET_LOCK)\\s*\\("
+            + "|\\bCURRENT_(DATE|TIME|TIMESTAMP|USER)\\b|\\bLOCALTIME(STAMP)?\\b|@|\\bINTO\\b|\\bFOR\\s+UPDATE\\b"
+            + "|\\bLOCK\\s+IN\\s+SHARE\\s+MODE\\b",
+            Pattern.CASE_INSENSITIVE);
+
+    /** Sentencias que crean o añaden filas a tablas que ya nombran: no afectan a otras tablas. */
+    private static final Set<String> SOLO_SUS_TABLAS = Set.of("insert", "replace", "create");
+
+    /** Sentencias que no modifican nada. */
+    private static final Set<String> LECTURAS = Set.of("select", "with", "show", "describe", "explain");
+
+    /** Carga de una consulta que no está en caché. */
+    @FunctionalInterface
+    public interface CargaConsulta {
+        ResultadoColumnar cargar() throws SQLException;
+    }
+
+    private record Entrada(ResultadoColumnar resultado, Set<String> tablas) {
+    }
+
+    private final CatalogoEsquema catalogoEsquema;
+    private final boolean habilitada;
+    private final Cache<String, Entrada> entradas;
+    /** Tabla -> claves de las entradas que la leen. */
+    private final Map<String, Set<String>> clavesPorTabla = new ConcurrentHashMap<>();
+    /** Tabla -> número de invalidaciones, para no guardar un resultado leído antes de un cambio. */
+    private final Map<String, AtomicLong> versiones = new ConcurrentHashMap<>();
+    private final AtomicLong versionGlobal = new AtomicLong();
+
+    /**
+     * Constructor que permite la inyección de dependencias.
+     *
+     * @param catalogoEsquema Catálogo del esquema, para reconocer los nombres de tabla
+     * @param registro Registro de métricas, donde se publican aciertos, fallos y expulsiones
+     * @param habilitada true para usar la caché
+     * @param tamanioMaximo Memoria estimada máxima de los resultados guardados
+     * @param ttl Tiempo máximo que se guarda un resultado
+     */
+    public CacheResultadosSQL(CatalogoEsquema catalogoEsquema, MeterRegistry registro,
+                              @Value("${sql.cache.habilitada:false}") boolean habilitada,
+                              @Value("${sql.cache.tamanio-maximo:64MB}") DataSize tamanioMaximo,
+                              @Value("${sql.cache.ttl:PT10M}") Duration ttl) {
+        this.catalogoEsquema = catalogoEsquema;
+        this.habilitada = habilitada;
+        this.entradas = Caffeine.newBuilder()
+                .maximumWeight(tamanioMaximo.toBytes())
+                .weigher((String clave, Entrada entrada) ->
+                        (int) Math.min(Integer.MAX_VALUE, clave.length() * 2L + entrada.resultado().getBytesEstimados()))
+                .expireAfterWrite(ttl)
+                // Las invalidaciones ya limpian el índice por tabla; aquí solo las expulsiones por tamaño o TTL
+                .evictionListener((String clave, Entrada entrada, RemovalCause causa) -> {
+                    if (clave != null && entrada != null) olvidarEtiquetas(clave, entrada.tablas());
+                })
+                .recordStats()
+                .build();
+        if (habilitada) CaffeineCacheMetrics.monitor(registro, entradas, "sql.resultados");
+    }
+
+    /**
+     * @return true si la caché está habilitada
+     */
+    public boolean isHabilitada() {
+        return habilitada;
+    }
+
+    /**
+     * Devuelve el resultado guardado de un SELECT o lo carga y lo guarda.
+     * Si la caché está deshabilitada o la consulta no se puede guardar, simplemente la carga.
+     * El resultado devuelto se comparte entre peticiones y no se debe modificar.
+     *
+     * @param sql Sentencia SELECT
+     * @param carga Ejecución de la consulta si no está guardada
+     * @return Resultado de la consulta
+     * @throws SQLException si la carga falla
+     */
+    public ResultadoColumnar obtener(String sql, CargaConsulta carga) throws SQLException {
+        if (!habilitada || !LECTURAS.contains(MetricasConsultas.tipoSentencia(sql))
+                || NO_DETERMINISTA.matcher(sql).find()) {
+            return carga.cargar();
+        }
+        String clave = normalizar(sql);
+        Entrada entrada = entradas.getIfPresent(clave);
+        if (entrada != null) return entrada.resultado();
+
+        Set<String> identificadores = identificadoresDe(sql);
+        if (nombraVista(identificadores)) return carga.cargar();
+        Set<String> tablas = tablasDe(identificadores);
+        if (tablas.isEmpty()) return carga.cargar();
+
+        long version = version(tablas);
+        ResultadoColumnar resultado = carga.cargar();
+        if (resultado == null || !resultado.isConsulta()) return resultado;
+        Entrada nueva = new Entrada(resultado, tablas);
+        entradas.put(clave, nueva);
+        for (String tabla : tablas) {
+            clavesPorTabla.compute(tabla, (t, claves) -> {
+                Set<String> conClave = claves != null ? claves : ConcurrentHashMap.newKeySet();
+                conClave.add(clave);
+                return conClave;
+            });
+        }
+        if (version(tablas) != version && entradas.asMap().remove(clave, nueva)) {
+            // Una tabla ha cambiado mientras se leía: el resultado puede ser antiguo
+            olvidarEtiquetas(clave, tablas);
+        }
+        return resultado;
+    }
+
+    /**
+     * Invalida las entradas afectadas por una sentencia ya ejecutada que no es SELECT.
+     *
+     * @param sql Sentencia ejecutada
+     */
+    public void invalidarPor(String sql) {
+        if (!habilitada) return;
+        String tipo = MetricasConsultas.tipoSentencia(sql);
+        if (LECTURAS.contains(tipo)) return;
+        Set<String> identificadores = identificadoresDe(sql);
+        Set<String> tablas = tablasDe(identificadores);
+        if (nombraVista(identificadores) || tablas.isEmpty() && !SOLO_SUS_TABLAS.contains(tipo)) {
+            invalidarTodo();
+        } else {
+            invalidarTablas(tablas);
+        }
+    }
+
+    /**
+     * Invalida las entradas que leen alguna de las tablas indicadas.
+     *
+     * @param tablas Nombres de tabla en minúsculas, como los devuelve {@link #tablasDe}
+     */
+    public void invalidarTablas(Collection<String> tablas) {
+        if (!habilitada) return;
+        for (String tabla : tablas) {
+            versiones.computeIfAbsent(tabla, t -> new AtomicLong()).incrementAndGet();
+            Set<String> claves = clavesPorTabla.remove(tabla);
+            if (claves != null) entradas.invalidateAll(claves);
+        }
+    }
+
+    /**
+     * Vacía la caché.
+     */
+    public void invalidarTodo() {
+        if (!habilitada) return;
+        versionGlobal.incrementAndGet();
+        entradas.invalidateAll();
+        clavesPorTabla.clear();
+    }
+
+    /**
+     * Devuelve las tablas del catálogo que aparecen como identificador en una sentencia,
+     * fuera de literales. Puede incluir de más (una columna que se llama como una tabla),
+     * lo que solo provoca invalidaciones de más.
+     *
+     * @param sql Sentencia SQL
+     * @return Nombres de tabla en minúsculas; vacío si no nombra ninguna conocida
+     */
+    public Set<String> tablasDe(String sql) {
+        return tablasDe(identificadoresDe(sql));
+    }
+
+    private Set<String> tablasDe(Set<String> identificadores) {
+        Set<String> tablas = new HashSet<>();
+        try {
+            for (String identificador : identificadores) {
+                if (catalogoEsquema.buscarTabla(identificador) != null) tablas.add(identificador);
+            }
+        } catch (SQLException ex) {
+            // Sin catálogo no se sabe qué tablas se leen: la consulta no se guarda
+            return Set.of();
+        }
+        return tablas;
+    }
+
+    /**
+     * Indica si alguno de los identificadores es una vista. Sin catálogo se supone que sí,
+     * para no guardar ni dejar sin invalidar nada que no se sabe qué lee.
+     */
+    private boolean nombraVista(Set<String> identificadores) {
+        try {
+            for (String identificador : identificadores) {
+                if (catalogoEsquema.esVista(identificador)) return true;
+            }
+            return false;
+        } catch (SQLException ex) {
+            return true;
+        }
+    }
+
+    /**
+     * Devuelve las palabras e identificadores entre acentos graves de una sentencia, fuera de
+     * literales y en minúsculas.
+     */
+    private static Set<String> identificadoresDe(String sql) {
+        Set<String> identificadores = new HashSet<>();
+        int i = 0;
+        int longitud = sql.length();
+        while (i < longitud) {
+            char c = sql.charAt(i);
+            if (c == '\'' || c == '"') {
+                i = finLiteral(sql, i, c);
+            } else if (c == '`') {
+                int fin = finIdentificador(sql, i);
+                identificadores.add(sql.substring(i + 1, Math.max(i + 1, fin - 1)).toLowerCase(Locale.ROOT));
+                i = fin;
+            } else if (Character.isLetterOrDigit(c) || c == '_' || c == '$') {
+                int fin = i;
+                while (fin < longitud && (Character.isLetterOrDigit(sql.charAt(fin))
+                        || sql.charAt(fin) == '_' || sql.charAt(fin) == '$')) fin++;
+                identificadores.add(sql.substring(i, fin).toLowerCase(Locale.ROOT));
+                i = fin;
+            } else {
+                i++;
+            }
+        }
+        return identificadores;
+    }
+
+    private long version(Set<String> tablas) {
+        long suma = versionGlobal.get();
+        for (String tabla : tablas) {
+            AtomicLong version = versiones.get(tabla);
+            if (version != null) suma += version.get();
+        }
+        return suma;
+    }
+
+    /**
+     * Quita una clave ya descartada del índice por tabla. Si entretanto se ha vuelto a guardar
+     * la misma consulta con esa tabla, la etiqueta se conserva: las altas en el índice también
+     * se hacen con {@code compute}, así que no se cruzan con esta comprobación.
+     */
+    private void olvidarEtiquetas(String clave, Set<String> tablas) {
+        for (String tabla : tablas) {
+            clavesPorTabla.computeIfPresent(tabla, (t, claves) -> {
+                Entrada actual = entradas.getIfPresent(clave);
+                if (actual == null || !actual.tablas().contains(t)) claves.remove(clave);
+                return claves.isEmpty() ? null : claves;
+            });
+        }
+    }
+
+    /**
+     * Quita los espacios sobrantes y el ';' final, sin tocar los literales.
+     */
+    static String normalizar(String sql) {
+        StringBuilder clave = new StringBuilder(sql.length());
+        int i = 0;
+        int longitud = sql.length();
+        while (i < longitud) {
+            char c = sql.charAt(i);
+            if (c == '\'' || c == '"' || c == '`') {
+                int fin = c == '`' ? finIdentificador(sql, i) : finLiteral(sql, i, c);
+                clave.append(sql, i, fin);
+                i = fin;
+            } else if (Character.isWhitespace(c)) {
+                while (i < longitud && Character.isWhitespace(sql.charAt(i))) i++;
+                if (!clave.isEmpty()) clave.append(' ');
+            } else {
+                clave.append(c);
+                i++;
+            }
+        }
+        int fin = clave.length();
+        while (fin > 0 && (clave.charAt(fin - 1) == ' ' || clave.charAt(fin - 1) == ';')) fin--;
+        clave.setLength(fin);
+        return clave.toString();
+    }
+
+    /**
+     * Devuelve la posición siguiente al cierre de un identificador entre acentos graves.
+     */
+    private static int finIdentificador(String sql, int inicio) {
+        int fin = sql.indexOf('`', inicio + 1);
+        return fin < 0 ? sql.length() : fin + 1;
+    }
+
+    /**
+     * Devuelve la posición siguiente al cierre de un literal, con escapes por barra y por comilla doble.
+     */
+    private static int finLiteral(String sql, int inicio, char comilla) {
+        int i = inicio + 1;
+        while (i < sql.length()) {
+            char c = sql.charAt(i);
+            if (c == '\\') {
+                i += 2;
+            } else if (c == comilla) {
+                if (i + 1 < sql.length() && sql.charAt(i + 1) == comilla) {
+                    i += 2;
+                } else {
+                    return i + 1;
+                }
+            } else {
+                i++;
+            }
+        }
+        return sql.length();
+    }
+}
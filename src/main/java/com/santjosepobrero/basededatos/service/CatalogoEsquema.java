@@ -0,0 +1,255 @@
+package com.santjosepobrero.basededatos.service;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.time.Instant;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Catálogo en memoria del esquema de la base de datos: tablas, columnas, tipos,
+ * índices, claves primarias y tamaño aproximado de cada tabla, más los nombres de las vistas.
+ * <p>
+ * Se carga al arrancar, se refresca periódicamente ({@code catalogo.intervalo-refresco})
+ * y también bajo demanda. Cada carga tiene una versión que sirve como ETag, de modo que
+ * las visitas repetidas a /tablas no cuestan nada a la base de datos.
+ */
+@Service
+public class CatalogoEsquema {
+
+    private static final Logger logger = Logger.getLogger(CatalogoEsquema.class.getName());
+
+    /** Estado inmutable del catálogo tras una carga. */
+    private record Instantanea(Map<String, InfoTabla> tablas, Set<String> vistas, String version, Instant cargado) {
+    }
+
+    private final DataSource origenDeDatos;
+    private final MetricasConsultas metricas;
+    private final Object cerrojoCarga = new Object();
+
+    private volatile Instantanea instantanea;
+    private volatile boolean desactualizado;
+
+    /**
+     * Constructor que permite la inyección de dependencias.
+     *
+     * @param origenDeDatos Fuente de datos JDBC
+     * @param metricas Métricas de latencia de las cargas del catálogo
+     */
+    public CatalogoEsquema(DataSource origenDeDatos, MetricasConsultas metricas) {
+        this.origenDeDatos = origenDeDatos;
+        this.metricas = metricas;
+    }
+
+    /**
+     * Carga el catálogo en cuanto la aplicación está lista. Si falla, se reintentará
+     * en el primer uso. Se ejecuta antes del calentamiento de arranque, que necesita el catálogo.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(0)
+    public void cargarAlArrancar() {
+        try {
+            refrescar();
+        } catch (SQLException ex) {
+            logger.log(Level.WARNING, "No se pudo cargar el catálogo del esquema al arrancar", ex);
+        }
+    }
+
+    /**
+     * Refresca el catálogo periódicamente para recoger cambios hechos fuera de la aplicación.
+     */
+    @Scheduled(fixedDelayString = "${catalogo.intervalo-refresco:PT10M}",
+            initialDelayString = "${catalogo.intervalo-refresco:PT10M}")
+    public void refrescoProgramado() {
+        try {
+            refrescar();
+        } catch (SQLException ex) {
+            logger.log(Level.WARNING, "No se pudo refrescar el catálogo del esquema", ex);
+        }
+    }
+
+    /**
+     * Marca el catálogo como desactualizado para que se recargue en el siguiente uso.
+     * Se llama tras ejecutar sentencias que pueden crear o cambiar tablas.
+     */
+    public void marcarDesactualizado() {
+        desactualizado = true;
+    }
+
+    /**
+     * Vuelve a leer todos los metadatos del esquema.
+     *
+     * @throws SQLException si no se pueden leer los metadatos
+     */
+    public void refrescar() throws SQLException {
+        synchronized (cerrojoCarga) {
+            desactualizado = false;
+            // Siempre en la principal, aunque haya réplicas: las tablas creadas por un script
+            // tienen que aparecer en cuanto se invalida el catálogo, sin esperar a la replicación
+            try (Connection conexion = origenDeDatos.getConnection()) {
+                instantanea = metricas.medir("catalogo", "esquema", "metadatos del esquema", () -> cargar(conexion));
+            } catch (SQLException ex) {
+                desactualizado = true;
+                if (ex.getMessage() != null && ex.getMessage().toLowerCase().contains("denied")) {
+                    throw new SQLException("No tienes permisos para leer el esquema de la base de datos.", ex);
+                }
+                throw new SQLException("No se pudo leer el esquema de la base de datos: " + ex.getMessage(), ex);
+            }
+        }
+    }
+
+    private Instantanea cargar(Connection conexion) throws SQLException {
+        String esquema = conexion.getCatalog();
+        DatabaseMetaData meta = conexion.getMetaData();
+
+        List<String> nombres = new ArrayList<>();
+        try (ResultSet rs = meta.getTables(esquema, null, "%", new String[]{"TABLE"})) {
+            while (rs.next())
+                nombres.add(rs.getString("TABLE_NAME"));
+        }
+        Set<String> vistas = new HashSet<>();
+        try (ResultSet rs = meta.getTables(esquema, null, "%", new String[]{"VIEW"})) {
+            while (rs.next())
+                vistas.add(rs.getString("TABLE_NAME").toLowerCase(Locale.ROOT));
+        }
+
+        // Columnas que encabezan algún índice: son las que se pueden ordenar o filtrar sin recorrer la tabla
+        Set<String> columnasIndexadas = new HashSet<>();
+        try (PreparedStatement ps = conexion.prepareStatement(
+                "SELECT TABLE_NAME, COLUMN_NAME FROM information_schema.STATISTICS WHERE TABLE_SCHEMA = ? AND SEQ_IN_INDEX = 1")) {
+            ps.setString(1, esquema);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next())
+                    columnasIndexadas.add(rs.getString(1) + "." + rs.getString(2).toLowerCase(Locale.ROOT));
+            }
+        }
+
+        // Todas las columnas del esquema en una sola llamada, ordenadas por tabla y posición
+        Map<String, List<InfoColumna>> columnasPorTabla = new HashMap<>();
+        try (ResultSet rs = meta.getColumns(esquema, null, "%", "%")) {
+            while (rs.next()) {
+                String tabla = rs.getString("TABLE_NAME");
+                String columna = rs.getString("COLUMN_NAME");
+                columnasPorTabla.computeIfAbsent(tabla, t -> new ArrayList<>())
+                        .add(new InfoColumna(columna, rs.getInt("DATA_TYPE"), rs.getString("TYPE_NAME"),
+                                rs.getInt("NULLABLE") != DatabaseMetaData.columnNoNulls,
+                                columnasIndexadas.contains(tabla + "." + columna.toLowerCase(Locale.ROOT))));
+            }
+        }
+
+        Map<String, Long> filasPorTabla = new HashMap<>();
+        try (PreparedStatement ps = conexion.prepareStatement(
+                "SELECT TABLE_NAME, TABLE_ROWS FROM information_schema.TABLES WHERE TABLE_SCHEMA = ?")) {
+            ps.setString(1, esquema);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next())
+                    filasPorTabla.put(rs.getString(1), rs.getLong(2));
+            }
+        }
+
+        Map<String, InfoTabla> tablas = new LinkedHashMap<>();
+        StringBuilder firma = new StringBuilder();
+        for (String nombre : nombres) {
+            SortedMap<Short, String> clavePorPosicion = new TreeMap<>();
+            try (ResultSet rs = meta.getPrimaryKeys(esquema, null, nombre)) {
+                while (rs.next())
+                    clavePorPosicion.put(rs.getShort("KEY_SEQ"), rs.getString("COLUMN_NAME"));
+            }
+            InfoTabla info = new InfoTabla(nombre, columnasPorTabla.getOrDefault(nombre, List.of()),
+                    new ArrayList<>(clavePorPosicion.values()), filasPorTabla.getOrDefault(nombre, 0L));
+            tablas.put(nombre.toLowerCase(Locale.ROOT), info);
+
+            firma.append(nombre).append(':').append(info.getFilasAproximadas()).append(':');
+            for (InfoColumna columna : info.getColumnas())
+                firma.append(columna.getNombre()).append(' ').append(columna.getNombreTipo())
+                        .append(columna.isIndexada() ? " i," : ",");
+            firma.append(info.getClavePrimaria()).append(';');
+        }
+        firma.append(new TreeSet<>(vistas));
+
+        CRC32 crc = new CRC32();
+        crc.update(firma.toString().getBytes(StandardCharsets.UTF_8));
+        String version = Long.toHexString(crc.getValue()) + "-" + tablas.size();
+        return new Instantanea(Collections.unmodifiableMap(tablas), Collections.unmodifiableSet(vistas), version,
+                Instant.now());
+    }
+
+    private Instantanea obtenerInstantanea() throws SQLException {
+        Instantanea actual = instantanea;
+        if (actual == null || desactualizado) {
+            synchronized (cerrojoCarga) {
+                // Los hilos que esperaban el cerrojo usan la carga del primero en vez de repetirla
+                if (instantanea == null || desactualizado) refrescar();
+            }
+            actual = instantanea;
+        }
+        return actual;
+    }
+
+    /**
+     * @return Nombres de todas las tablas del esquema
+     * @throws SQLException si el catálogo no se pudo cargar
+     */
+    public List<String> listarNombresTablas() throws SQLException {
+        List<String> nombres = new ArrayList<>();
+        for (InfoTabla info : obtenerInstantanea().tablas().values())
+            nombres.add(info.getNombre());
+        return nombres;
+    }
+
+    /**
+     * @return Metadatos de todas las tablas del esquema
+     * @throws SQLException si el catálogo no se pudo cargar
+     */
+    public Collection<InfoTabla> obtenerTablas() throws SQLException {
+        return obtenerInstantanea().tablas().values();
+    }
+
+    /**
+     * Busca los metadatos de una tabla, sin distinguir mayúsculas.
+     *
+     * @param nombreTabla Nombre de la tabla
+     * @return Metadatos de la tabla, o null si no existe en el catálogo
+     * @throws SQLException si el catálogo no se pudo cargar
+     */
+    public InfoTabla buscarTabla(String nombreTabla) throws SQLException {
+        if (nombreTabla == null) return null;
+        return obtenerInstantanea().tablas().get(nombreTabla.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Indica si un nombre es el de una vista del esquema, sin distinguir mayúsculas.
+     *
+     * @param nombre Nombre que se quiere comprobar
+     * @return true si es una vista
+     * @throws SQLException si el catálogo no se pudo cargar
+     */
+    public boolean esVista(String nombre) throws SQLException {
+        return nombre != null && obtenerInstantanea().vistas().contains(nombre.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * @return Versión de la carga actual, apta como ETag
+     * @throws SQLException si el catálogo no se pudo cargar
+     */
+    public String obtenerVersion() throws SQLException {
+        return obtenerInstantanea().version();
+    }
+
+    /**
+     * @return Instante de la carga actual
+     * @throws SQLException si el catálogo no se pudo cargar
+     */
+    public Instant obtenerUltimaCarga() throws SQLException {
+        return obtenerInstantanea().cargado();
+    }
+}
@@ -0,0 +1,91 @@
+package com.santjosepobrero.basededatos.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Orden y filtros pedidos al ver una tabla.
+ * <p>
+ * Solo guarda lo que llega en la petición; {@link ServicioBaseDeDatos} comprueba las columnas
+ * contra el {@link CatalogoEsquema} y, salvo que se fuerce, exige que tengan índice.
+ */
+public class ConsultaTabla {
+
+    /** Consulta sin orden ni filtros: la tabla en el orden de su clave primaria. */
+    public static final ConsultaTabla SIN_CRITERIOS = new ConsultaTabla(null, false, List.of(), false);
+
+    private final String columnaOrden;
+    private final boolean descendente;
+    private final List<FiltroColumna> filtros;
+    private final boolean forzar;
+
+    /**
+     * @param columnaOrden Columna por la que ordenar, o null para el orden de la clave primaria
+     * @param descendente true para orden descendente
+     * @param filtros Filtros que deben cumplir las filas
+     * @param forzar true para permitir columnas sin índice
+     */
+    public ConsultaTabla(String columnaOrden, boolean descendente, List<FiltroColumna> filtros, boolean forzar) {
+        this.columnaOrden = columnaOrden == null || columnaOrden.isBlank() ? null : columnaOrden.trim();
+        this.descendente = descendente;
+        this.filtros = List.copyOf(filtros);
+        this.forzar = forzar;
+    }
+
+    /**
+     * Construye la consulta a partir de los parámetros de la URL.
+     *
+     * @param orden Columna por la que ordenar (opcional)
+     * @param direccion "asc" o "desc" (opcional, ascendente por defecto)
+     * @param filtros Filtros con el formato {@code columna:operador:valor} (opcional)
+     * @param forzar true para permitir columnas sin índice
+     * @return Consulta construida
+     * @throws IllegalArgumentException si algún filtro o la dirección no son válidos
+     */
+    public static ConsultaTabla desdeParametros(String orden, String direccion, List<String> filtros, boolean forzar) {
+        boolean descendente = false;
+        if (direccion != null && !direccion.isBlank()) {
+            if (direccion.equalsIgnoreCase("desc")) descendente = true;
+            else if (!direccion.equalsIgnoreCase("asc"))
+                throw new IllegalArgumentException("Dirección de orden no válida: usa asc o desc.");
+        }
+        List<FiltroColumna> interpretados = new ArrayList<>();
+        if (filtros != null) {
+            for (String filtro : filtros) {
+                if (filtro != null && !filtro.isBlank()) interpretados.add(FiltroColumna.desdeParametro(filtro));
+            }
+        }
+        return new ConsultaTabla(orden, descendente, interpretados, forzar);
+    }
+
+    public String getColumnaOrden() {
+        return columnaOrden;
+    }
+
+    public boolean isDescendente() {
+        return descendente;
+    }
+
+    public List<FiltroColumna> getFiltros() {
+        return filtros;
+    }
+
+    public boolean isForzar() {
+        return forzar;
+    }
+
+    /** @return true si hay algún filtro */
+    public boolean isFiltrada() {
+        return !filtros.isEmpty();
+    }
+
+    /** @return true si no hay orden ni filtros */
+    public boolean isSinCriterios() {
+        return columnaOrden == null && filtros.isEmpty();
+    }
+
+    /** @return Filtros en el formato de la URL, para construir enlaces */
+    public List<String> getFiltrosComoParametros() {
+        return filtros.stream().map(FiltroColumna::comoParametro).toList();
+    }
+}
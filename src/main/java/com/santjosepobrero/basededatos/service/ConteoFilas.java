@@ -0,0 +1,41 @@
+package com.santjosepobrero.basededatos.service;
+
+/**
+ * Número de filas de una tabla según la estrategia de conteo usada.
+ */
+public class ConteoFilas {
+
+    private final Long total;
+    private final EstrategiaConteo estrategia;
+
+    /**
+     * @param total Número de filas, o null si no se ha contado (estrategia perezosa)
+     * @param estrategia Estrategia con la que se obtuvo
+     */
+    public ConteoFilas(Long total, EstrategiaConteo estrategia) {
+        this.total = total;
+        this.estrategia = estrategia;
+    }
+
+    public Long getTotal() {
+        return total;
+    }
+
+    public EstrategiaConteo getEstrategia() {
+        return estrategia;
+    }
+
+    /**
+     * @return true si el total es una estimación y no un conteo exacto
+     */
+    public boolean isAproximado() {
+        return estrategia == EstrategiaConteo.ESTIMADO;
+    }
+
+    /**
+     * @return true si hay un total que mostrar
+     */
+    public boolean isDisponible() {
+        return total != null;
+    }
+}
@@ -0,0 +1,203 @@
+package com.santjosepobrero.basededatos.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Revisa con EXPLAIN el coste de los SELECT de los scripts subidos antes de ejecutarlos.
+ * <p>
+ * Con el plan se estiman las filas examinadas: dentro de cada SELECT del plan (mismo id) las
+ * tablas se recorren en bucles anidados, así que sus filas se multiplican; los distintos SELECT
+ * (subconsultas, UNION) se suman. Una consulta es cara si esa estimación supera
+ * {@code script.coste.filas-maximas} o si recorre entera ({@code type = ALL}) una tabla de más
+ * de {@code script.coste.filas-escaneo-completo} filas.
+ * <p>
+ * Una consulta cara que devuelve filas según las va leyendo (sin agrupar, ordenar con filesort
+ * ni tablas temporales) se limita con {@code LIMIT}, porque así el servidor para enseguida.
+ * Si ya tiene un LIMIT pequeño se deja como está, y si lo tiene grande se reduce para que entre
+ * el desplazamiento y las filas pedidas no se lean más de {@code script.coste.limite}. El resto
+ * se rechaza: un LIMIT no evita que se examinen todas las filas, y un desplazamiento mayor que
+ * el límite obliga a leerlas igualmente. En todos los casos el usuario ve el resumen del plan.
+ */
+@Service
+public class ControlCosteConsultas {
+
+    private static final Pattern CONSULTA = Pattern.compile("^\\s*\\(*\\s*(SELECT|WITH)\\b", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * LIMIT al final de la sentencia (y no dentro de una subconsulta): LIMIT n, LIMIT m, n o LIMIT n OFFSET m.
+     * El grupo 2 es la coma o OFFSET, que indica cuál de los números es el desplazamiento.
+     */
+    private static final Pattern LIMIT_FINAL = Pattern.compile(
+            "\\bLIMIT\\s+(\\d+)(?:\\s*(,|\\bOFFSET\\b)\\s*(\\d+))?\\s*$", Pattern.CASE_INSENSITIVE);
+
+    /** Consultas que examinan todas sus filas antes de devolver la primera, o que no admiten un LIMIT al final. */
+    private static final Pattern NO_LIMITABLE = Pattern.compile(
+            "\\b(COUNT|SUM|AVG|MIN|MAX|GROUP_CONCAT|STD|STDDEV|VARIANCE)\\s*\\(|\\bGROUP\\s+BY\\b|\\bDISTINCT\\b"
+            + "|\\bFOR\\s+UPDATE\\b|\\bLOCK\\s+IN\\s+SHARE\\s+MODE\\b|\\bINTO\\b|\\bPROCEDURE\\b",
+            Pattern.CASE_INSENSITIVE);
+
+    private final boolean habilitado;
+    private final long filasMaximas;
+    private final long filasEscaneoCompleto;
+    private final int limite;
+
+    /**
+     * @param habilitado false para ejecutar los SELECT sin revisar su plan
+     * @param filasMaximas Filas examinadas estimadas a partir de las cuales una consulta es cara
+     * @param filasEscaneoCompleto Filas de una tabla a partir de las cuales recorrerla entera es caro
+     * @param limite Filas a las que se limita una consulta cara (0 = rechazarla siempre)
+     */
+    public ControlCosteConsultas(@Value("${script.coste.habilitado:true}") boolean habilitado,
+                                 @Value("${script.coste.filas-maximas:10000000}") long filasMaximas,
+                                 @Value("${script.coste.filas-escaneo-completo:1000000}") long filasEscaneoCompleto,
+                                 @Value("${script.coste.limite:1000}") int limite) {
+        this.habilitado = habilitado;
+        this.filasMaximas = filasMaximas;
+        this.filasEscaneoCompleto = filasEscaneoCompleto;
+        this.limite = Math.max(limite, 0);
+    }
+
+    /**
+     * Revisa una sentencia del script. Las que no son SELECT se devuelven sin cambios.
+     *
+     * @param sentencia Sentencia JDBC de la conexión del script, donde se ejecuta el EXPLAIN
+     * @param sql Sentencia que se quiere ejecutar
+     * @return Sentencia que se debe ejecutar (quizá con LIMIT añadido o reducido) y resumen del plan
+     * @throws SQLException si la consulta es demasiado cara y no se puede limitar (agrega, ordena
+     *                      todo, el límite es 0 o su desplazamiento ya pasa del límite), o falla el EXPLAIN
+     */
+    public Revision revisar(Statement sentencia, String sql) throws SQLException {
+        if (!habilitado || !CONSULTA.matcher(sql).find()) return new Revision(sql, null, null);
+
+        Plan plan = explicar(sentencia, sql);
+        String motivo = motivoCoste(plan);
+        if (motivo == null) return new Revision(sql, plan.resumen(), null);
+
+        boolean limitable = !plan.leeTodoAntes && !NO_LIMITABLE.matcher(sql).find();
+        if (limitable) {
+            Matcher limiteActual = LIMIT_FINAL.matcher(sql);
+            if (!limiteActual.find()) {
+                if (limite > 0) {
+                    return new Revision(sql + " LIMIT " + limite, plan.resumen(),
+                            "Consulta limitada a " + limite + " filas: " + motivo + ".");
+                }
+            } else {
+                boolean conComa = ",".equals(limiteActual.group(2));
+                String textoFilas = conComa ? limiteActual.group(3) : limiteActual.group(1);
+                String textoDesplazamiento = conComa ? limiteActual.group(1) : limiteActual.group(3);
+                long filas = Long.parseLong(textoFilas);
+                long desplazamiento = textoDesplazamiento != null ? Long.parseLong(textoDesplazamiento) : 0;
+                if (desplazamiento + filas <= Math.max(limite, 1)) return new Revision(sql, plan.resumen(), null);
+                if (desplazamiento < limite) {
+                    long reducidas = limite - desplazamiento;
+                    String nuevoLimite = conComa ? "LIMIT " + desplazamiento + ", " + reducidas
+                            : textoDesplazamiento != null ? "LIMIT " + reducidas + " OFFSET " + desplazamiento
+                            : "LIMIT " + reducidas;
+                    return new Revision(sql.substring(0, limiteActual.start()) + nuevoLimite, plan.resumen(),
+                            "Consulta limitada a " + reducidas + " filas: " + motivo + ".");
+                }
+            }
+        }
+        throw new SQLException("Consulta rechazada por su coste estimado: " + motivo + ". Plan: " + plan.resumen());
+    }
+
+    private String motivoCoste(Plan plan) {
+        for (Map.Entry<String, Long> escaneo : plan.escaneosCompletos.entrySet()) {
+            if (escaneo.getValue() > filasEscaneoCompleto) {
+                return "recorre entera la tabla " + escaneo.getKey() + " (≈" + escaneo.getValue() + " filas)";
+            }
+        }
+        if (plan.filasExaminadas > filasMaximas) {
+            return "examinaría ≈" + String.format(Locale.ROOT, "%.0f", plan.filasExaminadas) + " filas";
+        }
+        return null;
+    }
+
+    private static Plan explicar(Statement sentencia, String sql) throws SQLException {
+        Map<String, Double> filasPorSelect = new LinkedHashMap<>();
+        Map<String, Long> escaneosCompletos = new LinkedHashMap<>();
+        List<String> pasos = new ArrayList<>();
+        boolean leeTodoAntes = false;
+
+        try (ResultSet rs = sentencia.executeQuery("EXPLAIN " + sql)) {
+            while (rs.next()) {
+                String id = rs.getString("id");
+                String tabla = rs.getString("table");
+                String tipo = rs.getString("type");
+                long filas = rs.getLong("rows");
+                boolean sinFilas = rs.wasNull();
+                String extra = rs.getString("Extra");
+
+                if (!sinFilas) filasPorSelect.merge(id == null ? "" : id, (double) Math.max(filas, 1), (a, b) -> a * b);
+                if ("ALL".equals(tipo) && tabla != null && !sinFilas) escaneosCompletos.merge(tabla, filas, Math::max);
+                if (extra != null && (extra.contains("Using temporary") || extra.contains("Using filesort"))) {
+                    leeTodoAntes = true;
+                }
+
+                StringBuilder paso = new StringBuilder(tabla != null ? tabla : "-");
+                paso.append(' ').append(tipo != null ? tipo : "-");
+                if (!sinFilas) paso.append(" ≈").append(filas);
+                if (extra != null && !extra.isBlank()) paso.append(" (").append(extra).append(')');
+                pasos.add(paso.toString());
+            }
+        }
+        double total = filasPorSelect.values().stream().mapToDouble(Double::doubleValue).sum();
+        return new Plan(pasos, total, escaneosCompletos, leeTodoAntes);
+    }
+
+    /**
+     * Lo que se saca del EXPLAIN: un paso por tabla, filas examinadas estimadas, tablas
+     * recorridas enteras con sus filas y si hay que leerlo todo antes de devolver la primera fila.
+     */
+    private record Plan(List<String> pasos, double filasExaminadas, Map<String, Long> escaneosCompletos,
+                        boolean leeTodoAntes) {
+
+        String resumen() {
+            return String.join("; ", pasos) + " — ≈"
+                    + String.format(Locale.ROOT, "%.0f", filasExaminadas) + " filas examinadas";
+        }
+    }
+
+    /**
+     * Resultado de revisar una sentencia.
+     */
+    public static class Revision {
+
+        private final String sql;
+        private final String plan;
+        private final String aviso;
+
+        Revision(String sql, String plan, String aviso) {
+            this.sql = sql;
+            this.plan = plan;
+            this.aviso = aviso;
+        }
+
+        /** @return Sentencia que se debe ejecutar */
+        public String getSql() {
+            return sql;
+        }
+
+        /** @return Resumen del plan, o null si la sentencia no se ha revisado */
+        public String getPlan() {
+            return plan;
+        }
+
+        /** @return Motivo por el que se ha limitado la consulta, o null si se ejecuta tal cual */
+        public String getAviso() {
+            return aviso;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.santjosepobrero.basededatos.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Codifica y decodifica los cursores opacos de la paginación por clave (keyset).
+ * <p>
+ * Un cursor guarda la dirección de avance y los valores de la clave primaria
+ * de la fila frontera de la página. Para el cliente es solo un texto que debe
+ * devolver tal cual en el siguiente enlace.
+ */
+final class CursorPaginacion {
+
+    private static final Base64.Encoder CODIFICADOR = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODIFICADOR = Base64.getUrlDecoder();
+
+    /** true si el cursor pide las filas posteriores a la clave, false si pide las anteriores. */
+    private final boolean haciaAdelante;
+
+    /** Valores de las columnas de la clave, en el orden de la clave primaria. */
+    private final List<String> valores;
+
+    private CursorPaginacion(boolean haciaAdelante, List<String> valores) {
+        this.haciaAdelante = haciaAdelante;
+        this.valores = valores;
+    }
+
+    boolean esHaciaAdelante() {
+        return haciaAdelante;
+    }
+
+    List<String> getValores() {
+        return valores;
+    }
+
+    /**
+     * Genera el texto del cursor para una fila frontera.
+     *
+     * @param haciaAdelante true para "siguiente", false para "anterior"
+     * @param valores Valores de la clave de la fila frontera
+     * @return Cursor opaco apto para usarse en una URL
+     */
+    static String codificar(boolean haciaAdelante, String[] valores) {
+        StringBuilder cursor = new StringBuilder(haciaAdelante ? "s" : "a");
+        for (String valor : valores) {
+            cursor.append('.').append(CODIFICADOR.encodeToString(valor.getBytes(StandardCharsets.UTF_8)));
+        }
+        return cursor.toString();
+    }
+
+    /**
+     * Interpreta un cursor recibido del cliente.
+     *
+     * @param cursor Texto del cursor
+     * @param columnasClave Número de columnas que debe tener la clave
+     * @return Cursor decodificado
+     * @throws IllegalArgumentException si el cursor no es válido para la clave de la tabla
+     */
+    static CursorPaginacion decodificar(String cursor, int columnasClave) {
+        // -1 conserva las partes vacías del final: una clave con valor '' se codifica como "s."
+        String[] partes = cursor.split("\\.", -1);
+        if (partes.length != columnasClave + 1 || !(partes[0].equals("s") || partes[0].equals("a"))) {
+            throw new IllegalArgumentException("Cursor de paginación inválido.");
+        }
+        List<String> valores = new ArrayList<>(columnasClave);
+        try {
+            for (int i = 1; i < partes.length; i++) {
+                valores.add(new String(DECODIFICADOR.decode(partes[i]), StandardCharsets.UTF_8));
+            }
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Cursor de paginación inválido.", ex);
+        }
+        return new CursorPaginacion(partes[0].equals("s"), valores);
+    }
+}
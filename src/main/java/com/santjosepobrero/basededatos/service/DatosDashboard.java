@@ -0,0 +1,45 @@
+package com.santjosepobrero.basededatos.service;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Resultado de cargar las estadísticas del dashboard.
+ * <p>
+ * Cada serie se identifica por el nombre con el que se pasa a la vista. Si una
+ * consulta falla o agota su tiempo, su serie queda vacía y el motivo se guarda
+ * en {@link #getErrores()}, de modo que solo ese gráfico se degrada.
+ */
+public class DatosDashboard {
+
+    private final Map<String, ResultadoColumnar> series;
+    private final Map<String, String> errores;
+
+    /**
+     * @param series Resultado de cada consulta, por nombre de serie
+     * @param errores Mensaje de error de cada serie que no se pudo cargar
+     */
+    public DatosDashboard(Map<String, ResultadoColumnar> series, Map<String, String> errores) {
+        this.series = Collections.unmodifiableMap(series);
+        this.errores = Collections.unmodifiableMap(errores);
+    }
+
+    public Map<String, ResultadoColumnar> getSeries() {
+        return series;
+    }
+
+    public Map<String, String> getErrores() {
+        return errores;
+    }
+
+    /**
+     * Devuelve el resultado de una serie, o un resultado vacío si no se pudo cargar.
+     *
+     * @param nombre Nombre de la serie
+     * @return Resultado de la consulta guardado por columnas
+     */
+    public ResultadoColumnar getSerie(String nombre) {
+        ResultadoColumnar serie = series.get(nombre);
+        return serie != null ? serie : ResultadoColumnar.sinFilas("Sin datos.");
+    }
+}
@@ -0,0 +1,259 @@
+package com.santjosepobrero.basededatos.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.Reader;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLSyntaxErrorException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Ejecuta scripts SQL subidos por el usuario.
+ * <p>
+ * El script se lee sentencia a sentencia con {@link TokenizadorSQL}, sin cargarlo entero
+ * en memoria, y todas las sentencias se ejecutan sobre una misma conexión del pool.
+ * Los INSERT consecutivos se agrupan en lotes JDBC ({@code addBatch}), que el driver
+ * envía seguidos sin esperar la respuesta de cada uno.
+ * <p>
+ * Si se pide transacción, el script entero se confirma al final o se deshace ante el primer
+ * error. Las sentencias DDL (CREATE TABLE...) confirman implícitamente en MariaDB.
+ * <p>
+ * El progreso se publica en un {@link ResultadoScript}, desde el que también se puede cancelar
+ * la ejecución. Cada sentencia (o lote) tiene un tiempo máximo configurable.
+ * <p>
+ * Los SELECT fuera de transacción se sirven desde {@link CacheResultadosSQL}, y las sentencias
+ * que modifican invalidan los resultados guardados de sus tablas. La clave de la caché es solo
+ * el texto de la consulta, así que tras una sentencia que cambia la sesión (USE, SET, tablas
+ * temporales...) el resto del script ya no la usa, y al terminar se restablece la sesión para
+ * que la conexión vuelva limpia al pool.
+ * <p>
+ * Antes de ejecutar cada SELECT, {@link ControlCosteConsultas} revisa su plan con EXPLAIN y
+ * la limita o la rechaza si es demasiado cara.
+ */
+@Service
+public class EjecutorScriptSQL {
+
+    /** Instrucciones SQL que no se permiten en los archivos subidos. */
+    private static final Pattern INSTRUCCIONES_PROHIBIDAS = Pattern.compile(
+            "\\b(DROP|ALTER|DELETE|UPDATE|TRUNCATE|RENAME|MODIFY\\s+COLUMN)\\b", Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern INSERCION = Pattern.compile("^INSERT\\b", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * Sentencias que no cambian lo que ven las consultas siguientes de la misma conexión. Cualquier
+     * otra (USE, SET, CREATE TEMPORARY TABLE, LOCK TABLES, CALL...) puede hacer que un mismo SELECT
+     * devuelva algo distinto que en otra conexión, así que a partir de ella no se usa la caché.
+     */
+    private static final Pattern SIN_EFECTO_EN_SESION = Pattern.compile(
+            "^\\(*\\s*(SELECT|WITH|SHOW|DESCRIBE|DESC|EXPLAIN|INSERT|REPLACE)\\b", Pattern.CASE_INSENSITIVE);
+
+    private final DataSource origenDeDatos;
+    private final MetricasConsultas metricas;
+    private final CacheResultadosSQL cacheResultados;
+    private final ControlCosteConsultas controlCoste;
+    private final int tamanioLote;
+    private final int longitudMaximaSentencia;
+    private final int tiempoMaximoSentenciaSegundos;
+
+    /**
+     * @param origenDeDatos Fuente de datos JDBC
+     * @param metricas Métricas de latencia de cada sentencia y lote
+     * @param cacheResultados Caché de resultados de los SELECT
+     * @param controlCoste Revisión del plan de los SELECT antes de ejecutarlos
+     * @param tamanioLote Número máximo de INSERT por lote
+     * @param longitudMaximaSentencia Número máximo de caracteres de una sentencia del script
+     * @param tiempoMaximoSentencia Tiempo máximo de cada sentencia o lote (0 = sin límite)
+     */
+    public EjecutorScriptSQL(DataSource origenDeDatos, MetricasConsultas metricas,
+                             CacheResultadosSQL cacheResultados, ControlCosteConsultas controlCoste,
+                             @Value("${script.tamanio-lote:500}") int tamanioLote,
+                             @Value("${script.longitud-maxima-sentencia:4194304}") int longitudMaximaSentencia,
+                             @Value("${script.tiempo-maximo-sentencia:PT5M}") Duration tiempoMaximoSentencia) {
+        this.origenDeDatos = origenDeDatos;
+        this.metricas = metricas;
+        this.cacheResultados = cacheResultados;
+        this.controlCoste = controlCoste;
+        this.tamanioLote = Math.max(tamanioLote, 1);
+        this.longitudMaximaSentencia = longitudMaximaSentencia;
+        this.tiempoMaximoSentenciaSegundos = (int) Math.min(Integer.MAX_VALUE, tiempoMaximoSentencia.toSeconds());
+    }
+
+    /**
+     * Ejecuta un script SQL completo.
+     *
+     * @param script Texto del script
+     * @param transaccion true para ejecutar todo el script en una única transacción
+     * @param resultado Donde se publican el progreso y los resultados de las consultas
+     * @throws SQLException si una sentencia está prohibida, falla, supera su tiempo máximo
+     *                      o se cancela; el mensaje indica cuál
+     * @throws IOException si no se puede leer el script o está mal formado
+     */
+    public void ejecutar(Reader script, boolean transaccion, ResultadoScript resultado)
+            throws SQLException, IOException {
+        TokenizadorSQL tokenizador = new TokenizadorSQL(script, longitudMaximaSentencia);
+
+        try (Connection conexion = origenDeDatos.getConnection();
+             Statement lote = conexion.createStatement();
+             Statement sentencia = conexion.createStatement()) {
+            for (Statement abierta : new Statement[]{lote, sentencia}) {
+                abierta.setQueryTimeout(tiempoMaximoSentenciaSegundos);
+                resultado.registrar(abierta);
+            }
+            boolean autoCommitPrevio = conexion.getAutoCommit();
+            String esquemaInicial = conexion.getCatalog();
+            boolean sesionCambiada = false;
+            if (transaccion) conexion.setAutoCommit(false);
+            try {
+                int indice = 0;
+                int primeroDelLote = 0;
+                int enLote = 0;
+                Set<String> tablasLote = new HashSet<>();
+                String sql;
+                while ((sql = tokenizador.siguiente()) != null) {
+                    indice++;
+                    resultado.iniciarSentencia(indice, sql);
+                    if (INSTRUCCIONES_PROHIBIDAS.matcher(sql).find()) {
+                        throw new SQLException("El archivo contiene una instrucción prohibida: " + sql);
+                    }
+
+                    if (INSERCION.matcher(sql).find()) {
+                        if (enLote == 0) primeroDelLote = indice;
+                        lote.addBatch(sql);
+                        if (cacheResultados.isHabilitada()) tablasLote.addAll(cacheResultados.tablasDe(sql));
+                        if (++enLote >= tamanioLote) {
+                            ejecutarLote(lote, primeroDelLote, enLote, tablasLote, resultado);
+                            enLote = 0;
+                        }
+                        continue;
+                    }
+
+                    if (enLote > 0) {
+                        ejecutarLote(lote, primeroDelLote, enLote, tablasLote, resultado);
+                        enLote = 0;
+                    }
+                    if (!SIN_EFECTO_EN_SESION.matcher(sql).find()) sesionCambiada = true;
+                    ejecutarSentencia(sentencia, sql, indice, !transaccion && !sesionCambiada, resultado);
+                }
+                if (enLote > 0) {
+                    ejecutarLote(lote, primeroDelLote, enLote, tablasLote, resultado);
+                }
+
+                if (transaccion) conexion.commit();
+            } catch (SQLException | IOException | RuntimeException ex) {
+                if (transaccion) conexion.rollback();
+                throw ex;
+            } finally {
+                // Mientras la transacción estaba abierta otras peticiones pueden haber guardado los datos
+                // anteriores al commit, así que se invalida todo al terminar
+                if (transaccion && resultado.hayModificaciones()) cacheResultados.invalidarTodo();
+                resultado.terminar();
+                if (transaccion) conexion.setAutoCommit(autoCommitPrevio);
+                if (sesionCambiada) restablecerSesion(conexion, esquemaInicial);
+            }
+        }
+    }
+
+    /**
+     * Ejecuta una sentencia suelta y guarda sus filas si las devuelve. Dentro de una transacción
+     * no se usa la caché, porque el script puede leer sus propios cambios sin confirmar.
+     * El plan se revisa antes de buscar en la caché, que guarda el resultado con la sentencia
+     * revisada: una consulta limitada no se confunde con la original.
+     */
+    private void ejecutarSentencia(Statement sentencia, String sql, int indice, boolean usarCache,
+                                   ResultadoScript resultado) throws SQLException {
+        try {
+            ControlCosteConsultas.Revision revision = controlCoste.revisar(sentencia, sql);
+            String aEjecutar = revision.getSql();
+            CacheResultadosSQL.CargaConsulta carga = () ->
+                    metricas.medir("script", MetricasConsultas.tipoSentencia(aEjecutar), aEjecutar, () -> {
+                        if (!sentencia.execute(aEjecutar)) return null;
+                        try (ResultSet rs = sentencia.getResultSet()) {
+                            return ResultadoColumnar.leer(rs);
+                        }
+                    });
+            ResultadoColumnar filas;
+            try {
+                filas = usarCache ? cacheResultados.obtener(aEjecutar, carga) : carga.cargar();
+            } finally {
+                cacheResultados.invalidarPor(sql);
+            }
+            if (filas != null) {
+                resultado.anadirSelect(indice, sql, filas, revision.getPlan(), revision.getAviso());
+            } else {
+                resultado.marcarModificaciones();
+            }
+            resultado.contarSentencias(1);
+        } catch (SQLException ex) {
+            throw traducirError("Error en sentencia #" + indice, ex);
+        }
+    }
+
+    /**
+     * Envía los INSERT acumulados e invalida los resultados guardados de sus tablas.
+     * Si uno falla, el error indica su posición en el script.
+     */
+    private void ejecutarLote(Statement lote, int primeroDelLote, int enLote, Set<String> tablasLote,
+                              ResultadoScript resultado) throws SQLException {
+        resultado.marcarModificaciones();
+        try {
+            metricas.medir("script", "lote_insert", enLote + " INSERT desde la sentencia #" + primeroDelLote,
+                    lote::executeBatch);
+            resultado.contarSentencias(enLote);
+            resultado.contarInsercionesEnLote(enLote);
+        } catch (SQLException ex) {
+            int fallida = ex instanceof BatchUpdateException errorLote
+                    ? posicionFallida(errorLote.getUpdateCounts(), enLote) : -1;
+            String donde = fallida >= 0
+                    ? "Error en sentencia #" + (primeroDelLote + fallida)
+                    : "Error en el lote de INSERT de las sentencias #" + primeroDelLote
+                      + " a #" + (primeroDelLote + enLote - 1);
+            throw traducirError(donde, ex);
+        } finally {
+            lote.clearBatch();
+            cacheResultados.invalidarTablas(tablasLote);
+            tablasLote.clear();
+        }
+    }
+
+    /**
+     * Deshace lo que el script ha cambiado en la sesión (variables, tablas temporales, bloqueos,
+     * base de datos en uso) para que el siguiente que reciba la conexión del pool no lo herede.
+     */
+    private static void restablecerSesion(Connection conexion, String esquemaInicial) throws SQLException {
+        conexion.unwrap(org.mariadb.jdbc.Connection.class).reset();
+        if (esquemaInicial != null) conexion.setCatalog(esquemaInicial);
+    }
+
+    /**
+     * Busca qué INSERT del lote ha fallado a partir de los contadores que devuelve el driver.
+     *
+     * @return Posición dentro del lote, o -1 si el driver no lo indica
+     */
+    private static int posicionFallida(int[] contadores, int enLote) {
+        if (contadores == null) return -1;
+        for (int i = 0; i < contadores.length; i++) {
+            if (contadores[i] == Statement.EXECUTE_FAILED) return i;
+        }
+        return contadores.length < enLote ? contadores.length : -1;
+    }
+
+    private static SQLException traducirError(String donde, SQLException ex) {
+        if (ex.getMessage() != null && ex.getMessage().toLowerCase().contains("denied")) {
+            return new SQLException(donde + ": no tienes permisos para ejecutar la sentencia.", ex);
+        }
+        if (ex instanceof SQLSyntaxErrorException) {
+            return new SQLException(donde + ": la sentencia SQL no es válida: " + ex.getMessage(), ex);
+        }
+        return new SQLException(donde + ": " + ex.getMessage(), ex);
+    }
+}
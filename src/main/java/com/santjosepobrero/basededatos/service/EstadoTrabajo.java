@@ -0,0 +1,32 @@
+package com.santjosepobrero.basededatos.service;
+
+/**
+ * Estados de un trabajo SQL en segundo plano.
+ */
+public enum EstadoTrabajo {
+
+    /** Esperando a que haya hueco para ejecutarse. */
+    EN_COLA,
+
+    /** Ejecutando sentencias. */
+    EJECUTANDO,
+
+    /** Todas las sentencias se ejecutaron correctamente. */
+    COMPLETADO,
+
+    /** Una sentencia falló o estaba prohibida. */
+    FALLIDO,
+
+    /** El usuario canceló el trabajo. */
+    CANCELADO,
+
+    /** El trabajo superó su tiempo máximo y se canceló. */
+    TIEMPO_AGOTADO;
+
+    /**
+     * @return true si el trabajo ya no va a cambiar
+     */
+    public boolean isTerminado() {
+        return this != EN_COLA && this != EJECUTANDO;
+    }
+}
@@ -0,0 +1,16 @@
+package com.santjosepobrero.basededatos.service;
+
+/**
+ * Formas de obtener el número de filas de una tabla para la paginación.
+ */
+public enum EstrategiaConteo {
+
+    /** COUNT(*) exacto, guardado en caché durante un tiempo. */
+    EXACTO,
+
+    /** Estimación de information_schema.TABLES.TABLE_ROWS; no recorre la tabla. */
+    ESTIMADO,
+
+    /** No se cuenta: solo se sabe si hay página siguiente leyendo una fila de más. */
+    PEREZOSO
+}
@@ -0,0 +1,58 @@
+package com.santjosepobrero.basededatos.service;
+
+/**
+ * Filtro simple sobre una columna: {@code columna operador valor}.
+ * En la URL se escribe como {@code columna:operador:valor}.
+ */
+public class FiltroColumna {
+
+    private final String columna;
+    private final OperadorFiltro operador;
+    private final String valor;
+
+    /**
+     * @param columna Nombre de la columna
+     * @param operador Operador de comparación
+     * @param valor Valor a comparar (se ignora en {@link OperadorFiltro#ES_NULO})
+     */
+    public FiltroColumna(String columna, OperadorFiltro operador, String valor) {
+        this.columna = columna;
+        this.operador = operador;
+        this.valor = operador.isConValor() ? (valor != null ? valor : "") : null;
+    }
+
+    /**
+     * Interpreta un filtro escrito como {@code columna:operador:valor}.
+     *
+     * @param texto Filtro recibido en la URL
+     * @return Filtro interpretado
+     * @throws IllegalArgumentException si el texto no tiene ese formato
+     */
+    public static FiltroColumna desdeParametro(String texto) {
+        String[] partes = texto.split(":", 3);
+        if (partes.length < 2 || partes[0].isBlank()) {
+            throw new IllegalArgumentException("Filtro no válido: el formato es columna:operador:valor.");
+        }
+        return new FiltroColumna(partes[0].trim(), OperadorFiltro.desde(partes[1].trim()),
+                partes.length == 3 ? partes[2] : null);
+    }
+
+    /**
+     * @return Filtro en el formato de la URL
+     */
+    public String comoParametro() {
+        return columna + ":" + operador.getCodigo() + (valor != null ? ":" + valor : "");
+    }
+
+    public String getColumna() {
+        return columna;
+    }
+
+    public OperadorFiltro getOperador() {
+        return operador;
+    }
+
+    public String getValor() {
+        return valor;
+    }
+}
@@ -0,0 +1,592 @@
+package com.santjosepobrero.basededatos.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransactionRollbackException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.SQLWarning;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Importa archivos CSV o TSV en una tabla.
+ * <p>
+ * La primera fila del archivo son los nombres de las columnas, que se comprueban contra
+ * {@link CatalogoEsquema}; las columnas de la tabla que no aparecen toman su valor por defecto.
+ * El archivo se lee con {@link LectorCSV} por bloques de {@code importacion.filas-por-commit}
+ * filas: cada bloque se confirma por separado, así que si la importación se detiene quedan
+ * los bloques anteriores.
+ * <p>
+ * Cada bloque se envía con {@code LOAD DATA LOCAL INFILE}, que es lo más rápido que admite
+ * MariaDB. Si el servidor o el driver no lo permiten, se recurre a INSERT preparados de
+ * varias filas ({@code INSERT ... VALUES (?,?),(?,?)...}) repartidos entre varias conexiones;
+ * entonces el orden de inserción entre bloques no es el del archivo.
+ * <p>
+ * Las filas que no se pueden insertar no detienen la importación: se anotan con su línea en
+ * el {@link ResultadoScript} hasta un máximo configurable.
+ */
+@Service
+public class ImportadorCSV {
+
+    private static final Logger logger = Logger.getLogger(ImportadorCSV.class.getName());
+
+    /** Máximo de parámetros de una sentencia preparada en MariaDB. */
+    private static final int MAXIMO_PARAMETROS = 65535;
+
+    /** Los avisos de LOAD DATA indican la fila dentro del bloque: "... at row 3". */
+    private static final Pattern FILA_AVISO = Pattern.compile("\\bat row (\\d+)", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * Errores con los que el servidor rechaza LOAD DATA LOCAL: 1148 (comando no permitido con
+     * local_infile desactivado) y 3948 (carga de datos locales desactivada).
+     */
+    private static final Set<Integer> CODIGOS_SIN_LOCAL_INFILE = Set.of(1148, 3948);
+
+    /**
+     * Avisos de LOAD DATA LOCAL que descartan la fila: 1062 (clave duplicada), 1452 (clave ajena),
+     * 1526 (ninguna partición admite la fila) y 4025 (CHECK incumplido). El resto (valor truncado,
+     * fuera de rango, columnas de más o de menos) ajustan el valor y la fila se carga.
+     */
+    private static final Set<Integer> CODIGOS_FILA_DESCARTADA = Set.of(1062, 1452, 1526, 4025);
+
+    /** Espera de cada intento de pasar un bloque entre el lector y las conexiones. */
+    private static final long ESPERA_COLA_MS = 100;
+
+    private final DataSource origenDeDatos;
+    private final CatalogoEsquema catalogoEsquema;
+    private final MetricasConsultas metricas;
+    private final CacheResultadosSQL cacheResultados;
+    private final int filasPorCommit;
+    private final int conexionesParalelas;
+    private final int filasPorSentencia;
+    private final int maximoErrores;
+    private final int longitudMaximaRegistro;
+    private final int tiempoMaximoSentenciaSegundos;
+
+    /** Pasa a false la primera vez que el servidor rechaza LOAD DATA LOCAL INFILE. */
+    private volatile boolean loadDataDisponible;
+
+    /**
+     * @param origenDeDatos Fuente de datos JDBC
+     * @param catalogoEsquema Catálogo del esquema, para comprobar la tabla y las columnas
+     * @param metricas Métricas de latencia de cada bloque
+     * @param cacheResultados Caché de resultados, que se invalida para la tabla importada
+     * @param loadData true para intentar LOAD DATA LOCAL INFILE antes que los INSERT
+     * @param filasPorCommit Filas de cada bloque que se confirma
+     * @param conexionesParalelas Conexiones que insertan a la vez cuando no se usa LOAD DATA
+     * @param filasPorSentencia Filas de cada INSERT de varias filas
+     * @param maximoErrores Filas con error a partir de las cuales se detiene la importación
+     * @param longitudMaximaRegistro Número máximo de caracteres de una fila del archivo
+     * @param tiempoMaximoSentencia Tiempo máximo de cada LOAD DATA o INSERT (0 = sin límite)
+     */
+    public ImportadorCSV(DataSource origenDeDatos, CatalogoEsquema catalogoEsquema, MetricasConsultas metricas,
+                         CacheResultadosSQL cacheResultados,
+                         @Value("${importacion.load-data:true}") boolean loadData,
+                         @Value("${importacion.filas-por-commit:50000}") int filasPorCommit,
+                         @Value("${importacion.conexiones-paralelas:4}") int conexionesParalelas,
+                         @Value("${importacion.filas-por-sentencia:500}") int filasPorSentencia,
+                         @Value("${importacion.maximo-errores:1000}") int maximoErrores,
+                         @Value("${importacion.longitud-maxima-registro:1048576}") int longitudMaximaRegistro,
+                         @Value("${script.tiempo-maximo-sentencia:PT5M}") Duration tiempoMaximoSentencia) {
+        this.origenDeDatos = origenDeDatos;
+        this.catalogoEsquema = catalogoEsquema;
+        this.metricas = metricas;
+        this.cacheResultados = cacheResultados;
+        this.loadDataDisponible = loadData;
+        this.filasPorCommit = Math.max(filasPorCommit, 1);
+        this.conexionesParalelas = Math.max(conexionesParalelas, 1);
+        this.filasPorSentencia = Math.max(filasPorSentencia, 1);
+        this.maximoErrores = maximoErrores;
+        this.longitudMaximaRegistro = longitudMaximaRegistro;
+        this.tiempoMaximoSentenciaSegundos = (int) Math.min(Integer.MAX_VALUE, tiempoMaximoSentencia.toSeconds());
+    }
+
+    /**
+     * Importa un archivo completo.
+     *
+     * @param archivo Texto del archivo, con los nombres de las columnas en la primera fila
+     * @param tabla Tabla de destino
+     * @param separador Separador de campos
+     * @param resultado Donde se publican el progreso y las filas con error
+     * @throws SQLException si la tabla o alguna columna no existen, hay demasiadas filas con error,
+     *                      falla la conexión o se cancela
+     * @throws IOException si no se puede leer el archivo o está mal formado
+     */
+    public void importar(Reader archivo, String tabla, char separador, ResultadoScript resultado)
+            throws SQLException, IOException {
+        LectorCSV lector = new LectorCSV(archivo, separador, longitudMaximaRegistro);
+        InfoTabla infoTabla = catalogoEsquema.buscarTabla(tabla);
+        if (infoTabla == null) throw new SQLException("La tabla '" + tabla + "' no existe.");
+        String[] cabecera = lector.siguiente();
+        if (cabecera == null) throw new SQLException("El archivo está vacío.");
+        Destino destino = new Destino(infoTabla.getNombre(), validarColumnas(infoTabla, cabecera));
+
+        try {
+            Bloque bloque = leerBloque(lector, destino, resultado);
+            if (bloque.filas.isEmpty()) return;
+            if (loadDataDisponible) {
+                bloque = cargarConLoadData(lector, destino, bloque, resultado);
+                if (bloque == null) return;
+            }
+            insertarEnParalelo(lector, destino, bloque, resultado);
+        } finally {
+            cacheResultados.invalidarTablas(List.of(destino.tabla.toLowerCase(Locale.ROOT)));
+            resultado.terminar();
+        }
+    }
+
+    /**
+     * Comprueba que cada columna de la cabecera existe en la tabla y no está repetida.
+     *
+     * @return Nombres de las columnas tal como están en el catálogo
+     */
+    private List<String> validarColumnas(InfoTabla tabla, String[] cabecera) throws SQLException {
+        List<String> columnas = new ArrayList<>();
+        Set<String> vistas = new HashSet<>();
+        for (String nombre : cabecera) {
+            String limpio = nombre == null ? "" : nombre.trim();
+            InfoColumna columna = tabla.getColumna(limpio);
+            if (columna == null) {
+                throw new SQLException("La columna '" + limpio + "' no existe en la tabla " + tabla.getNombre() + ".");
+            }
+            if (!vistas.add(columna.getNombre().toLowerCase(Locale.ROOT))) {
+                throw new SQLException("La columna '" + limpio + "' está repetida en la cabecera.");
+            }
+            columnas.add(columna.getNombre());
+        }
+        return columnas;
+    }
+
+    /**
+     * Lee las siguientes filas del archivo. Las que no tienen tantos campos como la cabecera
+     * se anotan como error y no se incluyen.
+     *
+     * @return Bloque leído, vacío si se ha llegado al final
+     */
+    private Bloque leerBloque(LectorCSV lector, Destino destino, ResultadoScript resultado)
+            throws SQLException, IOException {
+        if (resultado.isCancelado()) throw new SQLException("Importación cancelada.");
+        Bloque bloque = new Bloque(filasPorCommit);
+        String[] registro;
+        while (bloque.filas.size() < filasPorCommit && (registro = lector.siguiente()) != null) {
+            if (registro.length != destino.columnas.size()) {
+                anotarError(resultado, lector.getLineaRegistro(), "tiene " + registro.length
+                        + " campos y la cabecera " + destino.columnas.size() + ".");
+                continue;
+            }
+            bloque.anadir(registro, lector.getLineaRegistro());
+        }
+        return bloque;
+    }
+
+    /**
+     * Envía cada bloque con LOAD DATA LOCAL INFILE en formato TSV, sin pasar por un archivo.
+     *
+     * @return null si se ha cargado todo, o el primer bloque si el servidor no admite LOAD DATA LOCAL
+     */
+    private Bloque cargarConLoadData(LectorCSV lector, Destino destino, Bloque bloque, ResultadoScript resultado)
+            throws SQLException, IOException {
+        String sql = "LOAD DATA LOCAL INFILE 'importacion.tsv' INTO TABLE " + destino.tablaEntreComillas
+                + " CHARACTER SET utf8mb4 FIELDS TERMINATED BY '\\t' ESCAPED BY '\\\\' LINES TERMINATED BY '\\n' ("
+                + destino.columnasEntreComillas + ")";
+        ByteArrayOutputStream datos = new ByteArrayOutputStream();
+
+        try (Connection conexion = origenDeDatos.getConnection();
+             Statement sentencia = conexion.createStatement()) {
+            sentencia.setQueryTimeout(tiempoMaximoSentenciaSegundos);
+            resultado.registrar(sentencia);
+            org.mariadb.jdbc.Statement sentenciaMariaDB = sentencia.unwrap(org.mariadb.jdbc.Statement.class);
+            boolean autoCommitPrevio = conexion.getAutoCommit();
+            conexion.setAutoCommit(false);
+            try {
+                boolean primero = true;
+                for (; !bloque.filas.isEmpty(); bloque = leerBloque(lector, destino, resultado), primero = false) {
+                    datos.reset();
+                    codificarTSV(bloque, datos);
+                    sentenciaMariaDB.setLocalInfileInputStream(new ByteArrayInputStream(datos.toByteArray()));
+                    long cargadas;
+                    try {
+                        cargadas = metricas.medir("importacion", "load_data", bloque.descripcion(destino),
+                                () -> sentencia.executeLargeUpdate(sql));
+                    } catch (SQLException ex) {
+                        if (primero && sinLocalInfile(ex)) {
+                            conexion.rollback();
+                            loadDataDisponible = false;
+                            logger.warning("LOAD DATA LOCAL INFILE no está disponible; se importará con INSERT: "
+                                    + ex.getMessage());
+                            return bloque;
+                        }
+                        throw ex;
+                    }
+                    anotarAvisos(sentencia, bloque, cargadas, resultado);
+                    conexion.commit();
+                    resultado.marcarModificaciones();
+                    resultado.contarSentencias(1);
+                    resultado.contarFilasImportadas(cargadas);
+                }
+                return null;
+            } catch (SQLException | IOException | RuntimeException ex) {
+                conexion.rollback();
+                throw ex;
+            } finally {
+                conexion.setAutoCommit(autoCommitPrevio);
+            }
+        }
+    }
+
+    /**
+     * Indica si el error es que el servidor o el driver no admiten LOAD DATA LOCAL. Cualquier
+     * otro (clave duplicada, clave ajena, valor no válido en modo estricto) es de los datos
+     * y no debe hacer que las importaciones siguientes pasen a INSERT.
+     */
+    private static boolean sinLocalInfile(SQLException ex) {
+        if (CODIGOS_SIN_LOCAL_INFILE.contains(ex.getErrorCode())) return true;
+        // El driver lo rechaza antes de enviarlo si falta allowLocalInfile, sin código de error
+        String mensaje = ex.getMessage();
+        return mensaje != null && mensaje.toLowerCase(Locale.ROOT).contains("local infile");
+    }
+
+    /**
+     * Escribe el bloque en el formato por defecto de LOAD DATA: campos separados por tabulador,
+     * filas por \n, barra invertida como escape y \N para NULL.
+     */
+    private static void codificarTSV(Bloque bloque, ByteArrayOutputStream destino) throws IOException {
+        Writer salida = new OutputStreamWriter(destino, StandardCharsets.UTF_8);
+        for (String[] fila : bloque.filas) {
+            for (int i = 0; i < fila.length; i++) {
+                if (i > 0) salida.write('\t');
+                String valor = fila[i];
+                if (valor == null) {
+                    salida.write("\\N");
+                    continue;
+                }
+                for (int j = 0; j < valor.length(); j++) {
+                    char c = valor.charAt(j);
+                    switch (c) {
+                        case '\\' -> salida.write("\\\\");
+                        case '\t' -> salida.write("\\t");
+                        case '\n' -> salida.write("\\n");
+                        case '\r' -> salida.write("\\r");
+                        case '\0' -> salida.write("\\0");
+                        default -> salida.write(c);
+                    }
+                }
+            }
+            salida.write('\n');
+        }
+        salida.flush();
+    }
+
+    /**
+     * LOAD DATA LOCAL no falla por una fila incorrecta: la descarta o ajusta el valor y deja un aviso.
+     * Solo las filas descartadas son errores: sus avisos se agrupan por fila, que se anota una vez,
+     * y nunca se anotan más que las que faltan en el bloque. Las filas con valores ajustados se han
+     * cargado y no cuentan. El servidor solo guarda {@code max_error_count} avisos por sentencia,
+     * así que las filas descartadas que no tienen aviso se anotan juntas.
+     *
+     * @param cargadas Filas del bloque que han llegado a la tabla
+     */
+    private void anotarAvisos(Statement sentencia, Bloque bloque, long cargadas, ResultadoScript resultado)
+            throws SQLException {
+        Map<Integer, String> descartadasPorFila = new TreeMap<>();
+        List<String> descartadasSinFila = new ArrayList<>();
+        Set<Integer> ajustadas = new HashSet<>();
+        for (SQLWarning aviso = sentencia.getWarnings(); aviso != null; aviso = aviso.getNextWarning()) {
+            Matcher fila = FILA_AVISO.matcher(aviso.getMessage());
+            int posicion = -1;
+            if (fila.find()) {
+                int indicada = Integer.parseInt(fila.group(1)) - 1;
+                if (indicada >= 0 && indicada < bloque.filas.size()) posicion = indicada;
+            }
+            if (!CODIGOS_FILA_DESCARTADA.contains(aviso.getErrorCode())) {
+                if (posicion >= 0) ajustadas.add(posicion);
+            } else if (posicion >= 0) {
+                descartadasPorFila.merge(posicion, aviso.getMessage(), (previo, nuevo) -> previo + "; " + nuevo);
+            } else {
+                descartadasSinFila.add(aviso.getMessage() + " (bloque desde la línea " + bloque.lineas[0] + ")");
+            }
+        }
+        sentencia.clearWarnings();
+
+        long descartadas = Math.max(bloque.filas.size() - cargadas, 0);
+        long anotados = 0;
+        for (Map.Entry<Integer, String> fila : descartadasPorFila.entrySet()) {
+            if (anotados == descartadas) break;
+            anotarError(resultado, bloque.lineas[fila.getKey()], fila.getValue());
+            anotados++;
+        }
+        for (String mensaje : descartadasSinFila) {
+            if (anotados == descartadas) break;
+            anotarError(resultado, -1, mensaje);
+            anotados++;
+        }
+        ajustadas.removeAll(descartadasPorFila.keySet());
+        if (!ajustadas.isEmpty()) {
+            logger.fine(ajustadas.size() + " filas cargadas con valores ajustados en el bloque desde la línea "
+                    + bloque.lineas[0]);
+        }
+
+        long sinAviso = descartadas - anotados;
+        if (sinAviso > 0) {
+            comprobarMaximoErrores(resultado.anotarErroresFila(sinAviso, sinAviso
+                    + " filas más descartadas sin aviso en el bloque desde la línea " + bloque.lineas[0] + "."));
+        }
+    }
+
+    /**
+     * Reparte los bloques entre varias conexiones, cada una en su hilo virtual. Este hilo lee
+     * el archivo y les pasa los bloques por una cola corta, así nunca hay en memoria más que
+     * unos pocos bloques por conexión.
+     */
+    private void insertarEnParalelo(LectorCSV lector, Destino destino, Bloque primero, ResultadoScript resultado)
+            throws SQLException, IOException {
+        BlockingQueue<Bloque> cola = new ArrayBlockingQueue<>(conexionesParalelas);
+        AtomicBoolean lecturaTerminada = new AtomicBoolean();
+        AtomicReference<Exception> fallo = new AtomicReference<>();
+        int filasPorInsert = Math.max(1, Math.min(filasPorSentencia, MAXIMO_PARAMETROS / destino.columnas.size()));
+
+        try (ExecutorService conexiones = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < conexionesParalelas; i++) {
+                conexiones.execute(() -> {
+                    try {
+                        insertarBloques(destino, filasPorInsert, cola, lecturaTerminada, fallo, resultado);
+                    } catch (Exception ex) {
+                        fallo.compareAndSet(null, ex);
+                    }
+                });
+            }
+            try {
+                for (Bloque bloque = primero; !bloque.filas.isEmpty() && fallo.get() == null;
+                     bloque = leerBloque(lector, destino, resultado)) {
+                    while (!cola.offer(bloque, ESPERA_COLA_MS, TimeUnit.MILLISECONDS)) {
+                        if (fallo.get() != null) break;
+                    }
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                fallo.compareAndSet(null, new SQLException("Importación interrumpida."));
+            } catch (Exception ex) {
+                fallo.compareAndSet(null, ex);
+            } finally {
+                lecturaTerminada.set(true);
+            }
+        }
+
+        Exception error = fallo.get();
+        if (error instanceof SQLException sqlEx) throw sqlEx;
+        if (error instanceof IOException ioEx) throw ioEx;
+        if (error instanceof RuntimeException runtimeEx) throw runtimeEx;
+        if (error != null) throw new SQLException(error.getMessage(), error);
+    }
+
+    /**
+     * Bucle de una conexión: toma bloques de la cola y los inserta hasta que el lector termina
+     * y la cola queda vacía, o hasta que otra conexión falla.
+     */
+    private void insertarBloques(Destino destino, int filasPorInsert, BlockingQueue<Bloque> cola,
+                                 AtomicBoolean lecturaTerminada, AtomicReference<Exception> fallo,
+                                 ResultadoScript resultado) throws SQLException, InterruptedException {
+        try (Connection conexion = origenDeDatos.getConnection();
+             PreparedStatement completa = conexion.prepareStatement(destino.insert(filasPorInsert));
+             PreparedStatement unaFila = conexion.prepareStatement(destino.insert(1))) {
+            for (Statement abierta : new Statement[]{completa, unaFila}) {
+                abierta.setQueryTimeout(tiempoMaximoSentenciaSegundos);
+                resultado.registrar(abierta);
+            }
+            boolean autoCommitPrevio = conexion.getAutoCommit();
+            conexion.setAutoCommit(false);
+            try {
+                while (fallo.get() == null) {
+                    Bloque bloque = cola.poll(ESPERA_COLA_MS, TimeUnit.MILLISECONDS);
+                    if (bloque == null) {
+                        if (lecturaTerminada.get() && cola.isEmpty()) return;
+                        continue;
+                    }
+                    long insertadas = metricas.medir("importacion", "insert", bloque.descripcion(destino),
+                            () -> insertarBloque(conexion, completa, unaFila, filasPorInsert, destino, bloque,
+                                    resultado));
+                    conexion.commit();
+                    resultado.marcarModificaciones();
+                    resultado.contarFilasImportadas(insertadas);
+                }
+            } catch (SQLException | RuntimeException ex) {
+                conexion.rollback();
+                throw ex;
+            } finally {
+                conexion.setAutoCommit(autoCommitPrevio);
+            }
+        }
+    }
+
+    /**
+     * Inserta un bloque con INSERT de varias filas. Si uno falla (solo se deshace esa sentencia),
+     * sus filas se repiten una a una para anotar cuál tiene el error.
+     *
+     * @return Filas insertadas
+     */
+    private long insertarBloque(Connection conexion, PreparedStatement completa, PreparedStatement unaFila,
+                                int filasPorInsert, Destino destino, Bloque bloque, ResultadoScript resultado)
+            throws SQLException {
+        long insertadas = 0;
+        int total = bloque.filas.size();
+        for (int desde = 0; desde < total; desde += filasPorInsert) {
+            int hasta = Math.min(total, desde + filasPorInsert);
+            try {
+                if (hasta - desde == filasPorInsert) {
+                    insertadas += ejecutarInsert(completa, bloque, desde, hasta);
+                } else {
+                    try (PreparedStatement resto = conexion.prepareStatement(destino.insert(hasta - desde))) {
+                        resto.setQueryTimeout(tiempoMaximoSentenciaSegundos);
+                        resultado.registrar(resto);
+                        insertadas += ejecutarInsert(resto, bloque, desde, hasta);
+                    }
+                }
+            } catch (SQLException ex) {
+                if (!esErrorDeDatos(ex, resultado)) throw ex;
+                for (int fila = desde; fila < hasta; fila++) {
+                    try {
+                        insertadas += ejecutarInsert(unaFila, bloque, fila, fila + 1);
+                    } catch (SQLException exFila) {
+                        if (!esErrorDeDatos(exFila, resultado)) throw exFila;
+                        anotarError(resultado, bloque.lineas[fila], exFila.getMessage());
+                    }
+                }
+            }
+            resultado.contarSentencias(1);
+        }
+        return insertadas;
+    }
+
+    private static int ejecutarInsert(PreparedStatement insert, Bloque bloque, int desde, int hasta)
+            throws SQLException {
+        int parametro = 1;
+        for (int i = desde; i < hasta; i++) {
+            for (String valor : bloque.filas.get(i)) {
+                if (valor == null) {
+                    insert.setNull(parametro++, Types.VARCHAR);
+                } else {
+                    insert.setString(parametro++, valor);
+                }
+            }
+        }
+        return insert.executeUpdate();
+    }
+
+    /**
+     * Distingue un error de los valores de alguna fila (duplicado, tipo incorrecto...), que solo
+     * deshace esa sentencia, de los que detienen la importación: cancelación, tiempo agotado,
+     * conexión perdida o un interbloqueo, que deshace la transacción entera.
+     */
+    private static boolean esErrorDeDatos(SQLException ex, ResultadoScript resultado) {
+        return !resultado.isCancelado()
+                && !(ex instanceof SQLTimeoutException)
+                && !(ex instanceof SQLTransientConnectionException)
+                && !(ex instanceof SQLNonTransientConnectionException)
+                && !(ex instanceof SQLTransactionRollbackException);
+    }
+
+    private void anotarError(ResultadoScript resultado, long linea, String mensaje) throws SQLException {
+        comprobarMaximoErrores(resultado.anotarErrorFila(linea, mensaje));
+    }
+
+    private void comprobarMaximoErrores(long errores) throws SQLException {
+        if (errores > maximoErrores) {
+            throw new SQLException("Importación detenida: más de " + maximoErrores + " filas con error.");
+        }
+    }
+
+    private static String entreComillas(String identificador) {
+        return "`" + identificador.replace("`", "``") + "`";
+    }
+
+    /**
+     * Tabla y columnas de destino, ya comprobadas en el catálogo.
+     */
+    private static final class Destino {
+
+        private final String tabla;
+        private final List<String> columnas;
+        private final String tablaEntreComillas;
+        private final String columnasEntreComillas;
+        private final String valoresFila;
+
+        private Destino(String tabla, List<String> columnas) {
+            this.tabla = tabla;
+            this.columnas = columnas;
+            this.tablaEntreComillas = entreComillas(tabla);
+            this.columnasEntreComillas = columnas.stream().map(ImportadorCSV::entreComillas)
+                    .collect(Collectors.joining(", "));
+            this.valoresFila = "(" + String.join(", ", Collections.nCopies(columnas.size(), "?")) + ")";
+        }
+
+        /**
+         * @return INSERT preparado de {@code filas} filas
+         */
+        private String insert(int filas) {
+            StringBuilder sql = new StringBuilder("INSERT INTO ").append(tablaEntreComillas)
+                    .append(" (").append(columnasEntreComillas).append(") VALUES ");
+            for (int i = 0; i < filas; i++) {
+                if (i > 0) sql.append(", ");
+                sql.append(valoresFila);
+            }
+            return sql.toString();
+        }
+    }
+
+    /**
+     * Filas leídas del archivo que se confirman juntas, con la línea en la que empieza cada una.
+     */
+    private static final class Bloque {
+
+        private final List<String[]> filas;
+        private final long[] lineas;
+
+        private Bloque(int capacidad) {
+            this.filas = new ArrayList<>(capacidad);
+            this.lineas = new long[capacidad];
+        }
+
+        private void anadir(String[] fila, long linea) {
+            lineas[filas.size()] = linea;
+            filas.add(fila);
+        }
+
+        private String descripcion(Destino destino) {
+            return filas.size() + " filas en " + destino.tabla + " desde la línea " + lineas[0];
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.santjosepobrero.basededatos.service;
+
+/**
+ * Metadatos de una columna de una tabla, tal como los guarda el {@link CatalogoEsquema}.
+ */
+public class InfoColumna {
+
+    private final String nombre;
+    private final int tipoJdbc;
+    private final String nombreTipo;
+    private final boolean anulable;
+    private final boolean indexada;
+
+    /**
+     * @param nombre Nombre de la columna
+     * @param tipoJdbc Tipo JDBC ({@link java.sql.Types})
+     * @param nombreTipo Nombre del tipo en la base de datos (p. ej. "VARCHAR")
+     * @param anulable true si la columna admite NULL
+     * @param indexada true si la columna es la primera de algún índice de la tabla
+     */
+    public InfoColumna(String nombre, int tipoJdbc, String nombreTipo, boolean anulable, boolean indexada) {
+        this.nombre = nombre;
+        this.tipoJdbc = tipoJdbc;
+        this.nombreTipo = nombreTipo;
+        this.anulable = anulable;
+        this.indexada = indexada;
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    public int getTipoJdbc() {
+        return tipoJdbc;
+    }
+
+    public String getNombreTipo() {
+        return nombreTipo;
+    }
+
+    public boolean isAnulable() {
+        return anulable;
+    }
+
+    /**
+     * @return true si ordenar o filtrar por esta columna puede usar un índice
+     */
+    public boolean isIndexada() {
+        return indexada;
+    }
+}
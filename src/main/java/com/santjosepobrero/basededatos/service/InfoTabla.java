@@ -0,0 +1,62 @@
+package com.santjosepobrero.basededatos.service;
+
+import java.util.List;
+
+/**
+ * Metadatos de una tabla: columnas, clave primaria y tamaño aproximado.
+ */
+public class InfoTabla {
+
+    private final String nombre;
+    private final List<InfoColumna> columnas;
+    private final List<String> nombresColumnas;
+    private final List<String> clavePrimaria;
+    private final long filasAproximadas;
+
+    /**
+     * @param nombre Nombre de la tabla
+     * @param columnas Columnas en el orden de la tabla
+     * @param clavePrimaria Columnas de la clave primaria en el orden de la clave (vacía si no tiene)
+     * @param filasAproximadas Número aproximado de filas (information_schema.TABLES.TABLE_ROWS)
+     */
+    public InfoTabla(String nombre, List<InfoColumna> columnas, List<String> clavePrimaria, long filasAproximadas) {
+        this.nombre = nombre;
+        this.columnas = List.copyOf(columnas);
+        this.nombresColumnas = columnas.stream().map(InfoColumna::getNombre).toList();
+        this.clavePrimaria = List.copyOf(clavePrimaria);
+        this.filasAproximadas = filasAproximadas;
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    public List<InfoColumna> getColumnas() {
+        return columnas;
+    }
+
+    public List<String> getNombresColumnas() {
+        return nombresColumnas;
+    }
+
+    public List<String> getClavePrimaria() {
+        return clavePrimaria;
+    }
+
+    public long getFilasAproximadas() {
+        return filasAproximadas;
+    }
+
+    /**
+     * Busca una columna por nombre, sin distinguir mayúsculas.
+     *
+     * @param nombreColumna Nombre de la columna
+     * @return Metadatos de la columna, o null si la tabla no la tiene
+     */
+    public InfoColumna getColumna(String nombreColumna) {
+        for (InfoColumna columna : columnas) {
+            if (columna.getNombre().equalsIgnoreCase(nombreColumna)) return columna;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,138 @@
+package com.santjosepobrero.basededatos.service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lee un archivo CSV o TSV registro a registro, sin cargarlo entero en memoria.
+ * <p>
+ * Sigue la RFC 4180 con el separador que se indique: los campos entre comillas dobles pueden
+ * contener el separador, saltos de línea y comillas duplicadas ({@code ""}). Se admiten
+ * finales de línea \n y \r\n y se ignora la marca BOM inicial.
+ * <p>
+ * Un campo vacío sin comillas se devuelve como null (NULL en la tabla); uno vacío entre
+ * comillas ({@code ""}) es la cadena vacía.
+ */
+public class LectorCSV {
+
+    private static final int TAMANIO_BUFFER = 8192;
+
+    private final Reader entrada;
+    private final char separador;
+    private final int longitudMaxima;
+    private final char[] buffer = new char[TAMANIO_BUFFER];
+    private int posicion;
+    private int limite;
+    private boolean inicio = true;
+    private long linea = 1;
+    private long lineaRegistro;
+
+    /**
+     * @param entrada Texto del archivo
+     * @param separador Separador de campos (',', ';' o '\t')
+     * @param longitudMaxima Número máximo de caracteres de un registro
+     */
+    public LectorCSV(Reader entrada, char separador, int longitudMaxima) {
+        this.entrada = entrada;
+        this.separador = separador;
+        this.longitudMaxima = longitudMaxima;
+    }
+
+    /**
+     * Lee el siguiente registro. Las líneas vacías se saltan.
+     *
+     * @return Campos del registro, o null si no quedan más
+     * @throws IOException si falla la lectura, unas comillas no se cierran o el registro
+     *                     supera la longitud máxima
+     */
+    public String[] siguiente() throws IOException {
+        if (inicio) {
+            inicio = false;
+            if (mirar() == '\uFEFF') leer();
+        }
+        int c;
+        // Líneas vacías entre registros
+        while ((c = mirar()) == '\n' || c == '\r') {
+            leer();
+        }
+        if (c == -1) return null;
+
+        lineaRegistro = linea;
+        List<String> campos = new ArrayList<>();
+        StringBuilder campo = new StringBuilder();
+        int longitud = 0;
+        while (true) {
+            boolean entreComillas = mirar() == '"';
+            if (entreComillas) {
+                leer();
+                longitud += leerCampoEntreComillas(campo, longitud);
+            }
+            while ((c = mirar()) != -1 && c != separador && c != '\n' && c != '\r') {
+                leer();
+                campo.append((char) c);
+                if (++longitud > longitudMaxima) {
+                    throw new IOException("El registro de la línea " + lineaRegistro
+                            + " supera la longitud máxima de " + longitudMaxima + " caracteres.");
+                }
+            }
+            campos.add(!entreComillas && campo.isEmpty() ? null : campo.toString());
+            campo.setLength(0);
+
+            c = leer();
+            if (c == separador) continue;
+            if (c == '\r' && mirar() == '\n') leer();
+            return campos.toArray(new String[0]);
+        }
+    }
+
+    /**
+     * @return Línea del archivo en la que empieza el último registro leído, empezando por 1
+     */
+    public long getLineaRegistro() {
+        return lineaRegistro;
+    }
+
+    /**
+     * Copia un campo entre comillas, ya leída la de apertura, hasta la de cierre.
+     *
+     * @return Caracteres copiados
+     */
+    private int leerCampoEntreComillas(StringBuilder campo, int longitudPrevia) throws IOException {
+        int copiados = 0;
+        int c;
+        while ((c = leer()) != -1) {
+            if (c == '"') {
+                if (mirar() != '"') return copiados;
+                leer();
+            }
+            campo.append((char) c);
+            if (longitudPrevia + ++copiados > longitudMaxima) {
+                throw new IOException("El registro de la línea " + lineaRegistro
+                        + " supera la longitud máxima de " + longitudMaxima + " caracteres.");
+            }
+        }
+        throw new IOException("Comillas sin cerrar en el registro de la línea " + lineaRegistro + ".");
+    }
+
+    private int leer() throws IOException {
+        if (posicion >= limite && !rellenar()) return -1;
+        char c = buffer[posicion++];
+        if (c == '\n') linea++;
+        return c;
+    }
+
+    private int mirar() throws IOException {
+        if (posicion >= limite && !rellenar()) return -1;
+        return buffer[posicion];
+    }
+
+    private boolean rellenar() throws IOException {
+        int leidos = entrada.read(buffer, 0, buffer.length);
+        if (leidos <= 0) return false;
+        posicion = 0;
+        limite = leidos;
+        return true;
+    }
+}
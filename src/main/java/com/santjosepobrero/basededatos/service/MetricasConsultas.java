@@ -0,0 +1,149 @@
+package com.santjosepobrero.basededatos.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Mide las consultas que la aplicación lanza contra la base de datos.
+ * <p>
+ * Cada consulta se registra en Micrometer (y de ahí en /actuator/prometheus):
+ * <ul>
+ *     <li>{@code basededatos.consulta}: histograma de latencia por operación (pagina, conteo,
+ *         sql_directa, archivo_sql, script...), nombre de consulta y resultado (ok/error).</li>
+ *     <li>{@code basededatos.consulta.filas}: filas devueltas por cada consulta.</li>
+ * </ul>
+ * Las consultas que tardan más de {@code metricas.consulta-lenta} se escriben además en el
+ * log con su SQL (sin los valores de los parámetros) y su duración.
+ * <p>
+ * El tiempo medido es el de ejecutar y leer el resultado; la espera por una conexión del
+ * pool la miden aparte las métricas {@code hikaricp.connections.*}.
+ */
+@Service
+public class MetricasConsultas {
+
+    private static final Logger logger = Logger.getLogger(MetricasConsultas.class.getName());
+
+    /** Primeras palabras de sentencia que se usan como etiqueta; el resto cuentan como "otra". */
+    private static final Set<String> TIPOS_SENTENCIA = Set.of(
+            "select", "insert", "update", "delete", "replace", "create", "alter", "drop", "truncate",
+            "show", "describe", "explain", "with", "call", "set", "use");
+
+    /** Operación que se puede medir: una consulta que devuelve un valor o lanza SQLException. */
+    @FunctionalInterface
+    public interface ConsultaMedida<T> {
+        T ejecutar() throws SQLException;
+    }
+
+    private final MeterRegistry registro;
+    private final long umbralLentaNanos;
+    private final int longitudMaximaSql;
+
+    /**
+     * Constructor que permite la inyección de dependencias.
+     *
+     * @param registro Registro de métricas de Micrometer
+     * @param consultaLenta Duración a partir de la cual una consulta se escribe en el log (0 = nunca)
+     * @param longitudMaximaSql Caracteres de SQL que se escriben como mucho en el log
+     */
+    public MetricasConsultas(MeterRegistry registro,
+                             @Value("${metricas.consulta-lenta:PT1S}") Duration consultaLenta,
+                             @Value("${metricas.longitud-maxima-sql:2000}") int longitudMaximaSql) {
+        this.registro = registro;
+        this.umbralLentaNanos = consultaLenta.isZero() ? Long.MAX_VALUE : consultaLenta.toNanos();
+        this.longitudMaximaSql = Math.max(longitudMaximaSql, 0);
+    }
+
+    /**
+     * Ejecuta una consulta midiendo su duración y, si devuelve un {@link ResultadoColumnar},
+     * las filas leídas.
+     *
+     * @param operacion Tipo de operación (pagina, conteo, sql_directa...)
+     * @param consulta  Nombre de la consulta: tabla, archivo SQL o tipo de sentencia.
+     *                  Debe tomar pocos valores distintos, porque cada uno es una serie
+     * @param sql       Texto SQL, solo para el log de consultas lentas
+     * @param accion    Consulta a ejecutar
+     * @return Valor devuelto por la consulta
+     * @throws SQLException si la consulta falla
+     */
+    public <T> T medir(String operacion, String consulta, String sql, ConsultaMedida<T> accion) throws SQLException {
+        long inicio = System.nanoTime();
+        T valor = null;
+        boolean correcta = false;
+        try {
+            valor = accion.ejecutar();
+            correcta = true;
+            return valor;
+        } finally {
+            long filas = valor instanceof ResultadoColumnar resultado && resultado.isConsulta()
+                    ? resultado.getNumeroFilas() : -1;
+            registrar(operacion, consulta, sql, System.nanoTime() - inicio, filas, correcta);
+        }
+    }
+
+    /**
+     * Registra una consulta ya ejecutada, para los casos que no se pueden envolver con
+     * {@link #medir}.
+     *
+     * @param operacion Tipo de operación
+     * @param consulta  Nombre de la consulta
+     * @param sql       Texto SQL, solo para el log de consultas lentas
+     * @param nanos     Duración en nanosegundos
+     * @param filas     Filas devueltas, o -1 si no devuelve filas
+     * @param correcta  false si terminó con error
+     */
+    public void registrar(String operacion, String consulta, String sql, long nanos, long filas, boolean correcta) {
+        Timer.builder("basededatos.consulta")
+                .description("Duración de las consultas a la base de datos")
+                .tags("operacion", operacion, "consulta", consulta, "resultado", correcta ? "ok" : "error")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofMinutes(5))
+                .register(registro)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        if (filas >= 0) {
+            DistributionSummary.builder("basededatos.consulta.filas")
+                    .description("Filas devueltas por las consultas a la base de datos")
+                    .baseUnit("filas")
+                    .tags("operacion", operacion, "consulta", consulta)
+                    .register(registro)
+                    .record(filas);
+        }
+        if (nanos >= umbralLentaNanos) {
+            logger.warning("Consulta lenta (" + TimeUnit.NANOSECONDS.toMillis(nanos) + " ms, " + operacion + "/"
+                    + consulta + (filas >= 0 ? ", " + filas + " filas" : "") + (correcta ? "" : ", con error")
+                    + "): " + recortar(sql));
+        }
+    }
+
+    /**
+     * Devuelve la primera palabra de una sentencia en minúsculas, para usarla como nombre
+     * de consulta de las sentencias escritas por el usuario.
+     *
+     * @param sql Sentencia SQL
+     * @return Tipo de sentencia (select, insert...) u "otra"
+     */
+    public static String tipoSentencia(String sql) {
+        if (sql == null) return "otra";
+        String texto = sql.stripLeading();
+        int fin = 0;
+        while (fin < texto.length() && Character.isLetter(texto.charAt(fin))) fin++;
+        String tipo = texto.substring(0, fin).toLowerCase(Locale.ROOT);
+        return TIPOS_SENTENCIA.contains(tipo) ? tipo : "otra";
+    }
+
+    private String recortar(String sql) {
+        if (sql == null) return "";
+        String texto = sql.strip().replaceAll("\\s+", " ");
+        return texto.length() <= longitudMaximaSql ? texto : texto.substring(0, longitudMaximaSql) + "...";
+    }
+}
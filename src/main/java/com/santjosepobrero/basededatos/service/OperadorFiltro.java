@@ -0,0 +1,59 @@
+package com.santjosepobrero.basededatos.service;
+
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+/**
+ * Operadores de los filtros simples que se pueden aplicar al ver una tabla.
+ * El valor del filtro siempre se pasa como parámetro de la sentencia preparada.
+ */
+public enum OperadorFiltro {
+
+    IGUAL("eq", "="),
+    DISTINTO("ne", "<>"),
+    MENOR("lt", "<"),
+    MENOR_O_IGUAL("le", "<="),
+    MAYOR("gt", ">"),
+    MAYOR_O_IGUAL("ge", ">="),
+    /** LIKE 'valor%': con el comodín solo al final, el índice de la columna sigue sirviendo. */
+    EMPIEZA_POR("empieza", "LIKE"),
+    /** IS NULL: no usa valor. */
+    ES_NULO("nulo", "IS NULL");
+
+    private final String codigo;
+    private final String sql;
+
+    OperadorFiltro(String codigo, String sql) {
+        this.codigo = codigo;
+        this.sql = sql;
+    }
+
+    /** @return Código corto usado en la URL */
+    public String getCodigo() {
+        return codigo;
+    }
+
+    /** @return Operador SQL */
+    public String getSql() {
+        return sql;
+    }
+
+    /** @return true si el operador necesita un valor */
+    public boolean isConValor() {
+        return this != ES_NULO;
+    }
+
+    /**
+     * @param codigo Código corto del operador
+     * @return Operador correspondiente
+     * @throws IllegalArgumentException si el código no existe
+     */
+    public static OperadorFiltro desde(String codigo) {
+        for (OperadorFiltro operador : values()) {
+            if (operador.codigo.equalsIgnoreCase(codigo)) return operador;
+        }
+        // El código viene de la URL: no se repite en el mensaje
+        throw new IllegalArgumentException("Operador de filtro no válido. Los operadores admitidos son: "
+                + Arrays.stream(values()).map(OperadorFiltro::getCodigo).collect(Collectors.joining(", ")) + ".");
+    }
+}
@@ -0,0 +1,60 @@
+package com.santjosepobrero.basededatos.service;
+
+/**
+ * Página de datos de una tabla junto con la información necesaria para navegar.
+ * <p>
+ * Si la tabla tiene clave primaria, la navegación se hace con cursores opacos
+ * (paginación por clave); si no, con el número de página clásico (OFFSET).
+ */
+public class PaginaTabla {
+
+    private final ResultadoColumnar filas;
+    private final boolean paginacionPorClave;
+    private final boolean hayAnterior;
+    private final boolean haySiguiente;
+    private final String cursorAnterior;
+    private final String cursorSiguiente;
+
+    /**
+     * @param filas Filas de la página guardadas por columnas
+     * @param paginacionPorClave true si la página se obtuvo con paginación por clave
+     * @param hayAnterior true si existe una página anterior
+     * @param haySiguiente true si existe una página siguiente
+     * @param cursorAnterior Cursor para ir a la página anterior (solo en paginación por clave)
+     * @param cursorSiguiente Cursor para ir a la página siguiente (solo en paginación por clave)
+     */
+    public PaginaTabla(ResultadoColumnar filas, boolean paginacionPorClave,
+                       boolean hayAnterior, boolean haySiguiente,
+                       String cursorAnterior, String cursorSiguiente) {
+        this.filas = filas;
+        this.paginacionPorClave = paginacionPorClave;
+        this.hayAnterior = hayAnterior;
+        this.haySiguiente = haySiguiente;
+        this.cursorAnterior = cursorAnterior;
+        this.cursorSiguiente = cursorSiguiente;
+    }
+
+    public ResultadoColumnar getFilas() {
+        return filas;
+    }
+
+    public boolean isPaginacionPorClave() {
+        return paginacionPorClave;
+    }
+
+    public boolean isHayAnterior() {
+        return hayAnterior;
+    }
+
+    public boolean isHaySiguiente() {
+        return haySiguiente;
+    }
+
+    public String getCursorAnterior() {
+        return cursorAnterior;
+    }
+
+    public String getCursorSiguiente() {
+        return cursorSiguiente;
+    }
+}
@@ -0,0 +1,120 @@
+package com.santjosepobrero.basededatos.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Proporciona el número de filas de una tabla con la estrategia configurada para ella.
+ * <p>
+ * La estrategia de cada tabla se lee de {@code tabla.conteo.estrategia.<tabla>} y, si no
+ * existe, de {@code tabla.conteo.estrategia-por-defecto}. Los conteos exactos se guardan
+ * en caché durante {@code tabla.conteo.ttl-exacto} para no repetir un COUNT(*) en cada página.
+ */
+@Service
+public class ProveedorConteoFilas {
+
+    /** Conteo exacto guardado junto con el instante en que se hizo. */
+    private record ConteoGuardado(long total, long contadoNanos) {
+    }
+
+    private final ServicioBaseDeDatos servicioBaseDeDatos;
+    private final CatalogoEsquema catalogoEsquema;
+    private final Environment entorno;
+    private final EstrategiaConteo estrategiaPorDefecto;
+    private final Duration ttlExacto;
+
+    private final Map<String, ConteoGuardado> conteosExactos = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor que permite la inyección de dependencias.
+     *
+     * @param servicioBaseDeDatos Servicio que ejecuta los conteos
+     * @param catalogoEsquema Catálogo del esquema, con el tamaño aproximado de cada tabla
+     * @param entorno Entorno de Spring, para leer la estrategia de cada tabla
+     * @param estrategiaPorDefecto Estrategia de las tablas sin configuración propia
+     * @param ttlExacto Tiempo que se guarda un conteo exacto
+     */
+    public ProveedorConteoFilas(ServicioBaseDeDatos servicioBaseDeDatos, CatalogoEsquema catalogoEsquema,
+                                Environment entorno,
+                                @Value("${tabla.conteo.estrategia-por-defecto:EXACTO}") EstrategiaConteo estrategiaPorDefecto,
+                                @Value("${tabla.conteo.ttl-exacto:PT1M}") Duration ttlExacto) {
+        this.servicioBaseDeDatos = servicioBaseDeDatos;
+        this.catalogoEsquema = catalogoEsquema;
+        this.entorno = entorno;
+        this.estrategiaPorDefecto = estrategiaPorDefecto;
+        this.ttlExacto = ttlExacto;
+    }
+
+    /**
+     * Devuelve la estrategia de conteo configurada para una tabla. No se guarda por nombre:
+     * leer la propiedad es barato y así una URL con un nombre inventado no deja nada en memoria.
+     *
+     * @param nombreTabla Nombre de la tabla
+     * @return Estrategia a usar
+     */
+    public EstrategiaConteo obtenerEstrategia(String nombreTabla) {
+        String nombreTablaNormalizado = servicioBaseDeDatos.normalizarNombreTabla(nombreTabla);
+        String valor = entorno.getProperty("tabla.conteo.estrategia." + nombreTablaNormalizado);
+        return valor == null ? estrategiaPorDefecto : EstrategiaConteo.valueOf(valor.trim().toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * Cuenta las filas de una tabla con la estrategia configurada para ella.
+     *
+     * @param nombreTabla Nombre de la tabla
+     * @return Conteo de filas (puede no tener total con la estrategia perezosa)
+     * @throws SQLException si falla la consulta de conteo
+     */
+    public ConteoFilas contar(String nombreTabla) throws SQLException {
+        EstrategiaConteo estrategia = obtenerEstrategia(nombreTabla);
+        return switch (estrategia) {
+            case EXACTO -> new ConteoFilas(contarExacto(nombreTabla), estrategia);
+            case ESTIMADO -> new ConteoFilas(estimar(nombreTabla), estrategia);
+            case PEREZOSO -> new ConteoFilas(null, estrategia);
+        };
+    }
+
+    /**
+     * Usa el tamaño aproximado del catálogo del esquema y, si la tabla aún no está
+     * en el catálogo, lo consulta en information_schema.
+     */
+    private long estimar(String nombreTabla) throws SQLException {
+        InfoTabla info = catalogoEsquema.buscarTabla(servicioBaseDeDatos.normalizarNombreTabla(nombreTabla));
+        return info != null ? info.getFilasAproximadas() : servicioBaseDeDatos.estimarFilasTabla(nombreTabla);
+    }
+
+    private long contarExacto(String nombreTabla) throws SQLException {
+        String nombreTablaNormalizado = servicioBaseDeDatos.normalizarNombreTabla(nombreTabla);
+        ConteoGuardado guardado = conteosExactos.get(nombreTablaNormalizado);
+        long ahora = System.nanoTime();
+        if (guardado != null && ahora - guardado.contadoNanos() <= ttlExacto.toNanos()) {
+            return guardado.total();
+        }
+        long total = servicioBaseDeDatos.contarFilasTabla(nombreTablaNormalizado);
+        conteosExactos.put(nombreTablaNormalizado, new ConteoGuardado(total, ahora));
+        return total;
+    }
+
+    /**
+     * Descarta el conteo exacto guardado de una tabla.
+     *
+     * @param nombreTabla Nombre de la tabla
+     */
+    public void invalidar(String nombreTabla) {
+        conteosExactos.remove(servicioBaseDeDatos.normalizarNombreTabla(nombreTabla));
+    }
+
+    /**
+     * Descarta todos los conteos exactos guardados.
+     */
+    public void invalidarTodo() {
+        conteosExactos.clear();
+    }
+}
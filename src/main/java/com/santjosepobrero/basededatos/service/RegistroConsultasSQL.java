@@ -0,0 +1,121 @@
+package com.santjosepobrero.basededatos.service;
+
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.core.io.support.ResourcePatternUtils;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.logging.Logger;
+
+/**
+ * Registro de las consultas SQL de la carpeta "classpath:sql/".
+ * <p>
+ * Todos los archivos se cargan y validan una sola vez al arrancar la aplicación y se
+ * guardan en memoria por nombre de archivo. Si falta un archivo o alguno no es una
+ * única sentencia SELECT, la aplicación no arranca. Durante las peticiones no se
+ * vuelve a leer ningún recurso.
+ */
+@Component
+public class RegistroConsultasSQL {
+
+    private static final Logger logger = Logger.getLogger(RegistroConsultasSQL.class.getName());
+
+    /** Nombre del archivo (p. ej. "stat_totales.sql") -> sentencia SQL sin el ';' final. */
+    private final Map<String, String> consultas;
+
+    /**
+     * Carga y valida todos los archivos SQL del classpath.
+     *
+     * @param cargadorRecursos Cargador de recursos de Spring
+     * @throws IllegalStateException si algún archivo no se puede leer o no es válido
+     */
+    public RegistroConsultasSQL(ResourceLoader cargadorRecursos) {
+        Map<String, String> cargadas = new TreeMap<>();
+        try {
+            Resource[] recursos = ResourcePatternUtils.getResourcePatternResolver(cargadorRecursos)
+                    .getResources("classpath:sql/*.sql");
+            for (Resource recurso : recursos) {
+                String nombre = recurso.getFilename();
+                try (InputStream entrada = recurso.getInputStream()) {
+                    String sql = new String(entrada.readAllBytes(), StandardCharsets.UTF_8);
+                    cargadas.put(nombre, validar(nombre, sql));
+                }
+            }
+        } catch (IOException ex) {
+            throw new IllegalStateException("No se pudieron leer las consultas de classpath:sql/", ex);
+        }
+        this.consultas = Collections.unmodifiableMap(cargadas);
+        logger.info("Consultas SQL registradas: " + consultas.keySet());
+    }
+
+    /**
+     * Comprueba que el texto es una única sentencia SELECT y le quita el ';' final.
+     */
+    private static String validar(String nombre, String sql) {
+        String limpia = sql.trim();
+        while (limpia.endsWith(";")) {
+            limpia = limpia.substring(0, limpia.length() - 1).trim();
+        }
+        if (limpia.isEmpty()) {
+            throw new IllegalStateException("El archivo SQL '" + nombre + "' está vacío.");
+        }
+        if (!limpia.regionMatches(true, 0, "SELECT", 0, 6)) {
+            throw new IllegalStateException("El archivo SQL '" + nombre + "' no es una consulta SELECT.");
+        }
+        // Busca un ';' fuera de literales: el archivo tendría más de una sentencia
+        char comilla = 0;
+        for (int i = 0; i < limpia.length(); i++) {
+            char c = limpia.charAt(i);
+            if (comilla != 0) {
+                if (c == '\\') i++;
+                else if (c == comilla) comilla = 0;
+            } else if (c == '\'' || c == '"' || c == '`') {
+                comilla = c;
+            } else if (c == ';') {
+                throw new IllegalStateException("El archivo SQL '" + nombre + "' contiene más de una sentencia.");
+            }
+        }
+        if (comilla != 0) {
+            throw new IllegalStateException("El archivo SQL '" + nombre + "' tiene un literal sin cerrar.");
+        }
+        return limpia;
+    }
+
+    /**
+     * Comprueba que las consultas indicadas están registradas.
+     * Pensado para llamarse desde el constructor de los servicios que las usan.
+     *
+     * @param nombres Nombres de los archivos SQL necesarios
+     * @throws IllegalStateException si falta alguno
+     */
+    public void exigir(Collection<String> nombres) {
+        List<String> faltan = new ArrayList<>();
+        for (String nombre : nombres) {
+            if (!consultas.containsKey(nombre)) faltan.add(nombre);
+        }
+        if (!faltan.isEmpty()) {
+            throw new IllegalStateException("Faltan archivos SQL en classpath:sql/: " + faltan);
+        }
+    }
+
+    /**
+     * Devuelve la sentencia SQL de un archivo registrado.
+     *
+     * @param nombre Nombre del archivo SQL
+     * @return Sentencia SQL, o null si no está registrada
+     */
+    public String obtener(String nombre) {
+        return consultas.get(nombre);
+    }
+
+    /**
+     * @return Nombres de todos los archivos SQL registrados, ordenados
+     */
+    public Set<String> nombres() {
+        return consultas.keySet();
+    }
+}
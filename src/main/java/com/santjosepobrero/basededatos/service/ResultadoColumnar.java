@@ -0,0 +1,493 @@
+package com.santjosepobrero.basededatos.service;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Resultado de una consulta guardado por columnas.
+ * <p>
+ * En lugar de un mapa o una lista por fila, se guarda una sola cabecera con los
+ * nombres y tipos de las columnas y un array por columna: {@code int[]}, {@code long[]}
+ * o {@code double[]} para las columnas numéricas y {@code Object[]} para el resto.
+ * Los NULL se marcan en un mapa de bits por columna. Así una fila no cuesta ningún
+ * objeto propio y los números no se guardan en cajas.
+ * <p>
+ * Para las plantillas se ofrece {@link #getFilas()}, una vista de solo lectura que
+ * construye los valores de cada celda al recorrerla. Para escribir JSON columna a
+ * columna sin crear objetos por celda está {@link #recorrerColumna(int, VisitanteColumna)}.
+ */
+public final class ResultadoColumnar {
+
+    private static final int CAPACIDAD_INICIAL = 16;
+
+    private final List<String> nombres;
+    private final int[] tiposJdbc;
+    private final Columna[] columnas;
+    private final String mensaje;
+    private int numeroFilas;
+
+    private ResultadoColumnar(String[] nombres, int[] tiposJdbc, Columna[] columnas, String mensaje) {
+        this.nombres = List.of(nombres);
+        this.tiposJdbc = tiposJdbc;
+        this.columnas = columnas;
+        this.mensaje = mensaje;
+    }
+
+    /**
+     * Lee todas las filas de un ResultSet.
+     *
+     * @param rs ResultSet ya ejecutado
+     * @return Resultado por columnas
+     * @throws SQLException si falla la lectura
+     */
+    public static ResultadoColumnar leer(ResultSet rs) throws SQLException {
+        return leer(rs, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Lee como mucho {@code maximoFilas} filas de un ResultSet.
+     *
+     * @param rs ResultSet ya ejecutado
+     * @param maximoFilas Número máximo de filas a leer
+     * @return Resultado por columnas
+     * @throws SQLException si falla la lectura
+     */
+    public static ResultadoColumnar leer(ResultSet rs, int maximoFilas) throws SQLException {
+        ResultSetMetaData meta = rs.getMetaData();
+        int numeroColumnas = meta.getColumnCount();
+        String[] nombres = new String[numeroColumnas];
+        int[] tipos = new int[numeroColumnas];
+        Columna[] columnas = new Columna[numeroColumnas];
+        int capacidad = Math.min(Math.max(maximoFilas, 1), CAPACIDAD_INICIAL);
+
+        for (int i = 0; i < numeroColumnas; i++) {
+            nombres[i] = meta.getColumnName(i + 1);
+            tipos[i] = meta.getColumnType(i + 1);
+            columnas[i] = crearColumna(tipos[i], meta.isSigned(i + 1), capacidad);
+        }
+
+        ResultadoColumnar resultado = new ResultadoColumnar(nombres, tipos, columnas, null);
+        int fila = 0;
+        while (fila < maximoFilas && rs.next()) {
+            for (int i = 0; i < numeroColumnas; i++)
+                columnas[i].leer(rs, i + 1, fila);
+            fila++;
+        }
+        resultado.numeroFilas = fila;
+        return resultado;
+    }
+
+    /**
+     * Crea un resultado sin columnas para sentencias que no son consultas.
+     *
+     * @param mensaje Mensaje a mostrar al usuario
+     * @return Resultado sin filas ni columnas
+     */
+    public static ResultadoColumnar sinFilas(String mensaje) {
+        return new ResultadoColumnar(new String[0], new int[0], new Columna[0], mensaje);
+    }
+
+    /**
+     * Elige el almacenamiento de una columna según su tipo JDBC.
+     * Los enteros sin signo se guardan en el tipo siguiente para que no desborden.
+     */
+    private static Columna crearColumna(int tipoJdbc, boolean conSigno, int capacidad) {
+        return switch (tipoJdbc) {
+            case Types.TINYINT, Types.SMALLINT -> new ColumnaEntera(capacidad);
+            case Types.INTEGER -> conSigno ? new ColumnaEntera(capacidad) : new ColumnaLarga(capacidad);
+            case Types.BIGINT -> conSigno ? new ColumnaLarga(capacidad) : new ColumnaObjeto(capacidad);
+            case Types.REAL, Types.FLOAT, Types.DOUBLE -> new ColumnaDoble(capacidad);
+            default -> new ColumnaObjeto(capacidad);
+        };
+    }
+
+    /**
+     * @return true si el resultado viene de una consulta (tiene columnas)
+     */
+    public boolean isConsulta() {
+        return mensaje == null;
+    }
+
+    /**
+     * @return Mensaje de las sentencias que no son consultas, o null
+     */
+    public String getMensaje() {
+        return mensaje;
+    }
+
+    /**
+     * @return Nombres de las columnas en orden
+     */
+    public List<String> getColumnas() {
+        return nombres;
+    }
+
+    /**
+     * @return Tipos JDBC ({@link Types}) de las columnas, en orden
+     */
+    public int[] getTiposJdbc() {
+        return tiposJdbc.clone();
+    }
+
+    public int getNumeroFilas() {
+        return numeroFilas;
+    }
+
+    /**
+     * @param fila Índice de la fila (0-based)
+     * @param columna Índice de la columna (0-based)
+     * @return true si la celda es NULL
+     */
+    public boolean esNulo(int fila, int columna) {
+        comprobarFila(fila);
+        return columnas[columna].nulos.get(fila);
+    }
+
+    /**
+     * Devuelve el valor de una celda. Los números se devuelven en su clase envolvente.
+     *
+     * @param fila Índice de la fila (0-based)
+     * @param columna Índice de la columna (0-based)
+     * @return Valor de la celda, o null si es NULL
+     */
+    public Object getValor(int fila, int columna) {
+        comprobarFila(fila);
+        Columna c = columnas[columna];
+        return c.nulos.get(fila) ? null : c.valor(fila);
+    }
+
+    /**
+     * Devuelve el valor de una columna por nombre, sin distinguir mayúsculas.
+     *
+     * @param fila Índice de la fila (0-based)
+     * @param nombreColumna Nombre de la columna
+     * @return Valor de la celda, o null si es NULL o la columna no existe
+     */
+    public Object getValor(int fila, String nombreColumna) {
+        int indice = indiceColumna(nombreColumna);
+        return indice < 0 ? null : getValor(fila, indice);
+    }
+
+    /**
+     * @param nombreColumna Nombre de la columna
+     * @return Índice de la columna (0-based), o -1 si no existe
+     */
+    public int indiceColumna(String nombreColumna) {
+        for (int i = 0; i < nombres.size(); i++) {
+            if (nombres.get(i).equalsIgnoreCase(nombreColumna)) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Vista de solo lectura de las filas, cada una como lista de valores.
+     * No copia los datos: cada celda se lee del array de su columna al acceder.
+     *
+     * @return Filas del resultado
+     */
+    public List<List<Object>> getFilas() {
+        return new AbstractList<>() {
+            @Override
+            public List<Object> get(int fila) {
+                comprobarFila(fila);
+                return new AbstractList<>() {
+                    @Override
+                    public Object get(int columna) {
+                        return getValor(fila, columna);
+                    }
+
+                    @Override
+                    public int size() {
+                        return columnas.length;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return numeroFilas;
+            }
+        };
+    }
+
+    /**
+     * Recorre los valores de una columna en orden de fila. Los números se entregan
+     * como primitivos, sin pasar por su clase envolvente.
+     *
+     * @param columna Índice de la columna (0-based)
+     * @param visitante Receptor de cada valor
+     * @throws IOException si el visitante falla al escribir
+     */
+    public void recorrerColumna(int columna, VisitanteColumna visitante) throws IOException {
+        Columna c = columnas[columna];
+        for (int fila = 0; fila < numeroFilas; fila++) {
+            if (c.nulos.get(fila)) visitante.nulo();
+            else c.entregar(fila, visitante);
+        }
+    }
+
+    /**
+     * Receptor de los valores de una columna, ver {@link #recorrerColumna(int, VisitanteColumna)}.
+     */
+    public interface VisitanteColumna {
+
+        void entero(long valor) throws IOException;
+
+        void decimal(double valor) throws IOException;
+
+        void objeto(Object valor) throws IOException;
+
+        void nulo() throws IOException;
+    }
+
+    /**
+     * Descarta la última fila. Se usa en la paginación, que lee una fila de más
+     * para saber si hay página siguiente.
+     */
+    public void descartarUltimaFila() {
+        if (numeroFilas > 0) numeroFilas--;
+    }
+
+    /**
+     * Invierte el orden de las filas en el sitio.
+     */
+    public void invertirFilas() {
+        for (Columna columna : columnas)
+            columna.invertir(numeroFilas);
+    }
+
+    /**
+     * Estima la memoria que ocupa el resultado: arrays primitivos, referencias,
+     * mapas de bits y, de forma aproximada, los objetos de las columnas no numéricas.
+     *
+     * @return Bytes estimados
+     */
+    public long getBytesEstimados() {
+        long bytes = 64;
+        for (int i = 0; i < columnas.length; i++) {
+            bytes += 40L + nombres.get(i).length() * 2L;
+            bytes += columnas[i].bytesEstimados(numeroFilas);
+        }
+        return bytes;
+    }
+
+    private void comprobarFila(int fila) {
+        if (fila < 0 || fila >= numeroFilas)
+            throw new IndexOutOfBoundsException("Fila " + fila + " fuera de rango (" + numeroFilas + " filas)");
+    }
+
+    /** Almacenamiento de una columna con su mapa de bits de NULL. */
+    private abstract static class Columna {
+        final BitSet nulos = new BitSet();
+
+        abstract void leer(ResultSet rs, int indiceJdbc, int fila) throws SQLException;
+
+        abstract Object valor(int fila);
+
+        abstract void entregar(int fila, VisitanteColumna visitante) throws IOException;
+
+        abstract void intercambiar(int a, int b);
+
+        abstract long bytesEstimados(int filas);
+
+        void invertir(int filas) {
+            for (int a = 0, b = filas - 1; a < b; a++, b--) {
+                intercambiar(a, b);
+                boolean nuloA = nulos.get(a);
+                nulos.set(a, nulos.get(b));
+                nulos.set(b, nuloA);
+            }
+        }
+
+        static int crecer(int capacidad, int fila) {
+            return Math.max(capacidad * 2, fila + 1);
+        }
+    }
+
+    private static final class ColumnaEntera extends Columna {
+        int[] valores;
+
+        ColumnaEntera(int capacidad) {
+            valores = new int[capacidad];
+        }
+
+        @Override
+        void leer(ResultSet rs, int indiceJdbc, int fila) throws SQLException {
+            if (fila == valores.length) valores = Arrays.copyOf(valores, crecer(valores.length, fila));
+            valores[fila] = rs.getInt(indiceJdbc);
+            if (rs.wasNull()) nulos.set(fila);
+        }
+
+        @Override
+        Object valor(int fila) {
+            return valores[fila];
+        }
+
+        @Override
+        void entregar(int fila, VisitanteColumna visitante) throws IOException {
+            visitante.entero(valores[fila]);
+        }
+
+        @Override
+        void intercambiar(int a, int b) {
+            int t = valores[a];
+            valores[a] = valores[b];
+            valores[b] = t;
+        }
+
+        @Override
+        long bytesEstimados(int filas) {
+            return 16L + valores.length * 4L + filas / 8;
+        }
+    }
+
+    private static final class ColumnaLarga extends Columna {
+        long[] valores;
+
+        ColumnaLarga(int capacidad) {
+            valores = new long[capacidad];
+        }
+
+        @Override
+        void leer(ResultSet rs, int indiceJdbc, int fila) throws SQLException {
+            if (fila == valores.length) valores = Arrays.copyOf(valores, crecer(valores.length, fila));
+            valores[fila] = rs.getLong(indiceJdbc);
+            if (rs.wasNull()) nulos.set(fila);
+        }
+
+        @Override
+        Object valor(int fila) {
+            return valores[fila];
+        }
+
+        @Override
+        void entregar(int fila, VisitanteColumna visitante) throws IOException {
+            visitante.entero(valores[fila]);
+        }
+
+        @Override
+        void intercambiar(int a, int b) {
+            long t = valores[a];
+            valores[a] = valores[b];
+            valores[b] = t;
+        }
+
+        @Override
+        long bytesEstimados(int filas) {
+            return 16L + valores.length * 8L + filas / 8;
+        }
+    }
+
+    private static final class ColumnaDoble extends Columna {
+        double[] valores;
+
+        ColumnaDoble(int capacidad) {
+            valores = new double[capacidad];
+        }
+
+        @Override
+        void leer(ResultSet rs, int indiceJdbc, int fila) throws SQLException {
+            if (fila == valores.length) valores = Arrays.copyOf(valores, crecer(valores.length, fila));
+            valores[fila] = rs.getDouble(indiceJdbc);
+            if (rs.wasNull()) nulos.set(fila);
+        }
+
+        @Override
+        Object valor(int fila) {
+            return valores[fila];
+        }
+
+        @Override
+        void entregar(int fila, VisitanteColumna visitante) throws IOException {
+            visitante.decimal(valores[fila]);
+        }
+
+        @Override
+        void intercambiar(int a, int b) {
+            double t = valores[a];
+            valores[a] = valores[b];
+            valores[b] = t;
+        }
+
+        @Override
+        long bytesEstimados(int filas) {
+            return 16L + valores.length * 8L + filas / 8;
+        }
+    }
+
+    private static final class ColumnaObjeto extends Columna {
+        Object[] valores;
+
+        ColumnaObjeto(int capacidad) {
+            valores = new Object[capacidad];
+        }
+
+        @Override
+        void leer(ResultSet rs, int indiceJdbc, int fila) throws SQLException {
+            if (fila == valores.length) valores = Arrays.copyOf(valores, crecer(valores.length, fila));
+            valores[fila] = rs.getObject(indiceJdbc);
+            if (valores[fila] == null) nulos.set(fila);
+        }
+
+        @Override
+        Object valor(int fila) {
+            return valores[fila];
+        }
+
+        @Override
+        void entregar(int fila, VisitanteColumna visitante) throws IOException {
+            visitante.objeto(valores[fila]);
+        }
+
+        @Override
+        void intercambiar(int a, int b) {
+            Object t = valores[a];
+            valores[a] = valores[b];
+            valores[b] = t;
+        }
+
+        @Override
+        long bytesEstimados(int filas) {
+            long bytes = 16L + valores.length * 4L + filas / 8;
+            for (int i = 0; i < filas; i++) {
+                Object valor = valores[i];
+                if (valor != null) bytes += bytesObjeto(valor);
+            }
+            return bytes;
+        }
+
+        /**
+         * Tamaño aproximado de un valor en una JVM de 64 bits con referencias comprimidas,
+         * contando los objetos a los que apunta. Lo que no se conoce se cuenta por lo alto.
+         */
+        private static long bytesObjeto(Object valor) {
+            if (valor instanceof String texto) return 40L + texto.length();
+            if (valor instanceof byte[] binario) return 16L + binario.length;
+            // Hasta 18 dígitos el valor cabe en un long; si no, lleva un BigInteger con su int[]
+            if (valor instanceof BigDecimal decimal) {
+                return decimal.precision() <= 18 ? 40L : 40L + bytesObjeto(decimal.unscaledValue());
+            }
+            if (valor instanceof BigInteger entero) return 56L + (entero.bitLength() / 32 + 1) * 4L;
+            if (valor instanceof Number || valor instanceof Boolean) return 24L;
+            if (valor instanceof java.sql.Timestamp) return 32L;
+            if (valor instanceof java.util.Date || valor instanceof LocalDate || valor instanceof LocalTime) return 24L;
+            if (valor instanceof LocalDateTime) return 72L;
+            if (valor instanceof OffsetDateTime || valor instanceof ZonedDateTime) return 96L;
+            return 128L;
+        }
+    }
+}
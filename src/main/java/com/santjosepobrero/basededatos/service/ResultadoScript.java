@@ -0,0 +1,221 @@
+package com.santjosepobrero.basededatos.service;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progreso y resultado de un script SQL ejecutado con {@link EjecutorScriptSQL}
+ * o de una importación de CSV con {@link ImportadorCSV}.
+ * <p>
+ * El ejecutor lo va rellenando sentencia a sentencia y otros hilos pueden leerlo mientras
+ * tanto (por ejemplo, la página de un trabajo en segundo plano) o pedir su cancelación.
+ */
+public class ResultadoScript {
+
+    /** Errores de fila que se guardan con su mensaje; del resto solo se cuentan. */
+    private static final int MAXIMO_ERRORES_GUARDADOS = 100;
+
+    private final List<ResultadoSelect> resultadosSelect = new CopyOnWriteArrayList<>();
+    private final List<Statement> sentenciasAbiertas = new CopyOnWriteArrayList<>();
+    private volatile int sentenciasEjecutadas;
+    private volatile int insercionesEnLote;
+    private volatile boolean modificaciones;
+    private volatile boolean cancelado;
+    private volatile int indiceActual;
+    private volatile String sentenciaActual;
+
+    // Una importación escribe desde varias conexiones a la vez
+    private final AtomicLong filasImportadas = new AtomicLong();
+    private final AtomicLong totalErroresFila = new AtomicLong();
+    private final List<String> erroresFila = new CopyOnWriteArrayList<>();
+
+    void anadirSelect(int indice, String sql, ResultadoColumnar resultado, String plan, String aviso) {
+        resultadosSelect.add(new ResultadoSelect(indice, sql, resultado, plan, aviso));
+    }
+
+    // Solo escribe el hilo del ejecutor; volatile basta para que los demás vean el valor
+    void contarSentencias(int numero) {
+        sentenciasEjecutadas += numero;
+    }
+
+    void contarInsercionesEnLote(int numero) {
+        insercionesEnLote += numero;
+    }
+
+    void contarFilasImportadas(long numero) {
+        filasImportadas.addAndGet(numero);
+    }
+
+    /**
+     * Anota una fila del archivo importado que no se ha podido insertar.
+     *
+     * @param linea Línea del archivo en la que empieza la fila, o -1 si no se sabe
+     * @param mensaje Motivo
+     * @return Número de filas con error hasta ahora
+     */
+    long anotarErrorFila(long linea, String mensaje) {
+        long total = totalErroresFila.incrementAndGet();
+        if (total <= MAXIMO_ERRORES_GUARDADOS) {
+            erroresFila.add(linea > 0 ? "Línea " + linea + ": " + mensaje : mensaje);
+        }
+        return total;
+    }
+
+    /**
+     * Anota varias filas que no se han podido insertar sin saber cuáles son.
+     *
+     * @param filas Número de filas
+     * @param mensaje Motivo, que se guarda una sola vez
+     * @return Número de filas con error hasta ahora
+     */
+    long anotarErroresFila(long filas, String mensaje) {
+        long total = totalErroresFila.addAndGet(filas);
+        if (total - filas < MAXIMO_ERRORES_GUARDADOS) erroresFila.add(mensaje);
+        return total;
+    }
+
+    void marcarModificaciones() {
+        modificaciones = true;
+    }
+
+    /**
+     * Registra una sentencia JDBC abierta para poder cancelarla desde otro hilo.
+     */
+    void registrar(Statement sentencia) throws SQLException {
+        sentenciasAbiertas.add(sentencia);
+        if (cancelado) sentencia.cancel();
+    }
+
+    /**
+     * Anota la sentencia que se va a ejecutar.
+     *
+     * @throws SQLException si la ejecución se ha cancelado
+     */
+    void iniciarSentencia(int indice, String sql) throws SQLException {
+        if (cancelado) throw new SQLException("Ejecución cancelada antes de la sentencia #" + indice + ".");
+        indiceActual = indice;
+        sentenciaActual = sql;
+    }
+
+    void terminar() {
+        sentenciasAbiertas.clear();
+        sentenciaActual = null;
+    }
+
+    /**
+     * Pide que se detenga la ejecución: cancela la sentencia en curso con
+     * {@link Statement#cancel()} y evita que empiecen las siguientes.
+     */
+    public void cancelar() {
+        cancelado = true;
+        for (Statement sentencia : sentenciasAbiertas) {
+            try {
+                sentencia.cancel();
+            } catch (SQLException ignorada) {
+                // La sentencia ya se ha cerrado
+            }
+        }
+    }
+
+    public boolean isCancelado() {
+        return cancelado;
+    }
+
+    public List<ResultadoSelect> getResultadosSelect() {
+        return Collections.unmodifiableList(resultadosSelect);
+    }
+
+    public int getSentenciasEjecutadas() {
+        return sentenciasEjecutadas;
+    }
+
+    public int getInsercionesEnLote() {
+        return insercionesEnLote;
+    }
+
+    public long getFilasImportadas() {
+        return filasImportadas.get();
+    }
+
+    /** @return Filas del archivo importado que no se han podido insertar */
+    public long getTotalErroresFila() {
+        return totalErroresFila.get();
+    }
+
+    /** @return Mensajes de los primeros errores de fila, en el orden en que se produjeron */
+    public List<String> getErroresFila() {
+        return Collections.unmodifiableList(erroresFila);
+    }
+
+    /** @return Posición en el script de la última sentencia iniciada */
+    public int getIndiceActual() {
+        return indiceActual;
+    }
+
+    /** @return Sentencia que se está ejecutando, o null si no hay ninguna */
+    public String getSentenciaActual() {
+        return sentenciaActual;
+    }
+
+    /**
+     * @return true si alguna sentencia del script no era una consulta y ha podido cambiar datos o tablas
+     */
+    public boolean hayModificaciones() {
+        return modificaciones;
+    }
+
+    /**
+     * Resultado de una sentencia del script que devolvió filas.
+     */
+    public static class ResultadoSelect {
+
+        private final int indice;
+        private final String sql;
+        private final ResultadoColumnar resultado;
+        private final String plan;
+        private final String aviso;
+
+        ResultadoSelect(int indice, String sql, ResultadoColumnar resultado, String plan, String aviso) {
+            this.indice = indice;
+            this.sql = sql;
+            this.resultado = resultado;
+            this.plan = plan;
+            this.aviso = aviso;
+        }
+
+        /** @return Posición de la sentencia en el script, empezando por 1 */
+        public int getIndice() {
+            return indice;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public ResultadoColumnar getResultado() {
+            return resultado;
+        }
+
+        /** @return Resumen del plan de {@link ControlCosteConsultas}, o null si no se revisó (p. ej. desde la caché) */
+        public String getPlan() {
+            return plan;
+        }
+
+        /** @return Motivo por el que se limitaron las filas de la consulta, o null si se ejecutó tal cual */
+        public String getAviso() {
+            return aviso;
+        }
+
+        public List<String> getColumnas() {
+            return resultado.getColumnas();
+        }
+
+        public List<List<Object>> getFilas() {
+            return resultado.getFilas();
+        }
+    }
+}
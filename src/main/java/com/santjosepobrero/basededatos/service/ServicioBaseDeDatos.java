@@ -1,12 +1,9 @@
 package com.santjosepobrero.basededatos.service;
 
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.ResourceLoader;
 import org.springframework.stereotype.Service;
 
 import javax.sql.DataSource;
-import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
 import java.sql.*;
 import java.util.*;
 import java.util.regex.Pattern;
@@ -27,7 +24,10 @@ import java.util.regex.Pattern;
 public class ServicioBaseDeDatos {
 
     private final DataSource origenDeDatos;
-    private final ResourceLoader cargadorRecursos;
+    private final RegistroConsultasSQL registroConsultas;
+    private final CatalogoEsquema catalogoEsquema;
+    private final MetricasConsultas metricas;
+    private final CacheResultadosSQL cacheResultados;
     private final Pattern patronNombreTabla = Pattern.compile("^[a-zA-Z0-9_]+$");
     private final Pattern patronNombreArchivo = Pattern.compile("^[a-zA-Z0-9_\\.\\-]+\\.sql$");
 
@@ -38,11 +38,19 @@ public class ServicioBaseDeDatos {
      * Constructor que permite la inyección de dependencias.
      *
      * @param origenDeDatos  Fuente de datos JDBC
-     * @param cargadorRecursos Cargador de recursos de Spring
+     * @param registroConsultas Registro de las consultas de classpath:sql/
+     * @param catalogoEsquema Catálogo en memoria de tablas y columnas
+     * @param metricas Métricas de latencia y filas de las consultas
+     * @param cacheResultados Caché de resultados de las SELECT directas
      */
-    public ServicioBaseDeDatos(DataSource origenDeDatos, ResourceLoader cargadorRecursos) {
+    public ServicioBaseDeDatos(DataSource origenDeDatos, RegistroConsultasSQL registroConsultas,
+                               CatalogoEsquema catalogoEsquema, MetricasConsultas metricas,
+                               CacheResultadosSQL cacheResultados) {
         this.origenDeDatos = origenDeDatos;
-        this.cargadorRecursos = cargadorRecursos;
+        this.registroConsultas = registroConsultas;
+        this.catalogoEsquema = catalogoEsquema;
+        this.metricas = metricas;
+        this.cacheResultados = cacheResultados;
     }
 
     /**
@@ -71,26 +79,39 @@ public class ServicioBaseDeDatos {
         return partes[partes.length - 1].split("\\?")[0];
     }
 
+    /**
+     * Pide una conexión para una operación de solo lectura. La conexión se marca como tal antes
+     * de la primera sentencia, de modo que si hay réplicas configuradas se obtiene de una de ellas
+     * (ver {@code ConfiguracionOrigenesDeDatos}).
+     *
+     * @param origenDeDatos Fuente de datos JDBC
+     * @return Conexión de solo lectura
+     * @throws SQLException si no se puede obtener la conexión
+     */
+    static Connection conexionLectura(DataSource origenDeDatos) throws SQLException {
+        Connection conexion = origenDeDatos.getConnection();
+        try {
+            conexion.setReadOnly(true);
+        } catch (SQLException ex) {
+            conexion.close();
+            throw ex;
+        }
+        return conexion;
+    }
+
     /**
      * Lista todas las tablas del esquema actual de la base de datos.
+     * Los nombres salen del {@link CatalogoEsquema}, sin consultar la base de datos en cada llamada.
      *
      * @return Lista de nombres de tablas
      * @throws SQLException si ocurre un error de SQL o permisos
      */
     public List<String> listarTablas() throws SQLException {
-        try (Connection conexion = origenDeDatos.getConnection()) {
-            String esquema = obtenerEsquema();
-            List<String> tablas = new ArrayList<>();
-            ResultSet rs = conexion.getMetaData().getTables(esquema, null, "%", new String[]{"TABLE"});
-            while (rs.next())
-                tablas.add(rs.getString("TABLE_NAME"));
-            return tablas;
+        try {
+            return catalogoEsquema.listarNombresTablas();
         } catch (SQLSyntaxErrorException ex) {
             throw new SQLException("El esquema o las tablas no existen: " + ex.getMessage(), ex);
         } catch (SQLException ex) {
-            if (ex.getMessage() != null && ex.getMessage().toLowerCase().contains("denied")) {
-                throw new SQLException("No tienes permisos para listar las tablas.", ex);
-            }
             throw new SQLException("No se pudo listar las tablas: " + ex.getMessage(), ex);
         }
     }
@@ -135,10 +156,14 @@ public class ServicioBaseDeDatos {
      */
     public int contarFilasTabla(String nombreTabla) throws SQLException {
         String nombreTablaNormalizado = normalizarNombreTabla(nombreTabla);
-        try (Connection conexion = origenDeDatos.getConnection();
+        try (Connection conexion = conexionLectura(origenDeDatos);
              Statement sentencia = conexion.createStatement()) {
-            ResultSet rs = sentencia.executeQuery("SELECT COUNT(*) as total FROM " + nombreTablaNormalizado);
-            return rs.next() ? rs.getInt("total") : 0;
+            String consulta = "SELECT COUNT(*) as total FROM " + nombreTablaNormalizado;
+            return metricas.medir("conteo", etiquetaTabla(nombreTablaNormalizado), consulta, () -> {
+                try (ResultSet rs = sentencia.executeQuery(consulta)) {
+                    return rs.next() ? rs.getInt("total") : 0;
+                }
+            });
         } catch (SQLSyntaxErrorException ex) {
             throw new SQLException("Tabla '" + nombreTablaNormalizado + "' no existe: " + ex.getMessage(), ex);
         } catch (SQLException ex) {
@@ -149,36 +174,98 @@ public class ServicioBaseDeDatos {
         }
     }
 
+    /**
+     * Estima el número de filas de una tabla con information_schema.TABLES.TABLE_ROWS.
+     * No recorre la tabla; en InnoDB el valor es aproximado.
+     *
+     * @param nombreTabla Nombre de la tabla
+     * @return Número estimado de filas
+     * @throws SQLException si la tabla no existe o no se puede consultar information_schema
+     */
+    public long estimarFilasTabla(String nombreTabla) throws SQLException {
+        String nombreTablaNormalizado = normalizarNombreTabla(nombreTabla);
+        String consulta = "SELECT TABLE_ROWS FROM information_schema.TABLES WHERE TABLE_SCHEMA = ? AND TABLE_NAME = ?";
+        try (Connection conexion = conexionLectura(origenDeDatos);
+             PreparedStatement ps = conexion.prepareStatement(consulta)) {
+            ps.setString(1, obtenerEsquema());
+            ps.setString(2, nombreTablaNormalizado);
+            return metricas.medir("estimacion", etiquetaTabla(nombreTablaNormalizado), consulta, () -> {
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (!rs.next())
+                        throw new SQLException("Tabla '" + nombreTablaNormalizado + "' no existe.");
+                    return rs.getLong(1);
+                }
+            });
+        } catch (SQLException ex) {
+            if (ex.getMessage() != null && ex.getMessage().toLowerCase().contains("denied")) {
+                throw new SQLException("No tienes permisos para ver los registros de la tabla.", ex);
+            }
+            throw new SQLException("No se pudo estimar las filas de la tabla: " + ex.getMessage(), ex);
+        }
+    }
+
     /**
      * Obtiene datos de una tabla con paginación.
      *
      * @param nombreTabla Nombre de la tabla
      * @param pagina      Número de página (0-based)
      * @param tamanio     Tamaño de página
-     * @return Lista de mapas, cada uno representando una fila (columna -> valor)
+     * @return Filas de la página guardadas por columnas
+     * @throws SQLException si ocurre un error de SQL o permisos
+     */
+    public ResultadoColumnar obtenerDatosTabla(String nombreTabla, int pagina, int tamanio) throws SQLException {
+        return obtenerDatosTabla(nombreTabla, pagina, tamanio, ConsultaTabla.SIN_CRITERIOS);
+    }
+
+    /**
+     * Obtiene datos de una tabla con paginación, ordenados y filtrados en la base de datos.
+     *
+     * @param nombreTabla Nombre de la tabla
+     * @param pagina      Número de página (0-based)
+     * @param tamanio     Tamaño de página
+     * @param consulta    Orden y filtros a aplicar
+     * @return Filas de la página guardadas por columnas
      * @throws SQLException si ocurre un error de SQL o permisos
+     * @throws IllegalArgumentException si el orden o los filtros no son válidos para la tabla
      */
-    public List<Map<String, Object>> obtenerDatosTabla(String nombreTabla, int pagina, int tamanio) throws SQLException {
+    public ResultadoColumnar obtenerDatosTabla(String nombreTabla, int pagina, int tamanio, ConsultaTabla consulta)
+            throws SQLException {
         String nombreTablaNormalizado = normalizarNombreTabla(nombreTabla);
-        String consulta = "SELECT * FROM " + nombreTablaNormalizado + " LIMIT ? OFFSET ?";
-        try (Connection conexion = origenDeDatos.getConnection();
+        CriteriosSQL criterios = prepararCriterios(nombreTablaNormalizado, consulta);
+        List<String> orden = criterios.orden() == null
+                ? List.of() : columnasDeOrden(criterios, obtenerClavePrimaria(nombreTablaNormalizado));
+        return obtenerFilasConDesplazamiento(nombreTablaNormalizado, tamanio, pagina * tamanio, criterios,
+                clausulaOrden(orden, consulta.isDescendente()));
+    }
+
+    /**
+     * Lee filas de una tabla con LIMIT/OFFSET.
+     *
+     * @param nombreTabla    Nombre de la tabla
+     * @param limite         Número máximo de filas a leer
+     * @param desplazamiento Número de filas a saltar
+     * @param criterios      Filtros ya validados
+     * @param orden          Cláusula ORDER BY, o cadena vacía
+     * @return Filas leídas guardadas por columnas
+     * @throws SQLException si ocurre un error de SQL o permisos
+     */
+    private ResultadoColumnar obtenerFilasConDesplazamiento(String nombreTabla, int limite, int desplazamiento,
+                                                           CriteriosSQL criterios, String orden) throws SQLException {
+        String nombreTablaNormalizado = normalizarNombreTabla(nombreTabla);
+        String consulta = "SELECT * FROM " + nombreTablaNormalizado + criterios.where() + orden + " LIMIT ? OFFSET ?";
+        try (Connection conexion = conexionLectura(origenDeDatos);
              PreparedStatement ps = conexion.prepareStatement(consulta)) {
-            ps.setInt(1, tamanio);
-            ps.setInt(2, pagina * tamanio);
-
-            ResultSet rs = ps.executeQuery();
-            ResultSetMetaData meta = rs.getMetaData();
-            int columnas = meta.getColumnCount();
-
-            List<Map<String, Object>> datos = new ArrayList<>();
-            while (rs.next()) {
-                Map<String, Object> fila = new LinkedHashMap<>();
-                for (int i = 1; i <= columnas; i++) {
-                    fila.put(meta.getColumnName(i), rs.getObject(i));
+            int parametro = 1;
+            for (String valor : criterios.parametros())
+                ps.setString(parametro++, valor);
+            ps.setInt(parametro++, limite);
+            ps.setInt(parametro, desplazamiento);
+
+            return metricas.medir("pagina", etiquetaTabla(nombreTablaNormalizado), consulta, () -> {
+                try (ResultSet rs = ps.executeQuery()) {
+                    return ResultadoColumnar.leer(rs);
                 }
-                datos.add(fila);
-            }
-            return datos;
+            });
         } catch (SQLSyntaxErrorException ex) {
             throw new SQLException("La tabla no existe: " + ex.getMessage(), ex);
         } catch (SQLException ex) {
@@ -190,46 +277,297 @@ public class ServicioBaseDeDatos {
     }
 
     /**
-     * Ejecuta una sentencia SQL directa.
+     * Obtiene las columnas de la clave primaria de una tabla, en el orden de la clave,
+     * a partir del catálogo del esquema.
+     *
+     * @param nombreTablaNormalizado Nombre de la tabla ya normalizado
+     * @return Columnas de la clave primaria, o lista vacía si la tabla no tiene una utilizable
+     * @throws SQLException si no se puede cargar el catálogo
+     */
+    private List<String> obtenerClavePrimaria(String nombreTablaNormalizado) throws SQLException {
+        InfoTabla info = catalogoEsquema.buscarTabla(nombreTablaNormalizado);
+        if (info == null) return List.of();
+        // Solo se admiten nombres de columna simples, que se pueden citar sin riesgo,
+        // y tipos que se pueden llevar en el cursor como texto
+        for (String columna : info.getClavePrimaria()) {
+            if (!patronNombreTabla.matcher(columna).matches()) return List.of();
+            InfoColumna infoColumna = info.getColumna(columna);
+            if (infoColumna == null || esBinaria(infoColumna.getTipoJdbc())) return List.of();
+        }
+        return info.getClavePrimaria();
+    }
+
+    /** Filtros ya validados, listos para añadirse a la consulta, y columna de orden pedida. */
+    private record CriteriosSQL(String where, List<String> parametros, InfoColumna orden) {
+        static final CriteriosSQL NINGUNO = new CriteriosSQL("", List.of(), null);
+    }
+
+    /**
+     * Comprueba el orden y los filtros pedidos contra el catálogo y genera la cláusula WHERE.
+     * Los valores de los filtros no entran en el texto SQL: se pasan como parámetros.
+     *
+     * @throws IllegalArgumentException si una columna no existe, es binaria o no tiene índice sin forzarlo
+     */
+    private CriteriosSQL prepararCriterios(String nombreTablaNormalizado, ConsultaTabla consulta) throws SQLException {
+        if (consulta == null || consulta.isSinCriterios()) return CriteriosSQL.NINGUNO;
+        InfoTabla info = catalogoEsquema.buscarTabla(nombreTablaNormalizado);
+        if (info == null) throw new SQLException("Tabla '" + nombreTablaNormalizado + "' no existe.");
+
+        InfoColumna orden = consulta.getColumnaOrden() == null
+                ? null : validarColumna(info, consulta.getColumnaOrden(), consulta.isForzar(), "ordenar");
+
+        StringBuilder where = new StringBuilder();
+        List<String> parametros = new ArrayList<>();
+        for (FiltroColumna filtro : consulta.getFiltros()) {
+            InfoColumna columna = validarColumna(info, filtro.getColumna(), consulta.isForzar(), "filtrar");
+            where.append(where.isEmpty() ? " WHERE " : " AND ")
+                    .append('`').append(columna.getNombre()).append("` ").append(filtro.getOperador().getSql());
+            if (filtro.getOperador() == OperadorFiltro.EMPIEZA_POR) {
+                where.append(" ?");
+                parametros.add(escaparLike(filtro.getValor()) + "%");
+            } else if (filtro.getOperador().isConValor()) {
+                where.append(" ?");
+                parametros.add(filtro.getValor());
+            }
+        }
+        return new CriteriosSQL(where.toString(), parametros, orden);
+    }
+
+    private InfoColumna validarColumna(InfoTabla info, String nombreColumna, boolean forzar, String uso) {
+        InfoColumna columna = info.getColumna(nombreColumna);
+        if (columna == null || !patronNombreTabla.matcher(columna.getNombre()).matches()) {
+            // El nombre viene de la URL: no se repite en el mensaje
+            throw new IllegalArgumentException("No se puede " + uso + " por una columna que no existe en la tabla "
+                    + info.getNombre() + ".");
+        }
+        if (esBinaria(columna.getTipoJdbc())) {
+            throw new IllegalArgumentException("No se puede " + uso + " por la columna binaria '"
+                    + columna.getNombre() + "'.");
+        }
+        if (!columna.isIndexada() && !forzar) {
+            throw new IllegalArgumentException("La columna '" + columna.getNombre() + "' no tiene índice: para "
+                    + uso + " por ella hay que marcar 'forzar', y la consulta puede recorrer toda la tabla.");
+        }
+        return columna;
+    }
+
+    private static String escaparLike(String valor) {
+        return valor.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    /**
+     * Columnas por las que se ordena: la pedida y detrás la clave primaria para desempatar,
+     * de modo que el orden es total y sirve para la paginación por clave.
+     */
+    private static List<String> columnasDeOrden(CriteriosSQL criterios, List<String> clave) {
+        if (criterios.orden() == null) return clave;
+        List<String> columnas = new ArrayList<>();
+        columnas.add(criterios.orden().getNombre());
+        for (String columna : clave) {
+            if (!columna.equalsIgnoreCase(criterios.orden().getNombre())) columnas.add(columna);
+        }
+        return columnas;
+    }
+
+    private static String clausulaOrden(List<String> columnas, boolean descendente) {
+        if (columnas.isEmpty()) return "";
+        StringBuilder orden = new StringBuilder(" ORDER BY ");
+        for (int i = 0; i < columnas.size(); i++) {
+            if (i > 0) orden.append(", ");
+            orden.append('`').append(columnas.get(i)).append('`').append(descendente ? " DESC" : " ASC");
+        }
+        return orden.toString();
+    }
+
+    /**
+     * Obtiene una página de datos de una tabla, en el orden de su clave primaria y sin filtros.
+     *
+     * @see #obtenerPaginaTabla(String, int, int, String, ConsultaTabla)
+     */
+    public PaginaTabla obtenerPaginaTabla(String nombreTabla, int pagina, int tamanio, String cursor) throws SQLException {
+        return obtenerPaginaTabla(nombreTabla, pagina, tamanio, cursor, ConsultaTabla.SIN_CRITERIOS);
+    }
+
+    /**
+     * Obtiene una página de datos de una tabla.
      * <p>
-     * Si es SELECT, devuelve columnas y filas.
-     * Si es otra instrucción, devuelve un mensaje de éxito.
+     * Si la tabla tiene clave primaria se usa paginación por clave
+     * ({@code WHERE clave > ? ORDER BY clave LIMIT ?}), de modo que cualquier página
+     * cuesta lo mismo que la primera. Si no la tiene, se recurre a LIMIT/OFFSET.
+     * En ambos casos se pide una fila de más para saber si existe página siguiente.
+     * <p>
+     * El orden y los filtros se aplican en la base de datos. Al ordenar por otra columna,
+     * la clave de paginación pasa a ser esa columna seguida de la clave primaria; si la
+     * columna admite NULL o es ENUM/SET (que MariaDB ordena por posición y no por texto)
+     * no se puede comparar con un cursor y se usa OFFSET.
      *
-     * @param sql Sentencia SQL
-     * @return Mapa con los resultados (columnas/filas o mensaje)
+     * @param nombreTabla Nombre de la tabla
+     * @param pagina      Número de página (0-based), solo usado con OFFSET
+     * @param tamanio     Tamaño de página
+     * @param cursor      Cursor opaco recibido de una página anterior, o null para la primera
+     * @param consulta    Orden y filtros a aplicar
+     * @return Página con las filas y los datos de navegación
      * @throws SQLException si ocurre un error de SQL o permisos
+     * @throws IllegalArgumentException si el cursor, el orden o los filtros no son válidos para la tabla
      */
-    public Map<String, Object> ejecutarSQLDirecta(String sql) throws SQLException {
-        try (Connection conexion = origenDeDatos.getConnection();
-             Statement sentencia = conexion.createStatement()) {
-            String sqlNormalizada = sql.trim();
-            Map<String, Object> resultado = new HashMap<>();
+    public PaginaTabla obtenerPaginaTabla(String nombreTabla, int pagina, int tamanio, String cursor,
+                                          ConsultaTabla consulta) throws SQLException {
+        String nombreTablaNormalizado = normalizarNombreTabla(nombreTabla);
+        List<String> clavePrimaria;
+        try {
+            clavePrimaria = obtenerClavePrimaria(nombreTablaNormalizado);
+        } catch (SQLException ex) {
+            throw new SQLException("No se pudo leer la clave primaria de la tabla: " + ex.getMessage(), ex);
+        }
+        CriteriosSQL criterios = prepararCriterios(nombreTablaNormalizado, consulta);
+        boolean descendente = consulta != null && consulta.isDescendente();
+        List<String> clave = columnasDeOrden(criterios, clavePrimaria);
 
-            if (sqlNormalizada.toUpperCase().startsWith("SELECT")) {
-                ResultSet rs = sentencia.executeQuery(sqlNormalizada);
-                ResultSetMetaData meta = rs.getMetaData();
-
-                List<String> columnas = new ArrayList<>();
-                for (int i = 1; i <= meta.getColumnCount(); i++)
-                    columnas.add(meta.getColumnName(i));
-
-                List<List<Object>> filas = new ArrayList<>();
-                while (rs.next()) {
-                    List<Object> fila = new ArrayList<>();
-                    for (int i = 1; i <= meta.getColumnCount(); i++)
-                        fila.add(rs.getObject(i));
-                    filas.add(fila);
+        if (clavePrimaria.isEmpty() || !admiteCursor(criterios.orden())) {
+            String orden = criterios.orden() == null ? "" : clausulaOrden(clave, descendente);
+            ResultadoColumnar filas = obtenerFilasConDesplazamiento(nombreTablaNormalizado, tamanio + 1,
+                    pagina * tamanio, criterios, orden);
+            boolean haySiguiente = filas.getNumeroFilas() > tamanio;
+            if (haySiguiente) filas.descartarUltimaFila();
+            return new PaginaTabla(filas, false, pagina > 0, haySiguiente, null, null);
+        }
+
+        CursorPaginacion cursorDecodificado = (cursor == null || cursor.isBlank())
+                ? null : CursorPaginacion.decodificar(cursor, clave.size());
+        boolean haciaAdelante = cursorDecodificado == null || cursorDecodificado.esHaciaAdelante();
+        // Hacia atrás se recorre el índice en sentido contrario
+        boolean descendenteEfectivo = haciaAdelante ? descendente : !descendente;
+
+        StringBuilder consultaSql = new StringBuilder("SELECT * FROM ").append(nombreTablaNormalizado)
+                .append(criterios.where());
+        if (cursorDecodificado != null) {
+            // (k1 > ?) OR (k1 = ? AND k2 > ?) ... para que el optimizador pueda usar el índice de la clave
+            String operador = descendenteEfectivo ? " < ?" : " > ?";
+            consultaSql.append(criterios.where().isEmpty() ? " WHERE (" : " AND (");
+            for (int i = 0; i < clave.size(); i++) {
+                if (i > 0) consultaSql.append(" OR ");
+                consultaSql.append('(');
+                for (int j = 0; j < i; j++)
+                    consultaSql.append('`').append(clave.get(j)).append("` = ? AND ");
+                consultaSql.append('`').append(clave.get(i)).append('`').append(operador).append(')');
+            }
+            consultaSql.append(')');
+        }
+        consultaSql.append(clausulaOrden(clave, descendenteEfectivo)).append(" LIMIT ?");
+
+        try (Connection conexion = conexionLectura(origenDeDatos);
+             PreparedStatement ps = conexion.prepareStatement(consultaSql.toString())) {
+            int parametro = 1;
+            for (String valor : criterios.parametros())
+                ps.setString(parametro++, valor);
+            if (cursorDecodificado != null) {
+                List<String> valores = cursorDecodificado.getValores();
+                for (int i = 0; i < clave.size(); i++) {
+                    for (int j = 0; j < i; j++)
+                        ps.setString(parametro++, valores.get(j));
+                    ps.setString(parametro++, valores.get(i));
                 }
+            }
+            ps.setInt(parametro, tamanio + 1);
 
-                resultado.put("columnas", columnas);
-                resultado.put("filas", filas);
+            ResultadoColumnar filas = metricas.medir("pagina", etiquetaTabla(nombreTablaNormalizado),
+                    consultaSql.toString(), () -> {
+                        try (ResultSet rs = ps.executeQuery()) {
+                            return ResultadoColumnar.leer(rs);
+                        }
+                    });
 
-            } else {
-                sentencia.execute(sqlNormalizada);
-                resultado.put("mensaje", "Sentencia ejecutada correctamente.");
+            boolean hayMas = filas.getNumeroFilas() > tamanio;
+            if (hayMas) filas.descartarUltimaFila();
+            if (!haciaAdelante) {
+                // Hacia atrás se leen en orden inverso; se devuelven en el orden natural
+                filas.invertirFilas();
             }
 
-            return resultado;
+            int numeroFilas = filas.getNumeroFilas();
+            boolean hayAnterior = haciaAdelante ? cursorDecodificado != null : hayMas;
+            boolean haySiguiente = !haciaAdelante || hayMas;
+            String cursorAnterior = hayAnterior && numeroFilas > 0
+                    ? CursorPaginacion.codificar(false, valoresClave(filas, clave, 0)) : null;
+            String cursorSiguiente = haySiguiente && numeroFilas > 0
+                    ? CursorPaginacion.codificar(true, valoresClave(filas, clave, numeroFilas - 1)) : null;
+            return new PaginaTabla(filas, true, cursorAnterior != null, cursorSiguiente != null,
+                    cursorAnterior, cursorSiguiente);
+        } catch (SQLSyntaxErrorException ex) {
+            throw new SQLException("La tabla no existe: " + ex.getMessage(), ex);
+        } catch (SQLException ex) {
+            if (ex.getMessage() != null && ex.getMessage().toLowerCase().contains("denied")) {
+                throw new SQLException("No tienes permisos para ver los datos de la tabla.", ex);
+            }
+            throw new SQLException("No se pudo obtener los datos: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Indica si la columna de orden se puede usar en un cursor: sin NULL, que no
+     * se pueden comparar con {@code >}, y sin ENUM/SET, cuyo orden no es el del texto.
+     */
+    private static boolean admiteCursor(InfoColumna orden) {
+        if (orden == null) return true;
+        String tipo = orden.getNombreTipo() == null ? "" : orden.getNombreTipo().toUpperCase(Locale.ROOT);
+        return !orden.isAnulable() && !tipo.equals("ENUM") && !tipo.equals("SET");
+    }
+
+    /**
+     * Obtiene como texto los valores de la clave de una fila, para guardarlos en un cursor.
+     * Las fechas se escriben con espacio en lugar de 'T' para que MariaDB las compare como DATETIME.
+     */
+    private String[] valoresClave(ResultadoColumnar filas, List<String> clave, int fila) {
+        String[] valores = new String[clave.size()];
+        for (int i = 0; i < valores.length; i++) {
+            Object valor = filas.getValor(fila, clave.get(i));
+            String texto = String.valueOf(valor);
+            if (valor instanceof java.time.temporal.Temporal || valor instanceof java.util.Date)
+                texto = texto.replace('T', ' ');
+            valores[i] = texto;
+        }
+        return valores;
+    }
+
+    /**
+     * Nombre de tabla para etiquetar las métricas: solo las tablas del catálogo, para que
+     * los nombres inventados en la URL no creen series nuevas.
+     */
+    private String etiquetaTabla(String nombreTablaNormalizado) {
+        try {
+            return catalogoEsquema.buscarTabla(nombreTablaNormalizado) != null ? nombreTablaNormalizado : "desconocida";
+        } catch (SQLException ex) {
+            return "desconocida";
+        }
+    }
+
+    private static boolean esBinaria(int tipoJdbc) {
+        return tipoJdbc == Types.BINARY || tipoJdbc == Types.VARBINARY || tipoJdbc == Types.LONGVARBINARY
+                || tipoJdbc == Types.BLOB;
+    }
+
+    /**
+     * Ejecuta una sentencia SQL directa.
+     * <p>
+     * Si es SELECT, devuelve columnas y filas, guardadas en {@link CacheResultadosSQL} si está habilitada.
+     * Si es otra instrucción, devuelve un mensaje de éxito e invalida los resultados guardados
+     * de las tablas que modifica.
+     *
+     * @param sql Sentencia SQL
+     * @return Resultado por columnas, o un resultado sin filas con el mensaje si no es SELECT
+     * @throws SQLException si ocurre un error de SQL o permisos
+     */
+    public ResultadoColumnar ejecutarSQLDirecta(String sql) throws SQLException {
+        String sqlNormalizada = sql.trim();
+        try {
+            if (sqlNormalizada.toUpperCase().startsWith("SELECT")) {
+                return cacheResultados.obtener(sqlNormalizada, () -> ejecutarSinCache(sqlNormalizada, true));
+            }
+            try {
+                return ejecutarSinCache(sqlNormalizada, false);
+            } finally {
+                cacheResultados.invalidarPor(sqlNormalizada);
+            }
 
         } catch (SQLSyntaxErrorException ex) {
             throw new SQLException("La sentencia SQL no es válida: " + ex.getMessage(), ex);
@@ -241,22 +579,81 @@ public class ServicioBaseDeDatos {
         }
     }
 
+    private ResultadoColumnar ejecutarSinCache(String sql, boolean esConsulta) throws SQLException {
+        try (Connection conexion = esConsulta ? conexionLectura(origenDeDatos) : origenDeDatos.getConnection();
+             Statement sentencia = conexion.createStatement()) {
+            return metricas.medir("sql_directa", MetricasConsultas.tipoSentencia(sql), sql, () -> {
+                if (esConsulta) {
+                    try (ResultSet rs = sentencia.executeQuery(sql)) {
+                        return ResultadoColumnar.leer(rs);
+                    }
+                }
+
+                sentencia.execute(sql);
+                return ResultadoColumnar.sinFilas("Sentencia ejecutada correctamente.");
+            });
+        }
+    }
+
     /**
-     * Ejecuta un archivo SQL ubicado en la carpeta "classpath:sql/".
+     * Ejecuta un archivo SQL de la carpeta "classpath:sql/".
+     * <p>
+     * El texto ya está en memoria en el {@link RegistroConsultasSQL} y se ejecuta como
+     * sentencia preparada, que el driver guarda en caché en el servidor.
      *
      * @param archivoSql Nombre del archivo SQL
-     * @return Mapa con los resultados de la ejecución
-     * @throws SQLException si no se puede cargar, leer o ejecutar el archivo
+     * @return Resultado de la consulta guardado por columnas
+     * @throws SQLException si el archivo no está registrado o falla la ejecución
      */
-    public Map<String, Object> ejecutarSQLDesdeArchivo(String archivoSql) throws SQLException {
-        try {
-            String archivoSqlNormalizado = normalizarNombreArchivoSQL(archivoSql);
-            InputStream inputStream = cargadorRecursos.getResource("classpath:sql/" + archivoSqlNormalizado).getInputStream();
-            String sql = new String(inputStream.readAllBytes(), StandardCharsets.UTF_8).trim();
-            return ejecutarSQLDirecta(sql);
-        } catch (Exception ex) {
-            throw new SQLException("No se pudo cargar, leer o ejecutar el archivo SQL.", ex);
+    public ResultadoColumnar ejecutarSQLDesdeArchivo(String archivoSql) throws SQLException {
+        return ejecutarSQLDesdeArchivo(archivoSql, 0);
+    }
+
+    /**
+     * Ejecuta un archivo SQL de la carpeta "classpath:sql/" con un tiempo máximo. Pasado ese
+     * tiempo el driver cancela la consulta en el servidor y libera la conexión.
+     *
+     * @param archivoSql Nombre del archivo SQL
+     * @param tiempoMaximoSegundos Tiempo máximo de la consulta en segundos (0 = sin límite)
+     * @return Resultado de la consulta guardado por columnas
+     * @throws SQLException si el archivo no está registrado, falla la ejecución o se agota el tiempo
+     */
+    public ResultadoColumnar ejecutarSQLDesdeArchivo(String archivoSql, int tiempoMaximoSegundos) throws SQLException {
+        String sql = obtenerSQLRegistrada(archivoSql);
+        String consulta = normalizarNombreArchivoSQL(archivoSql).replaceFirst("\\.sql$", "");
+        try (Connection conexion = conexionLectura(origenDeDatos);
+             PreparedStatement ps = conexion.prepareStatement(sql)) {
+            ps.setQueryTimeout(tiempoMaximoSegundos);
+            return metricas.medir("archivo_sql", consulta, sql, () -> {
+                try (ResultSet rs = ps.executeQuery()) {
+                    return ResultadoColumnar.leer(rs);
+                }
+            });
+        } catch (SQLException ex) {
+            if (ex.getMessage() != null && ex.getMessage().toLowerCase().contains("denied")) {
+                throw new SQLException("No tienes permisos para ejecutar el archivo SQL.", ex);
+            }
+            throw new SQLException("No se pudo ejecutar el archivo SQL '" + archivoSql + "': " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Devuelve la sentencia de un archivo SQL registrado, sin leer ningún recurso.
+     *
+     * @param archivoSql Nombre del archivo SQL
+     * @return Sentencia SQL del archivo
+     * @throws SQLException si el archivo no está en classpath:sql/
+     */
+    public String obtenerSQLRegistrada(String archivoSql) throws SQLException {
+        String sql = registroConsultas.obtener(archivoSql);
+        if (sql == null) {
+            // Solo se normaliza el nombre si no coincide tal cual
+            sql = registroConsultas.obtener(normalizarNombreArchivoSQL(archivoSql));
+        }
+        if (sql == null) {
+            throw new SQLException("No existe el archivo SQL '" + archivoSql + "' en classpath:sql/.");
         }
+        return sql;
     }
 
     /**
@@ -265,17 +662,32 @@ public class ServicioBaseDeDatos {
      * @param resultadoSql Resultado de ejecutarSQLDirecta o ejecutarSQLDesdeArchivo
      * @return Total numérico encontrado, o 0 si no se puede extraer
      */
-    public static int obtenerTotalGenerico(Map<String, Object> resultadoSql) {
-        if (resultadoSql == null) return 0;
-        var columnas = (java.util.List<String>) resultadoSql.get("columnas");
-        var filas = (java.util.List<java.util.List<Object>>) resultadoSql.get("filas");
-        if (columnas != null && filas != null && !filas.isEmpty()) {
-            var fila = filas.get(0);
-            for (Object valor : fila) {
-                if (valor instanceof Number) return ((Number) valor).intValue();
-                try { return Integer.parseInt(valor.toString()); } catch (Exception e) {}
-            }
+    public static int obtenerTotalGenerico(ResultadoColumnar resultadoSql) {
+        if (resultadoSql == null || resultadoSql.getNumeroFilas() == 0) return 0;
+        for (int i = 0; i < resultadoSql.getColumnas().size(); i++) {
+            Integer total = comoEntero(resultadoSql.getValor(0, i));
+            if (total != null) return total;
         }
         return 0;
     }
+
+    /**
+     * Extrae el valor numérico de una columna concreta de la primera fila de un resultado.
+     * Sirve para consultas que devuelven varios totales en una sola fila.
+     *
+     * @param resultadoSql Resultado de ejecutarSQLDirecta o ejecutarSQLDesdeArchivo
+     * @param columna      Nombre (o alias) de la columna
+     * @return Total numérico encontrado, o 0 si no se puede extraer
+     */
+    public static int obtenerTotalPorColumna(ResultadoColumnar resultadoSql, String columna) {
+        if (resultadoSql == null || resultadoSql.getNumeroFilas() == 0) return 0;
+        Integer total = comoEntero(resultadoSql.getValor(0, columna));
+        return total != null ? total : 0;
+    }
+
+    private static Integer comoEntero(Object valor) {
+        if (valor instanceof Number) return ((Number) valor).intValue();
+        if (valor == null) return null;
+        try { return Integer.parseInt(valor.toString()); } catch (Exception e) { return null; }
+    }
 }
@@ -0,0 +1,99 @@
+package com.santjosepobrero.basededatos.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Servicio que carga en paralelo las consultas estadísticas del dashboard.
+ * <p>
+ * Cada consulta se lanza en un hilo virtual, así la latencia de la página es la de
+ * la consulta más lenta y no la suma de todas. {@link CacheEstadisticas} limita
+ * cuántas van a la base de datos a la vez y cancela en el servidor las que se pasan
+ * de tiempo, de modo que una serie que no llega a tiempo no sigue ocupando una conexión.
+ */
+@Service
+public class ServicioDashboard {
+
+    private static final Logger logger = Logger.getLogger(ServicioDashboard.class.getName());
+
+    /** Consultas del dashboard: nombre de la serie en la vista -> archivo en classpath:sql/. */
+    public static final Map<String, String> CONSULTAS = Map.of(
+            "filmsPorRating", "stat_peliculas_por_rating.sql",
+            "actoresInicial", "stat_actores_por_letra.sql",
+            "filmsPorCategoria", "stat_peliculas_por_categoria.sql",
+            "alquileresMes", "stat_alquileres_por_mes.sql",
+            "clientesPais", "stat_clientes_por_pais.sql",
+            "totales", "stat_totales.sql"
+    );
+
+    private final CacheEstadisticas cacheEstadisticas;
+    private final ExecutorService ejecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final long tiempoMaximoConsultaMs;
+
+    /**
+     * Constructor que permite la inyección de dependencias.
+     *
+     * @param cacheEstadisticas Caché de las consultas estadísticas
+     * @param registroConsultas Registro de consultas, para comprobar al arrancar que existen todas
+     * @param tiempoMaximoConsultaMs Tiempo máximo de espera por consulta en milisegundos
+     */
+    public ServicioDashboard(CacheEstadisticas cacheEstadisticas, RegistroConsultasSQL registroConsultas,
+                             @Value("${dashboard.tiempo-maximo-consulta-ms:5000}") long tiempoMaximoConsultaMs) {
+        registroConsultas.exigir(CONSULTAS.values());
+        this.cacheEstadisticas = cacheEstadisticas;
+        this.tiempoMaximoConsultaMs = tiempoMaximoConsultaMs;
+    }
+
+    /**
+     * Lanza todas las consultas del dashboard a la vez y espera sus resultados.
+     * <p>
+     * Si una consulta falla o no termina a tiempo, se cancela y se anota el error
+     * de su serie; el resto de series se devuelven con normalidad.
+     *
+     * @return Series cargadas y errores de las que no se pudieron cargar
+     */
+    public DatosDashboard cargarEstadisticas() {
+        Map<String, Future<ResultadoColumnar>> pendientes = new LinkedHashMap<>();
+        CONSULTAS.forEach((serie, archivo) -> pendientes.put(serie, ejecutor.submit(() -> cacheEstadisticas.obtener(archivo))));
+
+        Map<String, ResultadoColumnar> series = new LinkedHashMap<>();
+        Map<String, String> errores = new LinkedHashMap<>();
+        long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(tiempoMaximoConsultaMs);
+
+        for (Map.Entry<String, Future<ResultadoColumnar>> entrada : pendientes.entrySet()) {
+            String serie = entrada.getKey();
+            Future<ResultadoColumnar> futuro = entrada.getValue();
+            try {
+                long restante = Math.max(0, limite - System.nanoTime());
+                series.put(serie, futuro.get(restante, TimeUnit.NANOSECONDS));
+            } catch (TimeoutException ex) {
+                futuro.cancel(true);
+                errores.put(serie, "La consulta tardó más de " + tiempoMaximoConsultaMs + " ms.");
+                logger.log(Level.WARNING, "Tiempo agotado en la consulta " + CONSULTAS.get(serie));
+            } catch (ExecutionException ex) {
+                errores.put(serie, "No se pudieron cargar los datos: " + ex.getCause().getMessage());
+                logger.log(Level.WARNING, "Error en la consulta " + CONSULTAS.get(serie), ex.getCause());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                futuro.cancel(true);
+                errores.put(serie, "La carga del dashboard se interrumpió.");
+            }
+        }
+        return new DatosDashboard(series, errores);
+    }
+
+    /**
+     * Cierra el ejecutor al parar la aplicación.
+     */
+    @PreDestroy
+    public void cerrar() {
+        ejecutor.shutdownNow();
+    }
+}
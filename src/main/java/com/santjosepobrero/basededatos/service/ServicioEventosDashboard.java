@@ -0,0 +1,202 @@
+package com.santjosepobrero.basededatos.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Envía a los dashboards abiertos, por Server-Sent Events, las series que cambian.
+ * <p>
+ * En cada intervalo, si hay alguien suscrito, se cargan las estadísticas una sola vez
+ * ({@link ServicioDashboard}, que a su vez sirve desde {@link CacheEstadisticas}), se
+ * comparan con las últimas enviadas y las que han cambiado se serializan una vez y se
+ * envían a todos los suscriptores. Así el coste por intervalo no depende de cuántos
+ * dashboards haya abiertos.
+ * <p>
+ * El evento "series" tiene la misma forma que /api/dashboard, con solo las series
+ * cambiadas y todos los errores actuales. Si nada ha cambiado se envía un comentario,
+ * que mantiene viva la conexión a través de proxies y detecta los clientes que se han ido.
+ * <p>
+ * Cada suscriptor tiene como mucho un envío en curso y un evento esperando, así que los eventos
+ * le llegan en orden y un cliente atascado no acumula hilos. Mientras hay un envío en curso los
+ * comentarios se descartan; si llega un segundo evento con series, el que esperaba se sustituye
+ * por uno con todas las series actuales, para que el cliente no se quede con alguna antigua.
+ */
+@Service
+public class ServicioEventosDashboard {
+
+    private static final Logger logger = Logger.getLogger(ServicioEventosDashboard.class.getName());
+
+    private final ServicioDashboard servicioDashboard;
+    private final ObjectMapper json;
+    private final long tiempoMaximoConexionMs;
+    private final Set<Suscriptor> suscriptores = ConcurrentHashMap.newKeySet();
+    private final ExecutorService envios = Executors.newVirtualThreadPerTaskExecutor();
+
+    /** Serie -> JSON enviado en el último evento. Solo lo usa el hilo del planificador. */
+    private final Map<String, String> ultimasSeries = new HashMap<>();
+    private Map<String, String> ultimosErrores = Map.of();
+
+    /**
+     * Constructor que permite la inyección de dependencias.
+     *
+     * @param servicioDashboard Servicio que carga las estadísticas del dashboard
+     * @param json ObjectMapper de Spring, con el serializador por columnas de los resultados
+     * @param tiempoMaximoConexion Duración máxima de una conexión; el navegador reconecta solo
+     */
+    public ServicioEventosDashboard(ServicioDashboard servicioDashboard, ObjectMapper json,
+                                    @Value("${dashboard.eventos.tiempo-maximo-conexion:PT30M}")
+                                    Duration tiempoMaximoConexion) {
+        this.servicioDashboard = servicioDashboard;
+        this.json = json;
+        this.tiempoMaximoConexionMs = tiempoMaximoConexion.toMillis();
+    }
+
+    /**
+     * Registra un nuevo dashboard. No recibe nada hasta que alguna serie cambie: los datos
+     * iniciales los pide a /api/dashboard.
+     *
+     * @return Emisor de eventos de la conexión
+     */
+    public SseEmitter suscribir() {
+        SseEmitter emisor = new SseEmitter(tiempoMaximoConexionMs);
+        Suscriptor suscriptor = new Suscriptor(emisor);
+        emisor.onCompletion(() -> suscriptores.remove(suscriptor));
+        emisor.onTimeout(emisor::complete);
+        emisor.onError(error -> suscriptores.remove(suscriptor));
+        suscriptores.add(suscriptor);
+        return emisor;
+    }
+
+    /**
+     * Carga las estadísticas y envía a todos los suscriptores las series que han cambiado.
+     */
+    @Scheduled(fixedDelayString = "${dashboard.eventos.intervalo:PT15S}")
+    public void difundir() {
+        if (suscriptores.isEmpty()) return;
+
+        DatosDashboard datos = servicioDashboard.cargarEstadisticas();
+        Map<String, Object> cambiadas = new LinkedHashMap<>();
+        try {
+            for (Map.Entry<String, ResultadoColumnar> serie : datos.getSeries().entrySet()) {
+                String serializada = json.writeValueAsString(serie.getValue());
+                if (!serializada.equals(ultimasSeries.put(serie.getKey(), serializada))) {
+                    cambiadas.put(serie.getKey(), serie.getValue());
+                }
+            }
+            boolean erroresCambiados = !datos.getErrores().equals(ultimosErrores);
+            ultimosErrores = datos.getErrores();
+
+            boolean conSeries = !cambiadas.isEmpty() || erroresCambiados;
+            // El evento se construye una vez; build() no se puede repetir sobre el mismo constructor
+            Set<ResponseBodyEmitter.DataWithMediaType> partes = conSeries
+                    ? eventoSeries(cambiadas, datos.getErrores())
+                    : SseEmitter.event().comment("sin cambios").build();
+            Set<ResponseBodyEmitter.DataWithMediaType> completo = null;
+            for (Suscriptor suscriptor : suscriptores) {
+                if (suscriptor.encolar(partes, conSeries)) continue;
+                // Ya esperaba otro evento con series: se sustituye por todas, serializadas una vez por intervalo
+                if (completo == null) completo = eventoSeries(datos.getSeries(), datos.getErrores());
+                suscriptor.sustituir(completo, true);
+            }
+        } catch (JsonProcessingException ex) {
+            logger.log(Level.WARNING, "No se pudieron serializar las series del dashboard", ex);
+        }
+    }
+
+    private Set<ResponseBodyEmitter.DataWithMediaType> eventoSeries(Map<String, ?> series, Map<String, String> errores)
+            throws JsonProcessingException {
+        String cuerpo = json.writeValueAsString(Map.of("series", series, "errores", errores));
+        return SseEmitter.event().name("series").data(cuerpo).build();
+    }
+
+    /**
+     * Cierra las conexiones abiertas al parar la aplicación.
+     */
+    @PreDestroy
+    public void cerrar() {
+        suscriptores.forEach(suscriptor -> suscriptor.emisor.complete());
+        envios.shutdownNow();
+    }
+
+    /**
+     * Conexión de un dashboard con su envío en curso y el evento que espera a que termine.
+     */
+    private final class Suscriptor {
+
+        private final SseEmitter emisor;
+
+        // Protegidos por el monitor del suscriptor
+        private Set<ResponseBodyEmitter.DataWithMediaType> pendiente;
+        private boolean pendienteConSeries;
+        private boolean enviando;
+
+        private Suscriptor(SseEmitter emisor) {
+            this.emisor = emisor;
+        }
+
+        /**
+         * Deja el evento para enviarlo cuando termine el envío en curso, o lo envía ya si no hay ninguno.
+         *
+         * @param conSeries false si es el comentario de "sin cambios", que se descarta si hay un envío en curso
+         * @return false si ya esperaba otro evento con series; entonces hay que {@link #sustituir} ambos
+         *         por uno con todas las series
+         */
+        private synchronized boolean encolar(Set<ResponseBodyEmitter.DataWithMediaType> partes, boolean conSeries) {
+            if (enviando && !conSeries) return true;
+            if (enviando && pendienteConSeries) return false;
+            sustituir(partes, conSeries);
+            return true;
+        }
+
+        private synchronized void sustituir(Set<ResponseBodyEmitter.DataWithMediaType> partes, boolean conSeries) {
+            pendiente = partes;
+            pendienteConSeries = conSeries;
+            if (!enviando) {
+                enviando = true;
+                // Un hilo virtual mientras tiene algo que enviar: un cliente lento no retrasa a los demás
+                envios.execute(this::enviarPendientes);
+            }
+        }
+
+        private void enviarPendientes() {
+            while (true) {
+                Set<ResponseBodyEmitter.DataWithMediaType> partes;
+                synchronized (this) {
+                    partes = pendiente;
+                    pendiente = null;
+                    pendienteConSeries = false;
+                    if (partes == null) {
+                        enviando = false;
+                        return;
+                    }
+                }
+                try {
+                    emisor.send(partes);
+                } catch (IOException | IllegalStateException ex) {
+                    // Cliente desconectado o conexión cerrada: enviando sigue a true y no se le envía más
+                    suscriptores.remove(this);
+                    emisor.completeWithError(ex);
+                    return;
+                }
+            }
+        }
+    }
+}
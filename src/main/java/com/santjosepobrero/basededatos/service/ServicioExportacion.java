@@ -0,0 +1,219 @@
+package com.santjosepobrero.basededatos.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+
+/**
+ * Servicio para exportar tablas completas o consultas estadísticas en CSV o NDJSON.
+ * <p>
+ * Las filas se leen de un ResultSet de solo avance con el modo streaming del driver
+ * de MariaDB (fetch size) y se escriben directamente en la salida, sin guardarlas en
+ * memoria. Así exportar una tabla de millones de filas no hace crecer el heap y la
+ * respuesta empieza a enviarse desde la primera fila.
+ */
+@Service
+public class ServicioExportacion {
+
+    /** Formatos de exportación admitidos. */
+    public enum FormatoExportacion {
+        CSV("text/csv", "csv"),
+        NDJSON("application/x-ndjson", "ndjson");
+
+        private final String tipoContenido;
+        private final String extension;
+
+        FormatoExportacion(String tipoContenido, String extension) {
+            this.tipoContenido = tipoContenido;
+            this.extension = extension;
+        }
+
+        public String getTipoContenido() {
+            return tipoContenido;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        /**
+         * Interpreta el formato pedido por el usuario.
+         *
+         * @param formato Texto del formato ("csv" o "ndjson")
+         * @return Formato correspondiente
+         * @throws IllegalArgumentException si el formato no está admitido
+         */
+        public static FormatoExportacion desde(String formato) {
+            for (FormatoExportacion f : values()) {
+                if (f.extension.equalsIgnoreCase(formato)) return f;
+            }
+            throw new IllegalArgumentException("Formato de exportación no admitido: " + formato);
+        }
+    }
+
+    private final DataSource origenDeDatos;
+    private final ServicioBaseDeDatos servicioBaseDeDatos;
+    private final ObjectMapper mapeadorJson;
+    private final int filasPorLote;
+
+    /**
+     * Constructor que permite la inyección de dependencias.
+     *
+     * @param origenDeDatos Fuente de datos JDBC
+     * @param servicioBaseDeDatos Servicio de base de datos, para validar nombres y leer archivos SQL
+     * @param mapeadorJson ObjectMapper de Spring, para escribir NDJSON
+     * @param filasPorLote Filas que el driver trae de cada vez (fetch size)
+     */
+    public ServicioExportacion(DataSource origenDeDatos, ServicioBaseDeDatos servicioBaseDeDatos,
+                               ObjectMapper mapeadorJson,
+                               @Value("${exportacion.filas-por-lote:1000}") int filasPorLote) {
+        this.origenDeDatos = origenDeDatos;
+        this.servicioBaseDeDatos = servicioBaseDeDatos;
+        this.mapeadorJson = mapeadorJson;
+        this.filasPorLote = filasPorLote;
+    }
+
+    /**
+     * Comprueba que la tabla existe y devuelve la consulta que la exporta.
+     * Se llama antes de empezar a escribir la respuesta, para poder devolver un error limpio.
+     *
+     * @param nombreTabla Nombre de la tabla
+     * @return Consulta SELECT de la tabla completa
+     * @throws SQLException si la tabla no existe o no se pueden listar las tablas
+     */
+    public String prepararExportacionTabla(String nombreTabla) throws SQLException {
+        String nombreTablaNormalizado = servicioBaseDeDatos.normalizarNombreTabla(nombreTabla);
+        if (!servicioBaseDeDatos.listarTablas().contains(nombreTablaNormalizado)) {
+            throw new SQLException("La tabla '" + nombreTablaNormalizado + "' no existe.");
+        }
+        return "SELECT * FROM " + nombreTablaNormalizado;
+    }
+
+    /**
+     * Comprueba que el archivo pedido es una consulta estadística permitida y devuelve su SQL.
+     * Solo se pueden exportar los archivos {@code stat_*.sql} de classpath:sql/.
+     *
+     * @param archivoSql Nombre del archivo SQL
+     * @return Sentencia SQL del archivo
+     * @throws SQLException si el archivo no está permitido o no se puede leer
+     */
+    public String prepararExportacionEstadistica(String archivoSql) throws SQLException {
+        String archivoNormalizado = servicioBaseDeDatos.normalizarNombreArchivoSQL(archivoSql);
+        if (!archivoNormalizado.startsWith("stat_")) {
+            throw new SQLException("Solo se pueden exportar las consultas estadísticas (stat_*.sql).");
+        }
+        return servicioBaseDeDatos.obtenerSQLRegistrada(archivoNormalizado);
+    }
+
+    /**
+     * Ejecuta una consulta y escribe sus filas en la salida a medida que llegan.
+     *
+     * @param sql Consulta SELECT ya validada
+     * @param formato Formato de salida
+     * @param salida Flujo de salida (la respuesta HTTP, posiblemente comprimida)
+     * @throws SQLException si falla la consulta
+     * @throws IOException si falla la escritura
+     */
+    public void exportar(String sql, FormatoExportacion formato, OutputStream salida) throws SQLException, IOException {
+        try (Connection conexion = ServicioBaseDeDatos.conexionLectura(origenDeDatos);
+             Statement sentencia = conexion.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            // Con fetch size > 0 el driver de MariaDB trae las filas por lotes en lugar de todo el resultado
+            sentencia.setFetchSize(filasPorLote);
+            try (ResultSet rs = sentencia.executeQuery(sql)) {
+                if (formato == FormatoExportacion.CSV) {
+                    escribirCsv(rs, salida);
+                } else {
+                    escribirNdjson(rs, salida);
+                }
+            }
+        }
+    }
+
+    private void escribirCsv(ResultSet rs, OutputStream salida) throws SQLException, IOException {
+        Writer escritor = new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8), 64 * 1024);
+        ResultSetMetaData meta = rs.getMetaData();
+        int columnas = meta.getColumnCount();
+
+        for (int i = 1; i <= columnas; i++) {
+            if (i > 1) escritor.write(',');
+            escribirCampoCsv(escritor, meta.getColumnLabel(i));
+        }
+        escritor.write("\r\n");
+
+        while (rs.next()) {
+            for (int i = 1; i <= columnas; i++) {
+                if (i > 1) escritor.write(',');
+                String valor = rs.getString(i);
+                if (valor != null) escribirCampoCsv(escritor, valor);
+            }
+            escritor.write("\r\n");
+        }
+        escritor.flush();
+    }
+
+    /**
+     * Escribe un campo CSV, entrecomillándolo solo si contiene separadores, comillas o saltos de línea.
+     */
+    private void escribirCampoCsv(Writer escritor, String valor) throws IOException {
+        boolean entrecomillar = false;
+        for (int i = 0; i < valor.length() && !entrecomillar; i++) {
+            char c = valor.charAt(i);
+            entrecomillar = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!entrecomillar) {
+            escritor.write(valor);
+            return;
+        }
+        escritor.write('"');
+        escritor.write(valor.replace("\"", "\"\""));
+        escritor.write('"');
+    }
+
+    private void escribirNdjson(ResultSet rs, OutputStream salida) throws SQLException, IOException {
+        ResultSetMetaData meta = rs.getMetaData();
+        int columnas = meta.getColumnCount();
+        String[] nombres = new String[columnas];
+        boolean[] numericas = new boolean[columnas];
+        for (int i = 0; i < columnas; i++) {
+            nombres[i] = meta.getColumnLabel(i + 1);
+            numericas[i] = esNumerica(meta.getColumnType(i + 1));
+        }
+
+        try (JsonGenerator generador = mapeadorJson.getFactory().createGenerator(salida)) {
+            // La salida la cierra quien la abrió; aquí solo se escribe un objeto JSON por línea
+            generador.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generador.setRootValueSeparator(new SerializedString("\n"));
+            while (rs.next()) {
+                generador.writeStartObject();
+                for (int i = 0; i < columnas; i++) {
+                    generador.writeFieldName(nombres[i]);
+                    Object valor = numericas[i] ? rs.getObject(i + 1) : rs.getString(i + 1);
+                    if (valor == null) {
+                        generador.writeNull();
+                    } else if (valor instanceof Number numero) {
+                        generador.writeNumber(numero.toString());
+                    } else {
+                        generador.writeString(valor.toString());
+                    }
+                }
+                generador.writeEndObject();
+            }
+            generador.writeRaw('\n');
+        }
+    }
+
+    private boolean esNumerica(int tipoJdbc) {
+        return switch (tipoJdbc) {
+            case Types.TINYINT, Types.SMALLINT, Types.INTEGER, Types.BIGINT,
+                 Types.DECIMAL, Types.NUMERIC, Types.REAL, Types.FLOAT, Types.DOUBLE -> true;
+            default -> false;
+        };
+    }
+}
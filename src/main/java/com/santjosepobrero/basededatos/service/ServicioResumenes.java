@@ -0,0 +1,411 @@
+package com.santjosepobrero.basededatos.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Mantiene las tablas de resumen ({@code resumen_*}) que lee el dashboard en lugar de
+ * agrupar las tablas originales en cada visita.
+ * <p>
+ * Hay dos tipos de resumen:
+ * <ul>
+ *     <li>Alquileres por día y por mes: se avanzan de forma incremental. Una marca de agua
+ *         guarda el último {@code rental_id} procesado y en cada pasada solo se agrupan las
+ *         filas nuevas, que se suman a las existentes. Se da por hecho que los alquileres no
+ *         se borran ni cambian de fecha, como en Sakila; si no, se pueden reconstruir al arrancar.
+ *         Los ids se asignan al insertar pero se ven al confirmar, así que un id bajo puede aparecer
+ *         después que uno alto; por eso la marca solo avanza hasta alquileres cuyo {@code last_update}
+ *         es más antiguo que {@code resumenes.retraso-seguridad}. Una transacción abierta más tiempo
+ *         que ese retraso puede quedar sin contar hasta la siguiente reconstrucción.</li>
+ *     <li>Películas por categoría y clientes por país: los cambios en sus tablas no se pueden
+ *         restar (una película que cambia de categoría no deja rastro de la anterior), así que
+ *         se guarda una firma con el número de filas y el último {@code last_update} de cada
+ *         tabla de origen y el resumen solo se recalcula entero cuando la firma cambia.
+ *         {@code last_update} tiene precisión de segundos: un UPDATE en el mismo segundo que el
+ *         último cambio visto no movería la firma, así que esta anota también si ese cambio es del
+ *         segundo en curso y, en ese caso, la siguiente pasada vuelve a recalcular.</li>
+ * </ul>
+ * Las marcas y firmas están en {@code resumen_marca}. Cada avance se hace en una transacción
+ * que bloquea su fila de marca, así que varias instancias de la aplicación no procesan dos
+ * veces las mismas filas. Las tablas se crean al arrancar si no existen.
+ * <p>
+ * El avance periódico corre en el planificador de Spring, que debe tener más de un hilo
+ * ({@code spring.task.scheduling.pool.size}) para no retrasar las demás tareas; al terminar
+ * un script se pide en segundo plano con {@link #actualizarEnSegundoPlano()}.
+ */
+@Service
+public class ServicioResumenes {
+
+    private static final Logger logger = Logger.getLogger(ServicioResumenes.class.getName());
+
+    private static final List<String> TABLAS = List.of(
+            """
+            CREATE TABLE IF NOT EXISTS resumen_marca (
+                resumen VARCHAR(64) NOT NULL PRIMARY KEY,
+                ultimo_id BIGINT NOT NULL DEFAULT 0,
+                firma VARCHAR(255) NULL,
+                actualizado TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+            )""",
+            "CREATE TABLE IF NOT EXISTS resumen_alquileres_dia (dia DATE NOT NULL PRIMARY KEY, alquileres INT NOT NULL)",
+            "CREATE TABLE IF NOT EXISTS resumen_alquileres_mes (mes CHAR(7) NOT NULL PRIMARY KEY, alquileres INT NOT NULL)",
+            """
+            CREATE TABLE IF NOT EXISTS resumen_peliculas_categoria (
+                categoria VARCHAR(25) NOT NULL PRIMARY KEY, peliculas INT NOT NULL)""",
+            """
+            CREATE TABLE IF NOT EXISTS resumen_clientes_pais (
+                country VARCHAR(50) NOT NULL PRIMARY KEY, clientes INT NOT NULL)"""
+    );
+
+    private static final String MARCA_ALQUILERES = "alquileres";
+
+    /**
+     * Último id que ya no puede tener por debajo alquileres sin confirmar: el de los alquileres
+     * insertados hace más del retraso de seguridad (cualquier id menor se asignó antes).
+     */
+    private static final String MAXIMO_ALQUILER_SEGURO = """
+            SELECT COALESCE(MAX(rental_id), 0) FROM rental
+            WHERE rental_id > ? AND last_update < CURRENT_TIMESTAMP - INTERVAL ? SECOND""";
+
+    private static final String ALQUILERES_POR_DIA = """
+            INSERT INTO resumen_alquileres_dia (dia, alquileres)
+            SELECT DATE(rental_date), COUNT(*) FROM rental WHERE rental_id > ? AND rental_id <= ?
+            GROUP BY DATE(rental_date)
+            ON DUPLICATE KEY UPDATE alquileres = alquileres + VALUES(alquileres)""";
+
+    private static final String ALQUILERES_POR_MES = """
+            INSERT INTO resumen_alquileres_mes (mes, alquileres)
+            SELECT DATE_FORMAT(rental_date, '%Y-%m'), COUNT(*) FROM rental WHERE rental_id > ? AND rental_id <= ?
+            GROUP BY DATE_FORMAT(rental_date, '%Y-%m')
+            ON DUPLICATE KEY UPDATE alquileres = alquileres + VALUES(alquileres)""";
+
+    /**
+     * Resumen que se recalcula entero cuando cambia la firma de sus tablas de origen.
+     *
+     * @param nombre Nombre de su fila en resumen_marca
+     * @param tabla Tabla de resumen
+     * @param firma Consulta que devuelve la firma de las tablas de origen
+     * @param carga INSERT ... SELECT que rellena la tabla de resumen
+     * @param archivoSql Consulta del dashboard que lee la tabla
+     */
+    private record ResumenRecalculado(String nombre, String tabla, String firma, String carga, String archivoSql) {
+    }
+
+    private static final List<ResumenRecalculado> RECALCULADOS = List.of(
+            new ResumenRecalculado("peliculas_categoria", "resumen_peliculas_categoria",
+                    firma("film_category", "category"),
+                    """
+                    INSERT INTO resumen_peliculas_categoria (categoria, peliculas)
+                    SELECT c.name, COUNT(*) FROM film_category fc JOIN category c ON fc.category_id = c.category_id
+                    GROUP BY c.name""",
+                    "stat_peliculas_por_categoria.sql"),
+            new ResumenRecalculado("clientes_pais", "resumen_clientes_pais",
+                    firma("customer", "address", "city", "country"),
+                    """
+                    INSERT INTO resumen_clientes_pais (country, clientes)
+                    SELECT country.country, COUNT(customer.customer_id)
+                    FROM customer
+                    JOIN address ON customer.address_id = address.address_id
+                    JOIN city ON address.city_id = city.city_id
+                    JOIN country ON city.country_id = country.country_id
+                    GROUP BY country.country""",
+                    "stat_clientes_por_pais.sql")
+    );
+
+    private final AtomicBoolean actualizacionPedida = new AtomicBoolean();
+    private final ExecutorService segundoPlano = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final DataSource origenDeDatos;
+    private final CacheEstadisticas cacheEstadisticas;
+    private final CacheResultadosSQL cacheResultados;
+    private final CatalogoEsquema catalogoEsquema;
+    private final MetricasConsultas metricas;
+    private final int tamanioLote;
+    private final long retrasoSeguridadSegundos;
+    private final boolean reconstruirAlArrancar;
+
+    /**
+     * Constructor que permite la inyección de dependencias.
+     *
+     * @param origenDeDatos Fuente de datos JDBC
+     * @param cacheEstadisticas Caché del dashboard, que se invalida cuando cambia un resumen
+     * @param cacheResultados Caché de SELECT directas, que se invalida cuando cambia un resumen
+     * @param catalogoEsquema Catálogo del esquema, que recoge las tablas de resumen al crearlas
+     * @param metricas Métricas de latencia de cada paso
+     * @param tamanioLote Número máximo de alquileres nuevos que se procesan por transacción
+     * @param retrasoSeguridad Antigüedad mínima de un alquiler para que la marca de agua lo pase
+     * @param reconstruirAlArrancar true para recalcular todos los resumenes desde cero al arrancar
+     */
+    public ServicioResumenes(DataSource origenDeDatos, CacheEstadisticas cacheEstadisticas,
+                             CacheResultadosSQL cacheResultados, CatalogoEsquema catalogoEsquema,
+                             MetricasConsultas metricas,
+                             @Value("${resumenes.tamanio-lote:50000}") int tamanioLote,
+                             @Value("${resumenes.retraso-seguridad:PT5M}") Duration retrasoSeguridad,
+                             @Value("${resumenes.reconstruir-al-arrancar:false}") boolean reconstruirAlArrancar) {
+        this.origenDeDatos = origenDeDatos;
+        this.cacheEstadisticas = cacheEstadisticas;
+        this.cacheResultados = cacheResultados;
+        this.catalogoEsquema = catalogoEsquema;
+        this.metricas = metricas;
+        this.tamanioLote = Math.max(tamanioLote, 1);
+        this.retrasoSeguridadSegundos = Math.max(retrasoSeguridad.toSeconds(), 0);
+        this.reconstruirAlArrancar = reconstruirAlArrancar;
+    }
+
+    /**
+     * Crea las tablas de resumen si no existen y las pone al día (o las reconstruye) al arrancar.
+     * Se ejecuta antes del calentamiento de arranque, que consulta estas tablas.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(0)
+    public void prepararAlArrancar() {
+        try (Connection conexion = origenDeDatos.getConnection();
+             Statement sentencia = conexion.createStatement()) {
+            for (String tabla : TABLAS) sentencia.execute(tabla);
+            catalogoEsquema.marcarDesactualizado();
+        } catch (SQLException ex) {
+            logger.log(Level.WARNING, "No se pudieron crear las tablas de resumen del dashboard", ex);
+            return;
+        }
+        if (!reconstruirAlArrancar) {
+            actualizar();
+            return;
+        }
+        try {
+            reconstruir();
+        } catch (SQLException ex) {
+            logger.log(Level.WARNING, "No se pudieron reconstruir los resumenes del dashboard", ex);
+        }
+    }
+
+    /**
+     * Avanza todos los resumenes. Se llama periódicamente y al terminar un script que modifica
+     * datos; un fallo en un resumen se registra y no impide avanzar los demás.
+     */
+    @Scheduled(fixedDelayString = "${resumenes.intervalo:PT1M}", initialDelayString = "${resumenes.intervalo:PT1M}")
+    public synchronized void actualizar() {
+        try {
+            if (avanzarAlquileres()) {
+                cacheResultados.invalidarTablas(Set.of("resumen_alquileres_dia", "resumen_alquileres_mes"));
+                cacheEstadisticas.invalidar("stat_alquileres_por_mes.sql");
+            }
+        } catch (SQLException ex) {
+            logger.log(Level.WARNING, "No se pudo avanzar el resumen de alquileres", ex);
+        }
+        for (ResumenRecalculado resumen : RECALCULADOS) {
+            try {
+                if (recalcularSiCambia(resumen)) {
+                    cacheResultados.invalidarTablas(Set.of(resumen.tabla()));
+                    cacheEstadisticas.invalidar(resumen.archivoSql());
+                }
+            } catch (SQLException ex) {
+                logger.log(Level.WARNING, "No se pudo recalcular el resumen " + resumen.tabla(), ex);
+            }
+        }
+    }
+
+    /**
+     * Pide un avance de los resumenes sin esperar a que termine, para no bloquear a quien lo pide.
+     * Si ya hay uno pedido que aún no ha empezado no se pide otro: ese verá los mismos cambios.
+     */
+    public void actualizarEnSegundoPlano() {
+        if (!actualizacionPedida.compareAndSet(false, true)) return;
+        segundoPlano.execute(() -> {
+            synchronized (this) {
+                actualizacionPedida.set(false);
+                actualizar();
+            }
+        });
+    }
+
+    /**
+     * Cierra el ejecutor al parar la aplicación.
+     */
+    @PreDestroy
+    public void cerrar() {
+        segundoPlano.shutdownNow();
+    }
+
+    /**
+     * Vacía los resumenes y sus marcas y los vuelve a calcular desde las tablas originales.
+     * Sirve si se han borrado o cambiado alquileres ya resumidos
+     * ({@code resumenes.reconstruir-al-arrancar}).
+     *
+     * @throws SQLException si falla el vaciado
+     */
+    public synchronized void reconstruir() throws SQLException {
+        try (Connection conexion = origenDeDatos.getConnection();
+             Statement sentencia = conexion.createStatement()) {
+            conexion.setAutoCommit(false);
+            try {
+                sentencia.executeUpdate("DELETE FROM resumen_alquileres_dia");
+                sentencia.executeUpdate("DELETE FROM resumen_alquileres_mes");
+                sentencia.executeUpdate("DELETE FROM resumen_marca");
+                conexion.commit();
+            } catch (SQLException ex) {
+                conexion.rollback();
+                throw ex;
+            } finally {
+                conexion.setAutoCommit(true);
+            }
+        }
+        actualizar();
+    }
+
+    /**
+     * Agrupa los alquileres posteriores a la marca de agua, por lotes de {@code tamanioLote} ids,
+     * sin pasar de los que tienen más antigüedad que el retraso de seguridad.
+     *
+     * @return true si había alquileres nuevos
+     */
+    private boolean avanzarAlquileres() throws SQLException {
+        boolean cambiado = false;
+        try (Connection conexion = origenDeDatos.getConnection()) {
+            conexion.setAutoCommit(false);
+            try {
+                while (true) {
+                    long desde = bloquearMarca(conexion, MARCA_ALQUILERES).ultimoId();
+                    long maximo;
+                    try (PreparedStatement ps = conexion.prepareStatement(MAXIMO_ALQUILER_SEGURO)) {
+                        ps.setLong(1, desde);
+                        ps.setLong(2, retrasoSeguridadSegundos);
+                        try (ResultSet rs = ps.executeQuery()) {
+                            rs.next();
+                            maximo = rs.getLong(1);
+                        }
+                    }
+                    if (maximo <= desde) {
+                        conexion.commit();
+                        return cambiado;
+                    }
+                    long hasta = Math.min(maximo, desde + tamanioLote);
+                    String descripcion = "rental_id de " + (desde + 1) + " a " + hasta;
+                    metricas.medir("resumen", "alquileres", descripcion, () -> {
+                        for (String sql : List.of(ALQUILERES_POR_DIA, ALQUILERES_POR_MES)) {
+                            try (PreparedStatement ps = conexion.prepareStatement(sql)) {
+                                ps.setLong(1, desde);
+                                ps.setLong(2, hasta);
+                                ps.executeUpdate();
+                            }
+                        }
+                        return null;
+                    });
+                    try (PreparedStatement ps = conexion.prepareStatement(
+                            "UPDATE resumen_marca SET ultimo_id = ? WHERE resumen = ?")) {
+                        ps.setLong(1, hasta);
+                        ps.setString(2, MARCA_ALQUILERES);
+                        ps.executeUpdate();
+                    }
+                    conexion.commit();
+                    cambiado = true;
+                }
+            } catch (SQLException | RuntimeException ex) {
+                conexion.rollback();
+                throw ex;
+            } finally {
+                conexion.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * Consulta de firma de las tablas de origen: por cada una, su número de filas, su último
+     * {@code last_update} y si ese último cambio es del segundo en curso (un 1 que pasa a 0 en la
+     * pasada siguiente, y así recoge lo que cambie después dentro del mismo segundo).
+     */
+    private static String firma(String... tablas) {
+        StringJoiner partes = new StringJoiner(", ", "SELECT CONCAT_WS('|', ", ")");
+        for (String tabla : tablas) {
+            partes.add("(SELECT COUNT(*) FROM " + tabla + ")")
+                    .add("(SELECT MAX(last_update) FROM " + tabla + ")")
+                    .add("(SELECT MAX(last_update) >= CURRENT_TIMESTAMP FROM " + tabla + ")");
+        }
+        return partes.toString();
+    }
+
+    /**
+     * Recalcula un resumen si la firma de sus tablas de origen ha cambiado desde la última vez.
+     *
+     * @return true si se ha recalculado
+     */
+    private boolean recalcularSiCambia(ResumenRecalculado resumen) throws SQLException {
+        try (Connection conexion = origenDeDatos.getConnection()) {
+            conexion.setAutoCommit(false);
+            try {
+                Marca marca = bloquearMarca(conexion, resumen.nombre());
+                String firma;
+                try (Statement sentencia = conexion.createStatement();
+                     ResultSet rs = sentencia.executeQuery(resumen.firma())) {
+                    rs.next();
+                    firma = rs.getString(1);
+                }
+                if (Objects.equals(firma, marca.firma())) {
+                    conexion.commit();
+                    return false;
+                }
+                metricas.medir("resumen", resumen.nombre(), resumen.carga(), () -> {
+                    try (Statement sentencia = conexion.createStatement()) {
+                        sentencia.executeUpdate("DELETE FROM " + resumen.tabla());
+                        return sentencia.executeUpdate(resumen.carga());
+                    }
+                });
+                try (PreparedStatement ps = conexion.prepareStatement(
+                        "UPDATE resumen_marca SET firma = ? WHERE resumen = ?")) {
+                    ps.setString(1, firma);
+                    ps.setString(2, resumen.nombre());
+                    ps.executeUpdate();
+                }
+                conexion.commit();
+                return true;
+            } catch (SQLException | RuntimeException ex) {
+                conexion.rollback();
+                throw ex;
+            } finally {
+                conexion.setAutoCommit(true);
+            }
+        }
+    }
+
+    private record Marca(long ultimoId, String firma) {
+    }
+
+    /**
+     * Lee la marca de un resumen bloqueando su fila hasta el final de la transacción.
+     * Si no existe, la crea vacía.
+     */
+    private static Marca bloquearMarca(Connection conexion, String resumen) throws SQLException {
+        try (PreparedStatement ps = conexion.prepareStatement("INSERT IGNORE INTO resumen_marca (resumen) VALUES (?)")) {
+            ps.setString(1, resumen);
+            ps.executeUpdate();
+        }
+        try (PreparedStatement ps = conexion.prepareStatement(
+                "SELECT ultimo_id, firma FROM resumen_marca WHERE resumen = ? FOR UPDATE")) {
+            ps.setString(1, resumen);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return new Marca(rs.getLong(1), rs.getString(2));
+            }
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package com.santjosepobrero.basededatos.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Servicio que ejecuta en segundo plano los scripts SQL subidos y las importaciones de CSV.
+ * <p>
+ * Cada script se copia a un archivo temporal (el de la subida se borra al acabar la petición)
+ * y se ejecuta en un hilo virtual, así la petición responde enseguida con el id del trabajo
+ * y los hilos del servidor quedan libres para /tabla y /dashboard. Un semáforo limita cuántos
+ * trabajos usan conexiones a la vez; el resto esperan en cola.
+ * <p>
+ * Cada trabajo tiene un tiempo máximo: al superarlo se cancela la sentencia en curso.
+ * Los trabajos terminados se conservan un tiempo para poder consultar su resultado.
+ */
+@Service
+public class ServicioTrabajosSQL {
+
+    private static final Logger logger = Logger.getLogger(ServicioTrabajosSQL.class.getName());
+
+    private final EjecutorScriptSQL ejecutorScriptSQL;
+    private final ImportadorCSV importadorCSV;
+    private final ProveedorConteoFilas proveedorConteoFilas;
+    private final CatalogoEsquema catalogoEsquema;
+    private final ServicioResumenes servicioResumenes;
+    private final TaskScheduler planificador;
+    private final ExecutorService ejecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore trabajosSimultaneos;
+    private final Duration tiempoMaximoTrabajo;
+    private final Duration retencion;
+    private final Map<String, TrabajoSQL> trabajos = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor que permite la inyección de dependencias.
+     *
+     * @param ejecutorScriptSQL Ejecutor de scripts SQL
+     * @param importadorCSV Importador de archivos CSV y TSV
+     * @param proveedorConteoFilas Proveedor de conteos, que se invalida si el script cambia datos
+     * @param catalogoEsquema Catálogo del esquema, que se invalida si el script cambia datos
+     * @param servicioResumenes Resumenes del dashboard, que se avanzan si el script cambia datos
+     * @param planificador Planificador de Spring, para cancelar los trabajos que superan su tiempo máximo
+     * @param maximoSimultaneos Trabajos que pueden ejecutarse a la vez
+     * @param tiempoMaximoTrabajo Tiempo máximo de un trabajo completo
+     * @param retencion Tiempo que se conserva un trabajo terminado
+     */
+    public ServicioTrabajosSQL(EjecutorScriptSQL ejecutorScriptSQL, ImportadorCSV importadorCSV,
+                               ProveedorConteoFilas proveedorConteoFilas,
+                               CatalogoEsquema catalogoEsquema, ServicioResumenes servicioResumenes,
+                               TaskScheduler planificador,
+                               @Value("${trabajos.maximo-simultaneos:2}") int maximoSimultaneos,
+                               @Value("${trabajos.tiempo-maximo:PT30M}") Duration tiempoMaximoTrabajo,
+                               @Value("${trabajos.retencion:PT1H}") Duration retencion) {
+        this.ejecutorScriptSQL = ejecutorScriptSQL;
+        this.importadorCSV = importadorCSV;
+        this.proveedorConteoFilas = proveedorConteoFilas;
+        this.catalogoEsquema = catalogoEsquema;
+        this.servicioResumenes = servicioResumenes;
+        this.planificador = planificador;
+        this.trabajosSimultaneos = new Semaphore(Math.max(1, maximoSimultaneos));
+        this.tiempoMaximoTrabajo = tiempoMaximoTrabajo;
+        this.retencion = retencion;
+    }
+
+    /**
+     * Crea un trabajo para un script subido y lo pone en cola.
+     *
+     * @param nombreArchivo Nombre del archivo subido
+     * @param contenido Contenido del archivo
+     * @param transaccion true para ejecutar todo el script en una única transacción
+     * @return Trabajo creado
+     * @throws IOException si no se puede copiar el archivo
+     */
+    public TrabajoSQL crear(String nombreArchivo, InputStream contenido, boolean transaccion) throws IOException {
+        Path temporal = copiarATemporal(contenido, ".sql");
+        TrabajoSQL trabajo = new TrabajoSQL(UUID.randomUUID().toString(), nombreArchivo,
+                Files.size(temporal), transaccion, null);
+        encolar(trabajo, temporal, (script, resultado) ->
+                ejecutorScriptSQL.ejecutar(script, trabajo.isTransaccion(), resultado));
+        return trabajo;
+    }
+
+    /**
+     * Crea un trabajo que importa un archivo CSV o TSV en una tabla y lo pone en cola.
+     *
+     * @param nombreArchivo Nombre del archivo subido
+     * @param contenido Contenido del archivo, con los nombres de las columnas en la primera fila
+     * @param tabla Tabla de destino
+     * @param separador Separador de campos
+     * @return Trabajo creado
+     * @throws IOException si no se puede copiar el archivo
+     */
+    public TrabajoSQL crearImportacion(String nombreArchivo, InputStream contenido, String tabla, char separador)
+            throws IOException {
+        Path temporal = copiarATemporal(contenido, ".csv");
+        TrabajoSQL trabajo = new TrabajoSQL(UUID.randomUUID().toString(), nombreArchivo,
+                Files.size(temporal), false, tabla);
+        encolar(trabajo, temporal, (archivo, resultado) ->
+                importadorCSV.importar(archivo, tabla, separador, resultado));
+        return trabajo;
+    }
+
+    private Path copiarATemporal(InputStream contenido, String extension) throws IOException {
+        Path temporal = Files.createTempFile("trabajo-sql-", extension);
+        try {
+            Files.copy(contenido, temporal, StandardCopyOption.REPLACE_EXISTING);
+            return temporal;
+        } catch (IOException | RuntimeException ex) {
+            Files.deleteIfExists(temporal);
+            throw ex;
+        }
+    }
+
+    private void encolar(TrabajoSQL trabajo, Path archivo, Tarea tarea) throws IOException {
+        try {
+            trabajos.put(trabajo.getId(), trabajo);
+            ejecutor.execute(() -> ejecutar(trabajo, archivo, tarea));
+        } catch (RuntimeException ex) {
+            trabajos.remove(trabajo.getId());
+            Files.deleteIfExists(archivo);
+            throw ex;
+        }
+    }
+
+    /**
+     * @param id Identificador del trabajo
+     * @return Trabajo, o null si no existe o ya se ha descartado
+     */
+    public TrabajoSQL buscar(String id) {
+        return id == null ? null : trabajos.get(id);
+    }
+
+    /**
+     * @return Trabajos conservados, del más reciente al más antiguo
+     */
+    public List<TrabajoSQL> listar() {
+        List<TrabajoSQL> lista = new ArrayList<>(trabajos.values());
+        lista.sort(Comparator.comparing(TrabajoSQL::getCreado).reversed());
+        return lista;
+    }
+
+    /**
+     * Pide la cancelación de un trabajo.
+     *
+     * @param id Identificador del trabajo
+     * @return true si el trabajo existe
+     */
+    public boolean cancelar(String id) {
+        TrabajoSQL trabajo = buscar(id);
+        if (trabajo == null) return false;
+        trabajo.cancelar();
+        return true;
+    }
+
+    /**
+     * Ejecuta un trabajo en su hilo virtual, esperando turno si hay demasiados en marcha.
+     */
+    private void ejecutar(TrabajoSQL trabajo, Path archivo, Tarea tarea) {
+        ScheduledFuture<?> limite = null;
+        boolean conPermiso = false;
+        try {
+            trabajosSimultaneos.acquire();
+            conPermiso = true;
+            if (trabajo.getResultado().isCancelado()) {
+                trabajo.fallar("No llegó a ejecutarse.");
+                return;
+            }
+            trabajo.iniciar();
+            limite = planificador.schedule(trabajo::agotarTiempo, Instant.now().plus(tiempoMaximoTrabajo));
+            try (Reader entrada = new InputStreamReader(new EntradaContada(Files.newInputStream(archivo), trabajo),
+                    StandardCharsets.UTF_8)) {
+                tarea.ejecutar(entrada, trabajo.getResultado());
+            }
+            trabajo.completar();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            trabajo.cancelar();
+            trabajo.fallar("La aplicación se está deteniendo.");
+        } catch (IOException ex) {
+            trabajo.fallar("No se pudo leer el archivo: " + ex.getMessage());
+        } catch (Exception ex) {
+            trabajo.fallar(ex.getMessage());
+            logger.log(Level.FINE, "Trabajo SQL " + trabajo.getId() + " terminado con error", ex);
+        } finally {
+            if (limite != null) limite.cancel(false);
+            if (conPermiso) trabajosSimultaneos.release();
+            if (trabajo.getEstado() != EstadoTrabajo.COMPLETADO || trabajo.getResultado().hayModificaciones()) {
+                // El script o la importación han podido cambiar filas o tablas: los conteos y el catálogo dejan de valer
+                // y los resumenes del dashboard pueden tener filas nuevas que agrupar
+                proveedorConteoFilas.invalidarTodo();
+                catalogoEsquema.marcarDesactualizado();
+                servicioResumenes.actualizarEnSegundoPlano();
+            }
+            try {
+                Files.deleteIfExists(archivo);
+            } catch (IOException ex) {
+                logger.log(Level.WARNING, "No se pudo borrar el archivo temporal " + archivo, ex);
+            }
+        }
+    }
+
+    /**
+     * Descarta los trabajos terminados hace más tiempo que la retención configurada.
+     */
+    @Scheduled(fixedDelayString = "${trabajos.intervalo-limpieza:PT5M}")
+    public void descartarTerminados() {
+        Instant limite = Instant.now().minus(retencion);
+        trabajos.values().removeIf(trabajo -> trabajo.getEstado().isTerminado()
+                && trabajo.getTerminado() != null && trabajo.getTerminado().isBefore(limite));
+    }
+
+    /**
+     * Cancela los trabajos pendientes y cierra el ejecutor al parar la aplicación.
+     */
+    @PreDestroy
+    public void cerrar() {
+        trabajos.values().forEach(TrabajoSQL::cancelar);
+        ejecutor.shutdownNow();
+    }
+
+    /**
+     * Lo que ejecuta un trabajo con el contenido del archivo subido.
+     */
+    @FunctionalInterface
+    private interface Tarea {
+        void ejecutar(Reader entrada, ResultadoScript resultado) throws SQLException, IOException;
+    }
+
+    /**
+     * Flujo de entrada que anota en el trabajo cuántos bytes del archivo se han leído.
+     */
+    private static class EntradaContada extends FilterInputStream {
+
+        private final TrabajoSQL trabajo;
+
+        EntradaContada(InputStream entrada, TrabajoSQL trabajo) {
+            super(entrada);
+            this.trabajo = trabajo;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int leido = super.read();
+            if (leido != -1) trabajo.sumarBytesLeidos(1);
+            return leido;
+        }
+
+        @Override
+        public int read(byte[] destino, int desde, int longitud) throws IOException {
+            int leidos = super.read(destino, desde, longitud);
+            if (leidos > 0) trabajo.sumarBytesLeidos(leidos);
+            return leidos;
+        }
+    }
+}
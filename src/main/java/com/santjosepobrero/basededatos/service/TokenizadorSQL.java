@@ -0,0 +1,180 @@
+package com.santjosepobrero.basededatos.service;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Separa un script SQL en sentencias leyendo el texto poco a poco.
+ * <p>
+ * A diferencia de partir el texto por ';', entiende los literales ('...', "..."),
+ * los identificadores entre comillas invertidas y los comentarios (--, # y barra-asterisco),
+ * así que un ';' dentro de un literal o de un comentario no corta la sentencia. Los
+ * comentarios se eliminan. Solo se guarda en memoria la sentencia que se está leyendo,
+ * con un tamaño máximo configurable.
+ * <p>
+ * No admite el comando DELIMITER del cliente de MariaDB.
+ */
+public class TokenizadorSQL {
+
+    private static final int TAMANIO_BUFFER = 8192;
+
+    private final Reader entrada;
+    private final int longitudMaxima;
+    private final char[] buffer = new char[TAMANIO_BUFFER];
+    private int posicion;
+    private int limite;
+    private boolean finDeEntrada;
+
+    /**
+     * @param entrada Texto del script
+     * @param longitudMaxima Número máximo de caracteres de una sentencia
+     */
+    public TokenizadorSQL(Reader entrada, int longitudMaxima) {
+        this.entrada = entrada;
+        this.longitudMaxima = longitudMaxima;
+    }
+
+    /**
+     * Lee la siguiente sentencia del script.
+     *
+     * @return Sentencia sin comentarios ni espacios sobrantes, o null si no quedan más
+     * @throws IOException si falla la lectura, un literal o comentario no se cierra
+     *                     o la sentencia supera la longitud máxima
+     */
+    public String siguiente() throws IOException {
+        StringBuilder sentencia = new StringBuilder();
+        int c;
+        while ((c = leer()) != -1) {
+            char caracter = (char) c;
+            switch (caracter) {
+                case ';' -> {
+                    String texto = sentencia.toString().trim();
+                    if (!texto.isEmpty()) return texto;
+                    sentencia.setLength(0);
+                }
+                case '\'', '"', '`' -> copiarLiteral(caracter, sentencia);
+                case '#' -> {
+                    saltarHastaFinDeLinea();
+                    sentencia.append(' ');
+                }
+                case '-' -> {
+                    // "-- " es comentario; "-" sin más (resta, número negativo) no
+                    if (mirar() == '-' && esEspacioOFin(mirar(1))) {
+                        saltarHastaFinDeLinea();
+                        sentencia.append(' ');
+                    } else {
+                        anadir(sentencia, caracter);
+                    }
+                }
+                case '/' -> {
+                    if (mirar() == '*') {
+                        leer();
+                        saltarComentarioDeBloque();
+                        sentencia.append(' ');
+                    } else {
+                        anadir(sentencia, caracter);
+                    }
+                }
+                default -> anadir(sentencia, caracter);
+            }
+        }
+        String texto = sentencia.toString().trim();
+        return texto.isEmpty() ? null : texto;
+    }
+
+    /**
+     * Copia un literal o identificador entre comillas, respetando las comillas dobladas
+     * y, fuera de los identificadores, las barras invertidas de escape.
+     */
+    private void copiarLiteral(char comilla, StringBuilder sentencia) throws IOException {
+        anadir(sentencia, comilla);
+        int c;
+        while ((c = leer()) != -1) {
+            char caracter = (char) c;
+            anadir(sentencia, caracter);
+            if (caracter == '\\' && comilla != '`') {
+                int escapado = leer();
+                if (escapado == -1) break;
+                anadir(sentencia, (char) escapado);
+            } else if (caracter == comilla) {
+                if (mirar() == comilla) {
+                    anadir(sentencia, (char) leer());
+                } else {
+                    return;
+                }
+            }
+        }
+        throw new IOException("Literal sin cerrar en el script SQL (falta " + comilla + ").");
+    }
+
+    private void saltarHastaFinDeLinea() throws IOException {
+        int c;
+        while ((c = leer()) != -1) {
+            if (c == '\n') return;
+        }
+    }
+
+    private void saltarComentarioDeBloque() throws IOException {
+        int c;
+        while ((c = leer()) != -1) {
+            if (c == '*' && mirar() == '/') {
+                leer();
+                return;
+            }
+        }
+        throw new IOException("Comentario /* sin cerrar en el script SQL.");
+    }
+
+    private void anadir(StringBuilder sentencia, char caracter) throws IOException {
+        if (sentencia.length() >= longitudMaxima) {
+            throw new IOException("Una sentencia del script supera el máximo de " + longitudMaxima + " caracteres.");
+        }
+        sentencia.append(caracter);
+    }
+
+    private static boolean esEspacioOFin(int c) {
+        return c == -1 || Character.isWhitespace(c);
+    }
+
+    private int leer() throws IOException {
+        if (posicion >= limite && !rellenar()) return -1;
+        return buffer[posicion++];
+    }
+
+    private int mirar() throws IOException {
+        return mirar(0);
+    }
+
+    /**
+     * Devuelve el carácter situado {@code desplazamiento} posiciones por delante sin consumirlo.
+     */
+    private int mirar(int desplazamiento) throws IOException {
+        while (posicion + desplazamiento >= limite) {
+            if (finDeEntrada) return -1;
+            // Conserva lo pendiente al principio del buffer antes de leer más
+            int pendientes = limite - posicion;
+            System.arraycopy(buffer, posicion, buffer, 0, pendientes);
+            posicion = 0;
+            limite = pendientes;
+            int leidos = entrada.read(buffer, limite, buffer.length - limite);
+            if (leidos == -1) {
+                finDeEntrada = true;
+                return -1;
+            }
+            limite += leidos;
+        }
+        return buffer[posicion + desplazamiento];
+    }
+
+    private boolean rellenar() throws IOException {
+        if (finDeEntrada) return false;
+        int leidos = entrada.read(buffer, 0, buffer.length);
+        if (leidos == -1) {
+            finDeEntrada = true;
+            return false;
+        }
+        posicion = 0;
+        limite = leidos;
+        return true;
+    }
+}
@@ -0,0 +1,160 @@
+package com.santjosepobrero.basededatos.service;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Script SQL o archivo CSV subido que se ejecuta en segundo plano con {@link ServicioTrabajosSQL}.
+ * <p>
+ * Lo consultan a la vez el hilo que lo ejecuta y las peticiones que muestran su progreso,
+ * por eso el estado se guarda en campos volatile.
+ */
+public class TrabajoSQL {
+
+    private final String id;
+    private final String nombreArchivo;
+    private final long tamanioBytes;
+    private final boolean transaccion;
+    private final String tablaImportacion;
+    private final Instant creado = Instant.now();
+    private final ResultadoScript resultado = new ResultadoScript();
+
+    private volatile EstadoTrabajo estado = EstadoTrabajo.EN_COLA;
+    private volatile Instant iniciado;
+    private volatile Instant terminado;
+    private volatile long bytesLeidos;
+    private volatile boolean tiempoAgotado;
+    private volatile String error;
+
+    /**
+     * @param id Identificador del trabajo
+     * @param nombreArchivo Nombre del archivo subido
+     * @param tamanioBytes Tamaño del archivo, para calcular el porcentaje leído
+     * @param transaccion true si el script se ejecuta en una única transacción
+     * @param tablaImportacion Tabla en la que se importa el archivo CSV, o null si es un script SQL
+     */
+    TrabajoSQL(String id, String nombreArchivo, long tamanioBytes, boolean transaccion, String tablaImportacion) {
+        this.id = id;
+        this.nombreArchivo = nombreArchivo;
+        this.tamanioBytes = tamanioBytes;
+        this.transaccion = transaccion;
+        this.tablaImportacion = tablaImportacion;
+    }
+
+    void iniciar() {
+        iniciado = Instant.now();
+        estado = EstadoTrabajo.EJECUTANDO;
+    }
+
+    void sumarBytesLeidos(long bytes) {
+        bytesLeidos += bytes;
+    }
+
+    void completar() {
+        terminar(EstadoTrabajo.COMPLETADO, null);
+    }
+
+    /**
+     * Termina el trabajo con error. Si se había pedido cancelar o se agotó el tiempo,
+     * el estado lo refleja en lugar de un fallo genérico.
+     */
+    void fallar(String mensaje) {
+        if (tiempoAgotado) {
+            terminar(EstadoTrabajo.TIEMPO_AGOTADO, "El trabajo superó su tiempo máximo y se canceló. " + mensaje);
+        } else if (resultado.isCancelado()) {
+            terminar(EstadoTrabajo.CANCELADO, "Trabajo cancelado. " + mensaje);
+        } else {
+            terminar(EstadoTrabajo.FALLIDO, mensaje);
+        }
+    }
+
+    private void terminar(EstadoTrabajo estadoFinal, String mensaje) {
+        error = mensaje;
+        terminado = Instant.now();
+        estado = estadoFinal;
+    }
+
+    /**
+     * Cancela el trabajo: si está en cola no llega a empezar y si está en marcha
+     * se cancela la sentencia en curso.
+     */
+    public void cancelar() {
+        resultado.cancelar();
+    }
+
+    /**
+     * Cancela el trabajo por haber superado su tiempo máximo.
+     */
+    void agotarTiempo() {
+        tiempoAgotado = true;
+        resultado.cancelar();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getNombreArchivo() {
+        return nombreArchivo;
+    }
+
+    public long getTamanioBytes() {
+        return tamanioBytes;
+    }
+
+    public boolean isTransaccion() {
+        return transaccion;
+    }
+
+    /** @return Tabla de destino si el trabajo es una importación de CSV, o null si es un script SQL */
+    public String getTablaImportacion() {
+        return tablaImportacion;
+    }
+
+    public boolean isImportacion() {
+        return tablaImportacion != null;
+    }
+
+    public EstadoTrabajo getEstado() {
+        return estado;
+    }
+
+    public Instant getCreado() {
+        return creado;
+    }
+
+    public Instant getIniciado() {
+        return iniciado;
+    }
+
+    public Instant getTerminado() {
+        return terminado;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public ResultadoScript getResultado() {
+        return resultado;
+    }
+
+    /**
+     * @return Porcentaje del archivo leído (0-100)
+     */
+    public int getPorcentaje() {
+        if (estado == EstadoTrabajo.COMPLETADO) return 100;
+        if (tamanioBytes <= 0) return 0;
+        return (int) Math.min(100, bytesLeidos * 100 / tamanioBytes);
+    }
+
+    /**
+     * @return Tiempo que lleva (o llevó) en ejecución, o null si aún no ha empezado
+     */
+    public Duration getDuracion() {
+        Instant inicio = iniciado;
+        if (inicio == null) return null;
+        Instant fin = terminado;
+        return Duration.between(inicio, fin != null ? fin : Instant.now());
+    }
+}
@@ -1,3 +1,3 @@
-SELECT DATE_FORMAT(rental_date,'%Y-%m') as mes, COUNT(*) as alquileres
-FROM rental
-GROUP BY DATE_FORMAT(rental_date,'%Y-%m');
\ No newline at end of file
+SELECT mes, alquileres
+FROM resumen_alquileres_mes
+ORDER BY mes;
\ No newline at end of file
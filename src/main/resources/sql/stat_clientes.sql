@@ -1 +0,0 @@
-SELECT COUNT(*) AS total FROM customer;
\ No newline at end of file
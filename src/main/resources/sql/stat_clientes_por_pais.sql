@@ -1,6 +1,2 @@
-SELECT country.country, COUNT(customer.customer_id) as clientes
-FROM customer
-JOIN address ON customer.address_id = address.address_id
-JOIN city ON address.city_id = city.city_id
-JOIN country ON city.country_id = country.country_id
-GROUP BY country.country;
\ No newline at end of file
+SELECT country, clientes
+FROM resumen_clientes_pais;
\ No newline at end of file
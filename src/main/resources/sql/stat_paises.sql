@@ -1 +0,0 @@
-SELECT COUNT(*) AS total FROM country;
\ No newline at end of file
@@ -1 +0,0 @@
-SELECT COUNT(*) AS total FROM film;
\ No newline at end of file
@@ -1,4 +1,2 @@
-SELECT c.name as categoria, COUNT(*) as peliculas
-FROM film_category fc
-JOIN category c ON fc.category_id = c.category_id
-GROUP BY c.name;
\ No newline at end of file
+SELECT categoria, peliculas
+FROM resumen_peliculas_categoria;
\ No newline at end of file
@@ -0,0 +1,3 @@
+SELECT (SELECT COUNT(*) FROM customer) AS clientes,
+       (SELECT COUNT(*) FROM country) AS paises,
+       (SELECT COUNT(*) FROM film) AS peliculas;
\ No newline at end of file
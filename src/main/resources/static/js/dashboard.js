@@ -1,15 +1,26 @@
-document.addEventListener('DOMContentLoaded', () => {
+document.addEventListener('DOMContentLoaded', async () => {
 
     const colores = ['#4e73df', '#1cc88a', '#36b9cc', '#f6c23e', '#e74a3b', '#858796', '#5a5c69', '#2e59d9', '#17a673', '#2c9faf'];
 
-    function crearChart(canvasId, dataArray, label, tipo = 'bar') {
-        if (!dataArray || !dataArray.length) return; // Si no hay datos, salir
+    // Gráfico de cada serie: canvas, título y tipo
+    const graficos = {
+        filmsPorRating: { canvas: 'chartRating', label: 'Películas por Rating' },
+        actoresInicial: { canvas: 'chartActores', label: 'Actores por letra inicial' },
+        filmsPorCategoria: { canvas: 'chartCategorias', label: 'Películas por Categoría' },
+        alquileresMes: { canvas: 'chartAlquileres', label: 'Alquileres por mes', tipo: 'line' },
+        clientesPais: { canvas: 'chartClientesPais', label: 'Clientes por país' }
+    };
+    const charts = {};
+
+    // Las series llegan por columnas: {columnas: [...], filas: n, valores: [[col0...], [col1...]]}
+    function crearChart(canvasId, serie, label, tipo = 'bar') {
+        if (!serie || !serie.filas) return null; // Si no hay datos (o la consulta falló), salir
 
         const ctx = document.getElementById(canvasId).getContext('2d');
-        const labels = dataArray.map(row => row[0]);
-        const data = dataArray.map(row => Number(row[1] || 0));
+        const labels = serie.valores[0];
+        const data = serie.valores[1].map(valor => Number(valor || 0));
 
-        new Chart(ctx, {
+        return new Chart(ctx, {
             type: tipo,
             data: {
                 labels: labels,
@@ -31,10 +42,69 @@ document.addEventListener('DOMContentLoaded', () => {
         });
     }
 
-    // Crear todos los gráficos
-    crearChart('chartRating', filmsPorRating['filas'], 'Películas por Rating');
-    crearChart('chartActores', actoresInicial['filas'], 'Actores por letra inicial');
-    crearChart('chartCategorias', filmsPorCategoria['filas'], 'Películas por Categoría');
-    crearChart('chartAlquileres', alquileresMes['filas'], 'Alquileres por mes', 'line');
-    crearChart('chartClientesPais', clientesPais['filas'], 'Clientes por país');
+    // Crea el gráfico de una serie o, si ya existe, cambia sus datos y lo redibuja
+    function pintarSerie(nombre, serie) {
+        const grafico = graficos[nombre];
+        const chart = charts[nombre];
+        if (!chart) {
+            charts[nombre] = crearChart(grafico.canvas, serie, grafico.label, grafico.tipo);
+            return;
+        }
+        if (!serie || !serie.filas) return;
+        chart.data.labels = serie.valores[0];
+        chart.data.datasets[0].data = serie.valores[1].map(valor => Number(valor || 0));
+        chart.update();
+    }
+
+    // Valor de una columna de la primera fila, o 0 si no existe
+    function total(serie, columna) {
+        if (!serie || !serie.filas) return 0;
+        const indice = serie.columnas.findIndex(c => c.toLowerCase() === columna);
+        return indice < 0 ? 0 : Number(serie.valores[indice][0] || 0);
+    }
+
+    function pintarTotales(serie) {
+        document.getElementById('numClientes').textContent = total(serie, 'clientes');
+        document.getElementById('numPeliculas').textContent = total(serie, 'peliculas');
+        document.getElementById('numPaises').textContent = total(serie, 'paises');
+    }
+
+    function mostrarAviso(elemento, texto) {
+        elemento.textContent = (elemento.dataset.prefijo || '') + texto;
+        elemento.classList.remove('d-none');
+    }
+
+    // Muestra los errores actuales y oculta los de las series que ya se han recuperado
+    function pintarErrores(errores) {
+        document.querySelectorAll('[data-error-serie]').forEach(aviso => {
+            const error = errores[aviso.dataset.errorSerie];
+            if (error) mostrarAviso(aviso, error);
+            else aviso.classList.add('d-none');
+        });
+    }
+
+    function pintar(datos) {
+        const series = datos.series || {};
+        pintarErrores(datos.errores || {});
+        if ('totales' in series) pintarTotales(series.totales);
+        Object.keys(graficos).forEach(nombre => {
+            if (nombre in series) pintarSerie(nombre, series[nombre]);
+        });
+    }
+
+    try {
+        // no-cache: el navegador revalida con el ETag y recibe 304 si nada ha cambiado
+        const respuesta = await fetch(document.body.dataset.api, { cache: 'no-cache', headers: { Accept: 'application/json' } });
+        if (!respuesta.ok) throw new Error('HTTP ' + respuesta.status);
+        pintar(await respuesta.json());
+    } catch (error) {
+        mostrarAviso(document.getElementById('errorDashboard'), 'Error inesperado al cargar el dashboard: ' + error.message);
+        return;
+    }
+
+    // Después solo llegan las series que cambian; EventSource reconecta solo si se corta
+    if (window.EventSource && document.body.dataset.eventos) {
+        const eventos = new EventSource(document.body.dataset.eventos);
+        eventos.addEventListener('series', evento => pintar(JSON.parse(evento.data)));
+    }
 });
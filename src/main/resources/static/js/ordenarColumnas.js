@@ -56,7 +56,5 @@ document.addEventListener('DOMContentLoaded', () => {
         initOrdenarColumnas('dataTable' + i);
         i++;
     }
-    if (document.getElementById('dataTable')) {
-        initOrdenarColumnas('dataTable');
-    }
+    // La tabla principal (#dataTable) se ordena en el servidor con los enlaces de sus cabeceras
 });
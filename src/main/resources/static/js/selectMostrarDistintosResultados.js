@@ -21,8 +21,8 @@ function toggleSelectResult(index) {
 
 document.addEventListener('DOMContentLoaded', () => {
     if (document.getElementById('dataTable')) {
+        // La tabla principal se ordena en el servidor
         initMostrarOcultarColumnas('dataTable');
-        initOrdenarColumnas('dataTable');
     }
     let i = 0;
     while (document.getElementById('dataTable' + i)) {
@@ -0,0 +1,201 @@
+package com.santjosepobrero.basededatos.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ControlCosteConsultasTest {
+
+    private final ControlCosteConsultas control = new ControlCosteConsultas(true, 10_000_000, 1_000_000, 1000);
+
+    @Test
+    void noRevisaLoQueNoEsSelect() throws SQLException {
+        ExplainFalso explain = new ExplainFalso();
+        ControlCosteConsultas.Revision revision = control.revisar(explain.sentencia(), "UPDATE film SET rating = 'G'");
+        assertEquals("UPDATE film SET rating = 'G'", revision.getSql());
+        assertNull(revision.getPlan());
+        assertEquals(List.of(), explain.ejecutadas);
+    }
+
+    @Test
+    void deshabilitadoNoEjecutaExplain() throws SQLException {
+        ExplainFalso explain = new ExplainFalso().paso("1", "rental", "ALL", 5_000_000L, null);
+        ControlCosteConsultas sinControl = new ControlCosteConsultas(false, 10_000_000, 1_000_000, 1000);
+        assertEquals("SELECT * FROM rental", sinControl.revisar(explain.sentencia(), "SELECT * FROM rental").getSql());
+        assertEquals(List.of(), explain.ejecutadas);
+    }
+
+    @Test
+    void reconoceWithYSelectEntreParentesis() throws SQLException {
+        ExplainFalso explain = new ExplainFalso().paso("1", null, null, null, "No tables used");
+        control.revisar(explain.sentencia(), "  WITH t AS (SELECT 1) SELECT * FROM t");
+        control.revisar(explain.sentencia(), "( SELECT 1)");
+        assertEquals(List.of("EXPLAIN   WITH t AS (SELECT 1) SELECT * FROM t", "EXPLAIN ( SELECT 1)"), explain.ejecutadas);
+    }
+
+    @Test
+    void dejaPasarLasConsultasBaratas() throws SQLException {
+        ExplainFalso explain = new ExplainFalso().paso("1", "film", "ref", 10L, "Using where");
+        ControlCosteConsultas.Revision revision = control.revisar(explain.sentencia(), "SELECT * FROM film WHERE rating = 'G'");
+        assertEquals("SELECT * FROM film WHERE rating = 'G'", revision.getSql());
+        assertNull(revision.getAviso());
+        assertTrue(revision.getPlan().contains("film ref ≈10 (Using where)"), revision.getPlan());
+    }
+
+    @Test
+    void limitaUnEscaneoCompletoQueDevuelveFilasSegunLee() throws SQLException {
+        ExplainFalso explain = new ExplainFalso().paso("1", "rental", "ALL", 2_000_000L, null);
+        ControlCosteConsultas.Revision revision = control.revisar(explain.sentencia(), "SELECT * FROM rental");
+        assertEquals("SELECT * FROM rental LIMIT 1000", revision.getSql());
+        assertNotNull(revision.getAviso());
+        assertTrue(revision.getAviso().contains("rental"), revision.getAviso());
+    }
+
+    @Test
+    void multiplicaLasFilasDeUnMismoSelectYSumaLasDeDistintos() throws SQLException {
+        ExplainFalso mismoSelect = new ExplainFalso()
+                .paso("1", "film", "index", 5000L, null)
+                .paso("1", "rental", "ref", 5000L, null);
+        assertEquals("SELECT * FROM film JOIN rental LIMIT 1000",
+                control.revisar(mismoSelect.sentencia(), "SELECT * FROM film JOIN rental").getSql());
+
+        ExplainFalso distintos = new ExplainFalso()
+                .paso("1", "film", "index", 5000L, null)
+                .paso("2", "rental", "ref", 5000L, null);
+        ControlCosteConsultas.Revision revision = control.revisar(distintos.sentencia(), "SELECT 1 UNION SELECT 2");
+        assertEquals("SELECT 1 UNION SELECT 2", revision.getSql());
+        assertTrue(revision.getPlan().endsWith("≈10000 filas examinadas"), revision.getPlan());
+    }
+
+    @Test
+    void respetaUnLimitFinalPequeno() throws SQLException {
+        ExplainFalso explain = new ExplainFalso().paso("1", "rental", "ALL", 2_000_000L, null);
+        for (String sql : List.of("SELECT * FROM rental LIMIT 10", "SELECT * FROM rental limit 10, 20",
+                "SELECT * FROM rental LIMIT 20 OFFSET 10")) {
+            ControlCosteConsultas.Revision revision = control.revisar(explain.sentencia(), sql);
+            assertEquals(sql, revision.getSql());
+            assertNull(revision.getAviso());
+        }
+    }
+
+    @Test
+    void unLimitDentroDeUnaSubconsultaNoCuenta() throws SQLException {
+        ExplainFalso explain = new ExplainFalso().paso("1", "rental", "ALL", 2_000_000L, null);
+        String sql = "SELECT * FROM rental WHERE customer_id IN (SELECT customer_id FROM customer LIMIT 5) AND 1 = 1";
+        assertEquals(sql + " LIMIT 1000", control.revisar(explain.sentencia(), sql).getSql());
+    }
+
+    @Test
+    void reduceUnLimitFinalGrande() throws SQLException {
+        ExplainFalso explain = new ExplainFalso().paso("1", "rental", "ALL", 2_000_000L, null);
+        ControlCosteConsultas.Revision revision = control.revisar(explain.sentencia(), "SELECT * FROM rental LIMIT 5000");
+        assertEquals("SELECT * FROM rental LIMIT 1000", revision.getSql());
+        assertTrue(revision.getAviso().startsWith("Consulta limitada a 1000 filas"), revision.getAviso());
+
+        assertEquals("SELECT * FROM rental LIMIT 500, 500",
+                control.revisar(explain.sentencia(), "SELECT * FROM rental LIMIT 500, 600").getSql());
+        revision = control.revisar(explain.sentencia(), "SELECT * FROM rental limit 2000 offset 100 ");
+        assertEquals("SELECT * FROM rental LIMIT 900 OFFSET 100", revision.getSql());
+        assertTrue(revision.getAviso().startsWith("Consulta limitada a 900 filas"), revision.getAviso());
+    }
+
+    @Test
+    void rechazaUnDesplazamientoMayorQueElLimite() {
+        ExplainFalso explain = new ExplainFalso().paso("1", "rental", "ALL", 2_000_000L, null);
+        assertThrows(SQLException.class, () -> control.revisar(explain.sentencia(), "SELECT * FROM rental LIMIT 1000, 10"));
+        assertThrows(SQLException.class, () -> control.revisar(explain.sentencia(), "SELECT * FROM rental LIMIT 10 OFFSET 5000"));
+    }
+
+    @Test
+    void rechazaLasConsultasQueLeenTodoAntesDeDevolver() {
+        ExplainFalso escaneo = new ExplainFalso().paso("1", "rental", "ALL", 2_000_000L, null);
+        for (String sql : List.of("SELECT COUNT(*) FROM rental", "SELECT customer_id, max(rental_date) FROM rental",
+                "SELECT DISTINCT customer_id FROM rental", "SELECT staff_id FROM rental GROUP BY staff_id",
+                "SELECT * FROM rental FOR UPDATE")) {
+            SQLException ex = assertThrows(SQLException.class, () -> control.revisar(escaneo.sentencia(), sql), sql);
+            assertTrue(ex.getMessage().contains("rental"), ex.getMessage());
+        }
+
+        ExplainFalso ordenado = new ExplainFalso().paso("1", "rental", "ALL", 2_000_000L, "Using filesort");
+        assertThrows(SQLException.class,
+                () -> control.revisar(ordenado.sentencia(), "SELECT * FROM rental ORDER BY return_date"));
+    }
+
+    @Test
+    void conLimiteCeroRechazaSiempre() {
+        ControlCosteConsultas sinLimite = new ControlCosteConsultas(true, 10_000_000, 1_000_000, 0);
+        ExplainFalso explain = new ExplainFalso().paso("1", "rental", "ALL", 2_000_000L, null);
+        assertThrows(SQLException.class, () -> sinLimite.revisar(explain.sentencia(), "SELECT * FROM rental"));
+    }
+
+    @Test
+    void losPasosSinFilasNoCuentan() throws SQLException {
+        ExplainFalso explain = new ExplainFalso().paso("1", null, null, null, "Select tables optimized away");
+        ControlCosteConsultas.Revision revision = control.revisar(explain.sentencia(), "SELECT MAX(rental_id) FROM rental");
+        assertEquals("SELECT MAX(rental_id) FROM rental", revision.getSql());
+        assertTrue(revision.getPlan().endsWith("≈0 filas examinadas"), revision.getPlan());
+    }
+
+    /**
+     * Sentencia JDBC que responde a EXPLAIN con los pasos indicados y anota lo que se ejecuta.
+     */
+    private static final class ExplainFalso {
+
+        private final List<Object[]> pasos = new ArrayList<>();
+        private final List<String> ejecutadas = new ArrayList<>();
+
+        ExplainFalso paso(String id, String tabla, String tipo, Long filas, String extra) {
+            pasos.add(new Object[]{id, tabla, tipo, filas, extra});
+            return this;
+        }
+
+        Statement sentencia() {
+            return (Statement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Statement.class},
+                    (proxy, metodo, argumentos) -> {
+                        if (!metodo.getName().equals("executeQuery")) throw new UnsupportedOperationException(metodo.getName());
+                        ejecutadas.add((String) argumentos[0]);
+                        return resultado();
+                    });
+        }
+
+        private ResultSet resultado() {
+            int[] fila = {-1};
+            boolean[] nulo = {false};
+            return (ResultSet) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{ResultSet.class},
+                    (proxy, metodo, argumentos) -> switch (metodo.getName()) {
+                        case "next" -> ++fila[0] < pasos.size();
+                        case "wasNull" -> nulo[0];
+                        case "close" -> null;
+                        case "getString", "getLong" -> {
+                            Object valor = pasos.get(fila[0])[columna((String) argumentos[0])];
+                            nulo[0] = valor == null;
+                            if (metodo.getName().equals("getLong")) yield valor == null ? 0L : valor;
+                            yield valor;
+                        }
+                        default -> throw new UnsupportedOperationException(metodo.getName());
+                    });
+        }
+
+        private static int columna(String nombre) {
+            return switch (nombre) {
+                case "id" -> 0;
+                case "table" -> 1;
+                case "type" -> 2;
+                case "rows" -> 3;
+                case "Extra" -> 4;
+                default -> throw new IllegalArgumentException(nombre);
+            };
+        }
+    }
+}
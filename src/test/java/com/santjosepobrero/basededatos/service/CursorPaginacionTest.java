@@ -0,0 +1,49 @@
+package com.santjosepobrero.basededatos.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CursorPaginacionTest {
+
+    @Test
+    void decodificaLoQueCodifica() {
+        String[] valores = {"12", "a.b", "ñandú, 🦆", ""};
+        CursorPaginacion siguiente = CursorPaginacion.decodificar(CursorPaginacion.codificar(true, valores), 4);
+        assertTrue(siguiente.esHaciaAdelante());
+        assertEquals(List.of(valores), siguiente.getValores());
+
+        CursorPaginacion anterior = CursorPaginacion.decodificar(CursorPaginacion.codificar(false, valores), 4);
+        assertFalse(anterior.esHaciaAdelante());
+        assertEquals(List.of(valores), anterior.getValores());
+    }
+
+    @Test
+    void elCursorSoloLlevaCaracteresSegurosEnUnaUrl() {
+        String cursor = CursorPaginacion.codificar(true, new String[]{"?&=/+ #%"});
+        assertTrue(cursor.matches("[sa](\\.[A-Za-z0-9_-]*)+"), cursor);
+    }
+
+    @Test
+    void rechazaCursoresManipulados() {
+        String valido = CursorPaginacion.codificar(true, new String[]{"1", "2"});
+        assertInvalido(valido, 1);
+        assertInvalido(valido, 3);
+        assertInvalido("x" + valido.substring(1), 2);
+        assertInvalido(valido + ".", 2);
+        assertInvalido("s.MQ.@@", 2);
+        assertInvalido("s.M", 1);
+        assertInvalido("", 1);
+        assertInvalido("s", 1);
+    }
+
+    private static void assertInvalido(String cursor, int columnasClave) {
+        assertThrows(IllegalArgumentException.class, () -> CursorPaginacion.decodificar(cursor, columnasClave),
+                cursor);
+    }
+}
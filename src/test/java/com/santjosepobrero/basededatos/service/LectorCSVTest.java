@@ -0,0 +1,119 @@
+package com.santjosepobrero.basededatos.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LectorCSVTest {
+
+    @Test
+    void leeRegistrosSimples() throws IOException {
+        LectorCSV lector = lector("id,nombre\n1,ANA\n2,LUIS\n", ',');
+        assertArrayEquals(new String[]{"id", "nombre"}, lector.siguiente());
+        assertArrayEquals(new String[]{"1", "ANA"}, lector.siguiente());
+        assertArrayEquals(new String[]{"2", "LUIS"}, lector.siguiente());
+        assertNull(lector.siguiente());
+        assertNull(lector.siguiente());
+    }
+
+    @Test
+    void elUltimoRegistroNoNecesitaSaltoDeLinea() throws IOException {
+        assertEquals(List.of(List.of("a", "b"), List.of("1", "2")), registros("a,b\n1,2", ','));
+    }
+
+    @Test
+    void camposEntreComillasConSeparadorSaltosYComillas() throws IOException {
+        List<List<String>> leidos = registros("\"x,y\",\"linea1\nlinea2\",\"di \"\"hola\"\"\"\n", ',');
+        assertEquals(List.of(List.of("x,y", "linea1\nlinea2", "di \"hola\"")), leidos);
+    }
+
+    @Test
+    void campoVacioEsNullYEntreComillasEsCadenaVacia() throws IOException {
+        LectorCSV lector = lector("1,,\"\"\n2,\n", ',');
+        assertArrayEquals(new String[]{"1", null, ""}, lector.siguiente());
+        assertArrayEquals(new String[]{"2", null}, lector.siguiente());
+    }
+
+    @Test
+    void admiteCrlfYQuitaLaMarcaBom() throws IOException {
+        assertEquals(List.of(List.of("a", "b"), List.of("1", "2")), registros("\uFEFFa;b\r\n1;2\r\n", ';'));
+    }
+
+    @Test
+    void laMarcaBomSoloSeQuitaAlPrincipio() throws IOException {
+        assertEquals(List.of(List.of("a"), List.of("\uFEFFb")), registros("a\n\uFEFFb\n", ','));
+    }
+
+    @Test
+    void leeTabuladores() throws IOException {
+        assertEquals(List.of(List.of("a b", "c,d", "e;f")), registros("a b\tc,d\te;f\n", '\t'));
+    }
+
+    @Test
+    void saltaLasLineasVacias() throws IOException {
+        assertEquals(List.of(List.of("1"), List.of("2")), registros("\n\r\n1\n\n\n2\n\n", ','));
+    }
+
+    @Test
+    void indicaLaLineaEnLaQueEmpiezaCadaRegistro() throws IOException {
+        LectorCSV lector = lector("a\n\"1\n2\"\n\nb\r\nc", ',');
+        lector.siguiente();
+        assertEquals(1, lector.getLineaRegistro());
+        lector.siguiente();
+        assertEquals(2, lector.getLineaRegistro());
+        lector.siguiente();
+        assertEquals(5, lector.getLineaRegistro());
+        lector.siguiente();
+        assertEquals(6, lector.getLineaRegistro());
+    }
+
+    @Test
+    void comillasSinCerrarEsUnError() throws IOException {
+        LectorCSV lector = lector("a\n\"sin cerrar,1\n2\n", ',');
+        lector.siguiente();
+        IOException ex = assertThrows(IOException.class, lector::siguiente);
+        assertTrue(ex.getMessage().contains("línea 2"));
+    }
+
+    @Test
+    void rechazaRegistrosMasLargosQueElMaximo() throws IOException {
+        assertEquals(List.of(List.of("12", "34")), registros(new StringReader("12,34\n"), ',', 4));
+        assertThrows(IOException.class, () -> registros(new StringReader("12,345\n"), ',', 4));
+        assertThrows(IOException.class, () -> registros(new StringReader("\"12345\"\n"), ',', 4));
+        assertThrows(IOException.class, () -> registros(new StringReader("\"12\"345\n"), ',', 4));
+    }
+
+    @Test
+    void daLoMismoLeyendoLaEntradaCaracterACaracter() throws IOException {
+        String csv = "\uFEFFid,texto\r\n1,\"a,\"\"b\"\"\r\nc\"\r\n\r\n2,\n3,\"\"";
+        assertEquals(registros(csv, ','),
+                registros(new TokenizadorSQLTest.UnCaracterPorLectura(csv), ',', Integer.MAX_VALUE));
+    }
+
+    private static LectorCSV lector(String texto, char separador) {
+        return new LectorCSV(new StringReader(texto), separador, Integer.MAX_VALUE);
+    }
+
+    private static List<List<String>> registros(String texto, char separador) throws IOException {
+        return registros(new StringReader(texto), separador, Integer.MAX_VALUE);
+    }
+
+    private static List<List<String>> registros(Reader entrada, char separador, int longitudMaxima) throws IOException {
+        LectorCSV lector = new LectorCSV(entrada, separador, longitudMaxima);
+        List<List<String>> registros = new ArrayList<>();
+        String[] registro;
+        while ((registro = lector.siguiente()) != null) registros.add(Arrays.asList(registro));
+        return registros;
+    }
+}
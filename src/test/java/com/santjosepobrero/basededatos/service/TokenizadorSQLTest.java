@@ -0,0 +1,145 @@
+package com.santjosepobrero.basededatos.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenizadorSQLTest {
+
+    @Test
+    void separaPorPuntoYComaYQuitaEspacios() throws IOException {
+        assertEquals(List.of("SELECT 1", "SELECT 2", "SELECT 3"), sentencias("  SELECT 1;\nSELECT 2 ;SELECT 3"));
+    }
+
+    @Test
+    void saltaSentenciasVacias() throws IOException {
+        assertEquals(List.of("SELECT 1"), sentencias(";;  ;\n SELECT 1;;"));
+        assertEquals(List.of(), sentencias("  \n ; "));
+    }
+
+    @Test
+    void noCortaDentroDeLiteralesNiIdentificadores() throws IOException {
+        assertEquals(List.of("SELECT 'a;b', \"c;d\" FROM `e;f`", "SELECT 2"),
+                sentencias("SELECT 'a;b', \"c;d\" FROM `e;f`; SELECT 2"));
+    }
+
+    @Test
+    void respetaComillasDobladasYEscapes() throws IOException {
+        assertEquals(List.of("SELECT 'it''s; ok', 'a\\';b'"), sentencias("SELECT 'it''s; ok', 'a\\';b';"));
+    }
+
+    @Test
+    void laBarraNoEscapaDentroDeAcentosGraves() throws IOException {
+        assertEquals(List.of("SELECT `a\\`", "SELECT 2"), sentencias("SELECT `a\\`; SELECT 2"));
+    }
+
+    @Test
+    void losComentariosNoSeCopianEnLosLiterales() throws IOException {
+        assertEquals(List.of("SELECT '-- no es comentario', '# tampoco', '/* ni este */'"),
+                sentencias("SELECT '-- no es comentario', '# tampoco', '/* ni este */'"));
+    }
+
+    @Test
+    void quitaComentariosDeGuionesConSuPuntoYComa() throws IOException {
+        assertEquals(List.of("SELECT 1  , 2", "SELECT 3"), sentencias("SELECT 1 -- nota; no corta\n, 2; SELECT 3"));
+    }
+
+    @Test
+    void dosGuionesSinEspacioNoSonComentario() throws IOException {
+        assertEquals(List.of("SELECT 5--1", "SELECT 3 - 1"), sentencias("SELECT 5--1; SELECT 3 - 1;"));
+    }
+
+    @Test
+    void dosGuionesAlFinalSonComentario() throws IOException {
+        assertEquals(List.of("SELECT 1"), sentencias("SELECT 1 --"));
+    }
+
+    @Test
+    void quitaComentariosDeAlmohadilla() throws IOException {
+        assertEquals(List.of("SELECT 1  FROM dual"), sentencias("SELECT 1 # nota; no corta\nFROM dual;"));
+    }
+
+    @Test
+    void quitaComentariosDeBloque() throws IOException {
+        assertEquals(List.of("SELECT   1", "SELECT 2 / 3"), sentencias("SELECT /* ; \n */ 1; SELECT 2 / 3"));
+    }
+
+    @Test
+    void comentarioDeBloqueSinCerrarEsUnError() {
+        IOException ex = assertThrows(IOException.class, () -> sentencias("SELECT 1 /* sin cerrar; SELECT 2"));
+        assertTrue(ex.getMessage().contains("sin cerrar"));
+    }
+
+    @Test
+    void literalSinCerrarEsUnError() {
+        assertThrows(IOException.class, () -> sentencias("SELECT 'sin cerrar; SELECT 2"));
+        assertThrows(IOException.class, () -> sentencias("SELECT `sin cerrar"));
+        assertThrows(IOException.class, () -> sentencias("SELECT 'barra al final\\"));
+    }
+
+    @Test
+    void rechazaSentenciasMasLargasQueElMaximo() throws IOException {
+        // El comentario se queda en un espacio y no cuenta para el máximo
+        assertEquals(List.of("SELECT 1", "SELECT 2"),
+                sentencias(new StringReader("SELECT 1 /* comentario mucho más largo que el máximo */; SELECT 2"), 10));
+        assertThrows(IOException.class, () -> sentencias(new StringReader("SELECT 12345"), 10));
+        assertThrows(IOException.class, () -> sentencias(new StringReader("SELECT 'abcdef'"), 10));
+    }
+
+    @Test
+    void daLoMismoLeyendoLaEntradaCaracterACaracter() throws IOException {
+        String script = "SELECT 'a;''b' -- x;\n, 5--1 # y\n/* z; */; SELECT `c``d` ; -- final";
+        assertEquals(sentencias(script), sentencias(new UnCaracterPorLectura(script), Integer.MAX_VALUE));
+    }
+
+    @Test
+    void reconoceComentariosQueCruzanElBuffer() throws IOException {
+        // El primer "-" queda en el último carácter del buffer de 8192 y lo que sigue en la siguiente lectura
+        String relleno = "SELECT '" + "x".repeat(8192 - 11) + "' ";
+        List<String> leidas = sentencias(relleno + "-- comentario;\n; SELECT 2");
+        assertEquals(List.of(relleno.trim(), "SELECT 2"), leidas);
+    }
+
+    private static List<String> sentencias(String script) throws IOException {
+        return sentencias(new StringReader(script), Integer.MAX_VALUE);
+    }
+
+    private static List<String> sentencias(Reader entrada, int longitudMaxima) throws IOException {
+        TokenizadorSQL tokenizador = new TokenizadorSQL(entrada, longitudMaxima);
+        List<String> sentencias = new ArrayList<>();
+        String sql;
+        while ((sql = tokenizador.siguiente()) != null) sentencias.add(sql);
+        return sentencias;
+    }
+
+    /** Lector que devuelve un solo carácter por llamada, para probar los límites del buffer. */
+    static final class UnCaracterPorLectura extends Reader {
+
+        private final String texto;
+        private int posicion;
+
+        UnCaracterPorLectura(String texto) {
+            this.texto = texto;
+        }
+
+        @Override
+        public int read(char[] destino, int desde, int longitud) {
+            if (posicion >= texto.length()) return -1;
+            if (longitud == 0) return 0;
+            destino[desde] = texto.charAt(posicion++);
+            return 1;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}